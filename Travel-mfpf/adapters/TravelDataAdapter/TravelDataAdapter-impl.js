@@ -50,17 +50,57 @@ function handleResponse(response) {
 }
 
 /**
- * @returns json list of itineraries that belong to the user
+ * Adds the validator of the itinerary data to a successful response so the device can keep it with the data and pass
+ * it back on its next call. The server answers that call with a 304 and no data while the device's copy is still
+ * current, which is reported as notModified so the device knows to keep using the data it has.
+ * 
+ * @param response
+ */
+function handleTravelDataResponse(response) {
+	response = handleResponse(response);
+	if (response !== undefined && response.isSuccessful) {
+		var headers = response.responseHeaders || {};
+		response.etag = headers.ETag || headers.Etag || headers.etag;
+		response.notModified = response.statusCode == 304;
+	}
+	return response;
+}
+
+/**
+ * @param etag Optional, the etag returned with the itineraries the device already has.
+ * @returns json list of itineraries that belong to the user, with the etag of the data. If the etag
+ * given is still current no itineraries are returned and notModified is true.
  */
-function getTravelData(userLocale) {	
+function getTravelData(userLocale, etag) {	
 	var input = {
 	    method : 'get',
 	    returnedContentType : 'json',
 	    path : 'travel-web/remy/itinerary/',
 	    parameters: {locale: userLocale}
 	};
+	if (etag) {
+		input.headers = {'If-None-Match': etag};
+	}
 	WL.Logger.error("locale: " + userLocale)
 	
-	return handleResponse(WL.Server.invokeHttp(input));
+	return handleTravelDataResponse(WL.Server.invokeHttp(input));
 }
 
+/**
+ * @param etag Optional, the etag returned with the user's itineraries the device already has.
+ * @returns json object containing the itineraries of a single user, with the etag of the data. If the
+ * etag given is still current no itineraries are returned and notModified is true.
+ */
+function getUserTravelData(userName, userLocale, etag) {
+	var input = {
+	    method : 'get',
+	    returnedContentType : 'json',
+	    path : 'travel-web/remy/itinerary/user/' + encodeURIComponent(userName),
+	    parameters: {locale: userLocale}
+	};
+	if (etag) {
+		input.headers = {'If-None-Match': etag};
+	}
+	
+	return handleTravelDataResponse(WL.Server.invokeHttp(input));
+}
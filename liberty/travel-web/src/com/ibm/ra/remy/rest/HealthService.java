@@ -0,0 +1,71 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.ibm.ra.remy.web.utils.ItineraryWarmup;
+import com.ibm.ra.remy.web.utils.MessageUtils;
+import com.ibm.ra.remy.web.utils.RestUtils;
+
+
+/**
+ * Standard JAX-RS class that defines the following end points, for a load balancer or monitor to check.
+ *
+ *     /health               - Reports that the application is running.
+ *     /health/ready         - Reports whether the application is ready for traffic, which is once the itinerary data
+ *                             of the locales in ITINERARY_WARMUP_LOCALES has been built.
+ *
+ */
+@Path("/health")
+public class HealthService {
+	private RestUtils rUtils = new RestUtils();
+
+	/**
+	 * Rest end point that reports that the application is running. It does not check anything else, so it answers
+	 * even while the itinerary data is being built.
+	 *
+	 * @return A JAX-RS Response object with the status of the application.
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
+	public Response getHealth() {
+		Map<String, Object> content = new LinkedHashMap<String, Object>();
+		content.put("status", "UP");
+		return rUtils.getResponse(content, Response.Status.OK);
+	}
+
+	/**
+	 * Rest end point that reports whether the application is ready for traffic. Until every locale that is warmed up
+	 * at startup has been built (see {@link ItineraryWarmup}) it returns 503 Service Unavailable, so a load balancer
+	 * only sends requests once they can be answered from the cache.
+	 *
+	 * @return A JAX-RS Response object with whether the application is ready and which locales have been built.
+	 */
+	@GET
+	@Path("/ready")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
+	public Response getReady() {
+		ItineraryWarmup warmup = ItineraryWarmup.getInstance();
+		boolean ready = warmup.isReady();
+		Map<String, Object> content = new LinkedHashMap<String, Object>();
+		content.put("ready", ready);
+		content.put("locales", warmup.getStatus());
+		return rUtils.getResponse(content, ready ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE);
+	}
+}
@@ -10,29 +10,53 @@
 
 package com.ibm.ra.remy.rest;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import com.ibm.ra.remy.web.utils.BuildProgress;
+import com.ibm.ra.remy.web.utils.CacheStats;
+import com.ibm.ra.remy.web.utils.ItineraryCache;
+import com.ibm.ra.remy.web.utils.ItineraryPayload;
+import com.ibm.ra.remy.web.utils.ItineraryRefresher;
+import com.ibm.ra.remy.web.utils.ItinerarySnapshot;
+import com.ibm.ra.remy.web.utils.ItineraryStreamingOutput;
 import com.ibm.ra.remy.web.utils.ItineraryUtils;
+import com.ibm.ra.remy.web.utils.LodgingRulesCache;
 import com.ibm.ra.remy.web.utils.MessageUtils;
+import com.ibm.ra.remy.web.utils.PropertiesReader;
 import com.ibm.ra.remy.web.utils.RestUtils;
 
 
 /**
- * Standard JAX-RS class that defines two end points. 
+ * Standard JAX-RS class that defines the following end points. 
  * 
- *     /itinerary            - Main end point to retrieve itinerary data for all users.
- *     /itinerary/refresh    - Supplementary end point for forcing a refresh of the cache used in the /itinerary end point.
+ *     /itinerary             - Main end point to retrieve itinerary data for all users.
+ *     /itinerary/user/{user} - End point to retrieve the itinerary data of a single user.
+ *     /itinerary/refresh     - Supplementary end point for forcing a refresh of the cache used in the /itinerary end point.
+ *     /itinerary/status      - Supplementary end point reporting the age of the cached data and the progress of any refresh.
+ *     /itinerary/cache       - Supplementary end point reporting the per locale counters of the itinerary cache.
  *
  */
 @Path("/itinerary")
 public class ItineraryService {
+	private static final String CACHE_MAX_AGE_KEY = "ITINERARY_CACHE_MAX_AGE_SECONDS";
+	private static final int cacheMaxAge = PropertiesReader.getInstance().getIntProperty(CACHE_MAX_AGE_KEY, 0);
 	private Logger logger = Logger.getLogger(ItineraryService.class.getName());
 	private MessageUtils mUtils = MessageUtils.getInstance();
 	private RestUtils rUtils = new RestUtils();
@@ -46,16 +70,29 @@ public class ItineraryService {
 	 * 
 	 * This method will generate a cache of the results if it is the first time this method has been run. On subsequent
 	 * invocations, the cached data will always be returned even if there have been changes to the back end. To
-	 * refresh the cache, see {@link #refreshCache(String) refreshCache} method.
+	 * refresh the cache, see {@link #refreshCache(String, boolean, boolean, String) refreshCache} method.
+	 * 
+	 * Every response carries an ETag that changes whenever the cached data is rebuilt or the day changes. A client
+	 * that sends it back in an If-None-Match header gets a 304 Not Modified response with no body while its copy is
+	 * still current, so the data is not sent again.
 	 * 
 	 * @param locale  The locale for the data you want us to retrieve. This will be used to determine what locale
 	 * our own messages are returned in as well as the locale we'll attempt to use when calling external services.
-	 * @return A JAX-RS Response object representing the data we retrieved from our back end or some sort of error
-	 * message that was encountered while processing the user request.
+	 * @param delta True to send every itinerary of a user after the first as a patch against the one before it, which
+	 * is much smaller than the full itinerary. See {@link com.ibm.ra.remy.web.utils.ItineraryDelta ItineraryDelta} for
+	 * the format of the patches.
+	 * @param acceptEncoding The Accept-Encoding header of the request. If it allows gzip the response is sent gzip
+	 * encoded.
+	 * @param ifNoneMatch The If-None-Match header of the request, holding the ETag of the data the client already has.
+	 * @return A JAX-RS Response object representing the data we retrieved from our back end, a not modified response
+	 * if the client already has it, or some sort of error message that was encountered while processing the user
+	 * request.
 	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
-	public Response getAll(@QueryParam("locale") String locale) {
+	public Response getAll(@QueryParam("locale") String locale, @QueryParam("delta") boolean delta,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+			@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
 		if (locale == null) {
 			locale = "en";
 		}
@@ -63,7 +100,52 @@ public class ItineraryService {
 		Response r = null;
 		try {
 			ItineraryUtils iUtils = new ItineraryUtils();
-			r = rUtils.getResponse(iUtils.getItineraries(locale), Response.Status.OK);
+			r = getSnapshotResponse(iUtils.getSnapshot(locale, false), null, delta, acceptEncoding, ifNoneMatch);
+		} catch (Exception ex) {
+			logger.severe(ex.getLocalizedMessage());
+			ex.printStackTrace();
+			r = rUtils.getResponse(ex.getLocalizedMessage(), Response.Status.INTERNAL_SERVER_ERROR);
+		}
+		return r;
+	}
+	
+	/**
+	 * Rest end point that returns the itineraries of a single user. The data is the same as the data for that user in
+	 * the {@link #getAll(String, boolean, String, String) getAll} response and comes from the same cache, but only that user's
+	 * data is serialized and sent, so the response size does not grow with the number of users. The response carries
+	 * an ETag and is answered with 304 Not Modified in the same way.
+	 * 
+	 * @param user The unique ID of the user whose itineraries to return.
+	 * @param locale  The locale for the data you want us to retrieve. This will be used to determine what locale
+	 * our own messages are returned in as well as the locale we'll attempt to use when calling external services.
+	 * @param delta True to send every itinerary of a user after the first as a patch against the one before it, which
+	 * is much smaller than the full itinerary. See {@link com.ibm.ra.remy.web.utils.ItineraryDelta ItineraryDelta} for
+	 * the format of the patches.
+	 * @param acceptEncoding The Accept-Encoding header of the request. If it allows gzip the response is sent gzip
+	 * encoded.
+	 * @param ifNoneMatch The If-None-Match header of the request, holding the ETag of the data the client already has.
+	 * @return A JAX-RS Response object representing the user's data, a not modified response if the client already
+	 * has it, a not found response if we have no data for the user, or some sort of error message that was encountered while processing the user request.
+	 */
+	@GET
+	@Path("/user/{user}")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
+	public Response getUser(@PathParam("user") String user, @QueryParam("locale") String locale,
+			@QueryParam("delta") boolean delta, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+			@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+		if (locale == null) {
+			locale = "en";
+		}
+		logger.finest(mUtils.getMessage("MSG0008", locale, "getUser"));
+		Response r = null;
+		try {
+			ItineraryUtils iUtils = new ItineraryUtils();
+			ItinerarySnapshot snapshot = iUtils.getSnapshot(locale, false);
+			if (!rUtils.isValidUser(user) || snapshot == null || !snapshot.hasUser(user)) {
+				r = rUtils.getResponse(mUtils.getMessage("MSG0007", locale, user), Response.Status.NOT_FOUND);
+			} else {
+				r = getSnapshotResponse(snapshot, user, delta, acceptEncoding, ifNoneMatch);
+			}
 		} catch (Exception ex) {
 			logger.severe(ex.getLocalizedMessage());
 			ex.printStackTrace();
@@ -73,30 +155,53 @@ public class ItineraryService {
 	}
 	
 	/**
-	 * See {@link #getAll(String) getAll} method.
+	 * See {@link #getAll(String, boolean, String, String) getAll} method.
 	 * 
 	 * The only difference between this method and the getAll method is that this method will ALWAYS perform a query
 	 * for all the data. As the data is for the most part static, there is really no need to call this end point unless
 	 * you needed to update some data on the back end and you need to refresh the cache.
 	 * 
+	 * The query runs in the background (see {@link ItineraryRefresher}). Until it finishes, this end point and the
+	 * /itinerary end point keep returning the data that was already cached, so callers are not held up by the refresh.
+	 * Pass wait=true to wait for the refresh to finish and get the new data instead. If nothing is cached yet for the
+	 * locale, this end point always waits.
+	 * 
+	 * The cached outcomes of the Business Rules service are dropped as well (see {@link LodgingRulesCache}), so calling
+	 * this end point after the rules are redeployed makes the refresh use the new rules.
 	 * 
 	 * @param locale  The locale for the data you want us to retrieve. This will be used to determine what locale
 	 * our own messages are returned in as well as the locale we'll attempt to use when calling external services.
+	 * @param wait True to wait for the refreshed data, false to return the cached data while the refresh runs.
+	 * @param delta True to send every itinerary of a user after the first as a patch against the one before it, which
+	 * is much smaller than the full itinerary. See {@link com.ibm.ra.remy.web.utils.ItineraryDelta ItineraryDelta} for
+	 * the format of the patches.
+	 * @param acceptEncoding The Accept-Encoding header of the request. If it allows gzip the response is sent gzip
+	 * encoded.
 	 * @return A JAX-RS Response object representing the data we retrieved from our back end or some sort of error
 	 * message that was encountered while processing the user request.
 	 */
 	@GET
 	@Path("/refresh")
 	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
-	public Response refreshCache(@QueryParam("locale") String locale) {
+	public Response refreshCache(@QueryParam("locale") String locale, @QueryParam("wait") boolean wait,
+			@QueryParam("delta") boolean delta, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
 		if (locale == null) {
 			locale = "en";
 		}
 		logger.finest(mUtils.getMessage("MSG0008", locale, "getAll"));
 		Response r = null;
 		try {
-			ItineraryUtils iUtils = new ItineraryUtils();
-			r = rUtils.getResponse(iUtils.getItineraries(locale, true), Response.Status.OK);
+			LodgingRulesCache.getInstance().invalidate();
+			Future<ItinerarySnapshot> refresh = ItineraryRefresher.getInstance().refresh(locale);
+			ItinerarySnapshot snapshot = wait ? null : ItineraryCache.getInstance().get(locale);
+			if (snapshot == null) {
+				snapshot = refresh.get();
+			}
+			r = getSnapshotResponse(snapshot, null, delta, acceptEncoding, null);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			logger.severe(cause.getLocalizedMessage());
+			r = rUtils.getResponse(cause.getLocalizedMessage(), Response.Status.INTERNAL_SERVER_ERROR);
 		} catch (Exception ex) {
 			logger.severe(ex.getLocalizedMessage());
 			ex.printStackTrace();
@@ -104,4 +209,110 @@ public class ItineraryService {
 		}
 		return r;
 	}
+	
+	/**
+	 * Creates the response for a snapshot of itinerary data. The body for today is serialized and compressed once per
+	 * snapshot (see {@link ItinerarySnapshot#getPayload(long, boolean) getPayload}), so a request for cached data only has to
+	 * hand the stored bytes to the container. If the bodies are not kept with the snapshot the body is written straight
+	 * to the response instead.
+	 * 
+	 * The ETag of the response is worked out from the snapshot and the day before anything is serialized (see
+	 * {@link ItinerarySnapshot#getEntityTag(long, boolean) getEntityTag}), so a client that already has the data gets
+	 * its 304 Not Modified response without the body being generated at all. The gzip body has a tag of its own, since
+	 * it is not the same bytes. Clients may keep using their copy for ITINERARY_CACHE_MAX_AGE_SECONDS, but never past
+	 * midnight, when the times in the data move to the new day.
+	 * 
+	 * @param snapshot The snapshot to return, or null if there is no data for the requested locale.
+	 * @param user The user whose data to return, or null for every user.
+	 * @param delta True to send the later versions of each itinerary as patches.
+	 * @param acceptEncoding The value of the client's Accept-Encoding header, used to decide whether to send gzip.
+	 * @param ifNoneMatch The value of the client's If-None-Match header, or null to always send the data.
+	 * @return A JAX-RS Response object containing the itinerary data.
+	 * @throws IOException If the snapshot could not be serialized.
+	 */
+	private Response getSnapshotResponse(ItinerarySnapshot snapshot, String user, boolean delta, String acceptEncoding,
+			String ifNoneMatch) throws IOException {
+		if (snapshot == null) {
+			return rUtils.getResponse(null, Response.Status.OK);
+		}
+		long baseline = ItinerarySnapshot.getTodayBaseline();
+		String etag = snapshot.getEntityTag(baseline, delta) + (rUtils.acceptsGzip(acceptEncoding) ? "-gzip" : "");
+		long lastModified = Math.max(snapshot.getBuiltAt(), baseline);
+		long untilTomorrow = baseline + TimeUnit.DAYS.toMillis(1) - System.currentTimeMillis();
+		int maxAge = (int) Math.max(0, Math.min(cacheMaxAge, TimeUnit.MILLISECONDS.toSeconds(untilTomorrow)));
+		if (rUtils.matchesEntityTag(ifNoneMatch, etag)) {
+			return rUtils.getNotModifiedResponse(etag, lastModified, maxAge);
+		}
+		Response r;
+		if (!ItinerarySnapshot.isPayloadCacheEnabled()) {
+			r = rUtils.getStreamingResponse(new ItineraryStreamingOutput(snapshot, user, delta, baseline),
+					acceptEncoding, Response.Status.OK);
+		} else {
+			ItineraryPayload payload = user == null ? snapshot.getPayload(baseline, delta)
+					: snapshot.getUserPayload(user, baseline, delta);
+			r = rUtils.getPayloadResponse(payload, acceptEncoding, Response.Status.OK);
+		}
+		return rUtils.getCacheableResponse(r, etag, lastModified, maxAge);
+	}
+	
+	/**
+	 * Rest end point that reports the state of the cached itinerary data. For each locale that is cached or being
+	 * built it returns the version and age of the current snapshot, whether a refresh is pending and, while a build
+	 * is running, which step it is on and how long it has been running.
+	 * 
+	 * @param locale The locale to report on. If not given, every cached locale is reported.
+	 * @return A JAX-RS Response object containing the status, keyed by locale.
+	 */
+	@GET
+	@Path("/status")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
+	public Response getStatus(@QueryParam("locale") String locale) {
+		ItineraryCache cache = ItineraryCache.getInstance();
+		ItineraryRefresher refresher = ItineraryRefresher.getInstance();
+		long now = System.currentTimeMillis();
+		Map<String, Object> content = new LinkedHashMap<String, Object>();
+		content.put("refreshIntervalMinutes", refresher.getIntervalMinutes());
+		Map<String, Map<String, Object>> locales = new LinkedHashMap<String, Map<String, Object>>();
+		for (String cachedLocale : locale == null ? cache.getLocales() : Collections.singleton(locale)) {
+			Map<String, Object> status = new LinkedHashMap<String, Object>();
+			ItinerarySnapshot snapshot = cache.getCurrent(cachedLocale);
+			if (snapshot != null) {
+				status.put("snapshotVersion", snapshot.getVersion());
+				status.put("builtAt", snapshot.getBuiltAt());
+				status.put("ageMillis", now - snapshot.getBuiltAt());
+			}
+			status.put("refreshing", refresher.isRefreshing(cachedLocale));
+			BuildProgress progress = cache.getBuildProgress(cachedLocale);
+			if (progress != null) {
+				status.put("build", progress.toMap());
+			}
+			locales.put(cachedLocale, status);
+		}
+		content.put("locales", locales);
+		return rUtils.getResponse(content, Response.Status.OK);
+	}
+	
+	/**
+	 * Rest end point that reports how the itinerary cache is being used, so the cache limits in app.properties can be
+	 * sized. For every locale that has had data cached it returns the number of cache hits and misses, the number of
+	 * builds (and failed builds), the number of evictions and how long the builds took. Locales that have no data are
+	 * counted together under "other".
+	 * 
+	 * @return A JAX-RS Response object containing the cache counters, keyed by locale.
+	 */
+	@GET
+	@Path("/cache")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=" + MessageUtils.ENCODING)
+	public Response getCacheStats() {
+		ItineraryCache cache = ItineraryCache.getInstance();
+		Map<String, Object> content = new LinkedHashMap<String, Object>();
+		content.put("maxLocales", cache.getMaxLocales());
+		content.put("cachedLocales", cache.size());
+		Map<String, Map<String, Long>> locales = new LinkedHashMap<String, Map<String, Long>>();
+		for (Map.Entry<String, CacheStats> entry : cache.getStats().entrySet()) {
+			locales.put(entry.getKey(), entry.getValue().toMap());
+		}
+		content.put("locales", locales);
+		return rUtils.getResponse(content, Response.Status.OK);
+	}
 }
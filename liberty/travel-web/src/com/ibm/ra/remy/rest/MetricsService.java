@@ -0,0 +1,54 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.ibm.ra.remy.web.utils.MessageUtils;
+import com.ibm.ra.remy.web.utils.Metrics;
+
+
+/**
+ * Standard JAX-RS class that defines the following end point.
+ *
+ *     /metrics              - The timers and counters of the server, for Prometheus or a similar tool to scrape.
+ *
+ */
+@Path("/metrics")
+public class MetricsService {
+	private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * Rest end point that returns every metric in the Prometheus text format. This covers how long each step of
+	 * building the itinerary data took, and how long the calls to Cloudant, Business Rules, Personality Insights and
+	 * Tradeoff Analytics took and how many of them failed. See {@link Metrics}.
+	 *
+	 * @return A JAX-RS Response object containing the metrics.
+	 */
+	@GET
+	@Produces(PROMETHEUS_TEXT)
+	public Response getMetrics() {
+		return Response.ok(new StreamingOutput() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				Metrics.getInstance().write(new OutputStreamWriter(out, MessageUtils.ENCODING));
+			}
+		}).build();
+	}
+}
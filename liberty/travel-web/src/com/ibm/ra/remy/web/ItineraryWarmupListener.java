@@ -0,0 +1,45 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import com.ibm.ra.remy.web.utils.BusinessRulesUtils;
+import com.ibm.ra.remy.web.utils.ItinerarySnapshotStore;
+import com.ibm.ra.remy.web.utils.ItineraryWarmup;
+
+/**
+ * Listener registered in web.xml that starts building the itinerary data as soon as the application is deployed,
+ * instead of on the first request, and saves the cached itinerary data to disk when the application stops so the next
+ * start can serve it straight away. The pooled Business Rules connections are closed when it stops as well. See
+ * {@link ItineraryWarmup} and {@link ItinerarySnapshotStore}.
+ */
+public class ItineraryWarmupListener implements ServletContextListener {
+
+	/**
+	 * @see javax.servlet.ServletContextListener#contextInitialized(javax.servlet.ServletContextEvent)
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		ItineraryWarmup.getInstance().start();
+	}
+
+	/**
+	 * @see javax.servlet.ServletContextListener#contextDestroyed(javax.servlet.ServletContextEvent)
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		ItineraryWarmup.getInstance().stop();
+		ItinerarySnapshotStore.getInstance().saveAll();
+		BusinessRulesUtils.shutdown();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks how far a build of the itinerary data for one locale has gotten. The build updates it as it moves from one
+ * step to the next, and the status end point reads it from other threads.
+ */
+public class BuildProgress {
+	private final String locale;
+	private final int totalSteps;
+	private final long startedAt;
+	private volatile int step;
+	private volatile String description;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param locale The locale being built.
+	 * @param totalSteps The number of steps in the build.
+	 */
+	public BuildProgress(String locale, int totalSteps) {
+		this.locale = locale;
+		this.totalSteps = totalSteps;
+		this.startedAt = System.currentTimeMillis();
+		this.description = "";
+	}
+
+	/**
+	 * Records that the build has started its next step.
+	 *
+	 * @param description A short description of the step.
+	 */
+	public void startStep(String description) {
+		this.description = description;
+		this.step++;
+	}
+
+	/**
+	 * Updates the description of the current step without moving on to the next one.
+	 *
+	 * @param description A short description of the step and how far it has gotten.
+	 */
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public String getLocale() {
+		return locale;
+	}
+
+	public long getStartedAt() {
+		return startedAt;
+	}
+
+	/**
+	 * Creates a point in time copy of the progress that can be handed to Gson.
+	 *
+	 * @return A Map of the current step, the total number of steps and how long the build has been running.
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("step", step);
+		map.put("totalSteps", totalSteps);
+		map.put("description", description);
+		map.put("startedAt", startedAt);
+		map.put("elapsedMillis", System.currentTimeMillis() - startedAt);
+		return map;
+	}
+}
@@ -10,23 +10,74 @@
 
 package com.ibm.ra.remy.web.utils;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+
 /**
 * This class communicates with Business Rules to send itineraries and process
 * recommendation results.
+*
+* Calls share one HTTP client, whose pooled connections are kept alive between calls so that only the first call to the
+* execution server pays for the TCP and TLS setup. The client sends the credentials with the first request rather than
+* waiting to be challenged. The client is configured in app.properties:
+*
+*     BR_MAX_CONNECTIONS_PER_ROUTE    Connections kept open to the execution server (default 10).
+*     BR_MAX_CONNECTIONS              Connections kept open in total (default 20).
+*     BR_KEEP_ALIVE_MILLIS            How long an idle connection is kept open when the server does not say (default
+*                                     30000).
+*     BR_CONNECT_TIMEOUT_MILLIS       Timeout for opening a connection (default 5000).
+*     BR_READ_TIMEOUT_MILLIS          Timeout for waiting on data from the server (default 30000).
+*     BR_POOL_TIMEOUT_MILLIS          Timeout for waiting on a free connection when they are all in use (default 5000).
+*     BR_BATCH_RULE_APP_PATH          Path of the ruleset that takes every lodging event of a recommendation list at once,
+*                                     as the lodgingEvents array, instead of one lodgingEvent (default none, in which case
+*                                     the lodging events are sent one at a time).
+*     BR_ENGINE                       Where the lodging rules are run: remote on the Business Rules service, or local in
+*                                     the application with {@link LodgingRules} (default remote).
+*
+* The time waited for a connection is kept in remy_business_rules_pool_wait_seconds, and the connections handed out are
+* counted by whether they were reused or new in remy_business_rules_connections_total.
 */
 public class BusinessRulesUtils {
 	
@@ -34,6 +85,20 @@ public class BusinessRulesUtils {
 	private static final String PASSWORD_KEY="BR_PASSWORD";
 	private static final String EXECUTION_REST_URL_KEY="BR_EXECUTION_REST_URL";
 	private static final String RULE_APP_PATH_KEY="BR_RULE_APP_PATH";
+	private static final String MAX_PER_ROUTE_KEY="BR_MAX_CONNECTIONS_PER_ROUTE";
+	private static final String MAX_TOTAL_KEY="BR_MAX_CONNECTIONS";
+	private static final String KEEP_ALIVE_KEY="BR_KEEP_ALIVE_MILLIS";
+	private static final String CONNECT_TIMEOUT_KEY="BR_CONNECT_TIMEOUT_MILLIS";
+	private static final String READ_TIMEOUT_KEY="BR_READ_TIMEOUT_MILLIS";
+	private static final String POOL_TIMEOUT_KEY="BR_POOL_TIMEOUT_MILLIS";
+	private static final String BATCH_RULE_APP_PATH_KEY="BR_BATCH_RULE_APP_PATH";
+	private static final String ENGINE_KEY="BR_ENGINE";
+	private static final String LOCAL_ENGINE="local";
+	private static final String LODGING_EVENT="lodgingEvent";
+	private static final String LODGING_EVENTS="lodgingEvents";
+	private static final String SERVICE_NAME="business_rules";
+	private static final Logger logger = Logger.getLogger(BusinessRulesUtils.class.getName());
+	private static RulesClient client;
 	
 	/**
 	 * Invoke Business Rules with JSON content
@@ -42,37 +107,290 @@ public class BusinessRulesUtils {
 	 * @return A JSON string representing the output of Business Rules.
 	 */
 	public static String invokeRulesService(String json) throws Exception {
-		PropertiesReader constants = PropertiesReader.getInstance();
-		String username = constants.getStringProperty(USERNAME_KEY);
-		String password = constants.getStringProperty(PASSWORD_KEY);
-		String endpoint = constants.getStringProperty(EXECUTION_REST_URL_KEY) +
-				          constants.getStringProperty(RULE_APP_PATH_KEY);
-
-		CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-		credentialsProvider.setCredentials(AuthScope.ANY, 
-		    new UsernamePasswordCredentials(username, password));
-		CloseableHttpClient httpClient =
-				HttpClientBuilder.create().setDefaultCredentialsProvider(credentialsProvider).build();
-		
+		return invokeRulesService(json, false);
+	}
+
+	/**
+	 * Applies the lodging rules, the hotels ruleflow, to every lodging event of a recommendation list, on the Business
+	 * Rules service or in the application as BR_ENGINE says.
+	 *
+	 * @param bookings The lodging events, which are not modified.
+	 * @param locale The locale of the itinerary, for the log.
+	 * @return The lodging events with the rules applied, in the same order. A lodging event the rules could not be
+	 * applied to is returned as it was given.
+	 */
+	public static List<RemyLodgingEvent> applyLodgingRules(List<RemyLodgingEvent> bookings, String locale) {
+		if (!isLocalEngine()) {
+			return applyRemoteLodgingRules(bookings, locale);
+		}
+		long start = System.nanoTime();
+		List<RemyLodgingEvent> adjustedBookings = new ArrayList<RemyLodgingEvent>();
+		for (RemyLodgingEvent booking : bookings) {
+			adjustedBookings.add(LodgingRules.apply(booking));
+		}
+		Metrics.getInstance().timer("remy_lodging_rules_local_seconds",
+				"Time taken to apply the lodging rules in the application.").stop(start);
+		return adjustedBookings;
+	}
+
+	/**
+	 * Applies the lodging rules on the Business Rules service, whatever BR_ENGINE says. Lodging events the service
+	 * has already given an outcome for are answered from {@link LodgingRulesCache} and not sent again. If a batch
+	 * ruleset is configured, the others are all sent in one request and the results are matched to them by id. The
+	 * lodging events the batch request gives no result for, or all of them if it fails, are then sent one at a time.
+	 *
+	 * @param bookings The lodging events, which are not modified.
+	 * @param locale The locale of the itinerary, for the log.
+	 * @return The lodging events with the rules applied, in the same order. A lodging event the rules could not be
+	 * applied to is returned as it was given.
+	 */
+	public static List<RemyLodgingEvent> applyRemoteLodgingRules(List<RemyLodgingEvent> bookings, String locale) {
+		Gson gson = new Gson();
+		LodgingRulesCache cache = LodgingRulesCache.getInstance();
+		List<RemyLodgingEvent> adjustedBookings = new ArrayList<RemyLodgingEvent>();
+		List<RemyLodgingEvent> uncached = new ArrayList<RemyLodgingEvent>();
+		for (RemyLodgingEvent booking : bookings) {
+			RemyLodgingEvent adjustedBooking = cache.get(booking);
+			adjustedBookings.add(adjustedBooking);
+			if (adjustedBooking == null) {
+				uncached.add(booking);
+			}
+		}
+
+		Map<String, RemyLodgingEvent> results = new HashMap<String, RemyLodgingEvent>();
+		if (!uncached.isEmpty() && isBatchConfigured()) {
+			JsonArray events = new JsonArray();
+			for (RemyLodgingEvent booking : uncached) {
+				events.add(gson.toJsonTree(booking));
+			}
+			JsonObject request = new JsonObject();
+			request.add(LODGING_EVENTS, events);
+			try {
+				JsonObject response = gson.fromJson(invokeRulesService(request.toString(), true), JsonObject.class);
+				for (JsonElement event : response.getAsJsonArray(LODGING_EVENTS)) {
+					RemyLodgingEvent adjustedBooking = gson.fromJson(event, RemyLodgingEvent.class);
+					results.put(adjustedBooking.getId(), adjustedBooking);
+				}
+			} catch (Exception e) {
+				logger.warning(MessageUtils.getInstance().getMessage("MSG0032", uncached.size()));
+				logger.warning(e.getLocalizedMessage());
+			}
+		}
+
+		for (int i = 0; i < bookings.size(); i++) {
+			if (adjustedBookings.get(i) != null) {
+				continue;
+			}
+			RemyLodgingEvent booking = bookings.get(i);
+			RemyLodgingEvent adjustedBooking = booking.getId() == null ? null : results.get(booking.getId());
+			if (adjustedBooking == null) {
+				Metrics.getInstance().counter("remy_business_rules_single_events_total",
+						"Number of lodging events sent to Business Rules on their own rather than in a batch.").inc();
+				adjustedBooking = applyLodgingRules(gson, booking, locale);
+			}
+			if (adjustedBooking != booking) {
+				cache.put(booking, adjustedBooking);
+			}
+			adjustedBookings.set(i, adjustedBooking);
+		}
+		return adjustedBookings;
+	}
+
+	/**
+	 * Applies the lodging rules to a single lodging event.
+	 *
+	 * @return The lodging event with the rules applied, or the given one if they could not be applied.
+	 */
+	private static RemyLodgingEvent applyLodgingRules(Gson gson, RemyLodgingEvent booking, String locale) {
+		String bookingJson = "{\"" + LODGING_EVENT + "\": " + gson.toJson(booking) + "}";
+		RemyLodgingEvent adjustedBooking = booking;
+		try {
+			String adjustedBookingWrapperJson = invokeRulesService(bookingJson);
+			JsonObject adjustedBookingWrapperMap = gson.fromJson(adjustedBookingWrapperJson, JsonObject.class);
+			adjustedBooking = gson.fromJson(adjustedBookingWrapperMap.get(LODGING_EVENT), RemyLodgingEvent.class);
+		} catch (Exception e) {
+			MessageUtils mUtils = MessageUtils.getInstance();
+			logger.warning(mUtils.getMessage("MSG0012", locale));
+			logger.warning(e.getLocalizedMessage());
+		}
+		return adjustedBooking;
+	}
+
+	/**
+	 * Whether the lodging rules are run in the application.
+	 */
+	private static boolean isLocalEngine() {
+		String engine = PropertiesReader.getInstance().getStringProperty(ENGINE_KEY);
+		return engine != null && LOCAL_ENGINE.equalsIgnoreCase(engine.trim());
+	}
+
+	/**
+	 * Whether a batch ruleset is configured.
+	 */
+	private static boolean isBatchConfigured() {
+		String path = PropertiesReader.getInstance().getStringProperty(BATCH_RULE_APP_PATH_KEY);
+		return path != null && !path.trim().isEmpty();
+	}
+
+	/**
+	 * Posts the JSON content to the ruleset, or to the batch ruleset, and keeps the service metrics of the call.
+	 */
+	private static String invokeRulesService(final String json, final boolean batch) throws Exception {
+		return Metrics.getInstance().time(SERVICE_NAME, new Metrics.Call<String, Exception>() {
+			@Override
+			public String call() throws Exception {
+				RulesClient rulesClient = getClient();
+				return executeRulesService(rulesClient, batch ? rulesClient.batchEndpoint : rulesClient.endpoint, json);
+			}
+		});
+	}
+
+	/**
+	 * Closes the shared HTTP client and its connections. The next call creates a new one.
+	 */
+	public static synchronized void shutdown() {
+		if (client != null) {
+			try {
+				client.httpClient.close();
+			} catch (IOException ex) {
+				// The connections are being thrown away, nothing else to do.
+			}
+			client = null;
+		}
+	}
+
+	/**
+	 * Posts the JSON content to a Business Rules execution end point. See
+	 * {@link #invokeRulesService(String) invokeRulesService}.
+	 */
+	private static String executeRulesService(RulesClient rulesClient, String endpoint, String json) throws Exception {
 		String responseString = "";
-		
-        try {
-            HttpPost httpPost = new HttpPost(endpoint);
-            httpPost.setHeader(HTTP.CONTENT_TYPE , ContentType.APPLICATION_JSON.toString());
-            StringEntity jsonEntity = new StringEntity(json, MessageUtils.ENCODING);
-            httpPost.setEntity(jsonEntity);
-            CloseableHttpResponse response = httpClient.execute(httpPost);
-
-            try {
-                HttpEntity entity = response.getEntity();
-                responseString = EntityUtils.toString(entity, MessageUtils.ENCODING);
-                EntityUtils.consume(entity);
-            } finally {
-                response.close();
-            }
-        } finally {
-            httpClient.close();
-        }
+
+		HttpPost httpPost = new HttpPost(endpoint);
+		httpPost.setHeader(HTTP.CONTENT_TYPE , ContentType.APPLICATION_JSON.toString());
+		StringEntity jsonEntity = new StringEntity(json, MessageUtils.ENCODING);
+		httpPost.setEntity(jsonEntity);
+		CloseableHttpResponse response = rulesClient.httpClient.execute(httpPost, rulesClient.createContext());
+
+		try {
+			HttpEntity entity = response.getEntity();
+			responseString = EntityUtils.toString(entity, MessageUtils.ENCODING);
+			// Reading the entity to the end hands the connection back to the pool.
+			EntityUtils.consume(entity);
+		} finally {
+			response.close();
+		}
 		return responseString;
 	}
+
+	/**
+	 * Gets the shared HTTP client, creating it from app.properties if there is none yet.
+	 */
+	private static synchronized RulesClient getClient() {
+		if (client == null) {
+			client = new RulesClient();
+		}
+		return client;
+	}
+
+	/**
+	 * The shared HTTP client with the end points and credentials it posts to.
+	 */
+	private static class RulesClient {
+		private final String endpoint;
+		private final String batchEndpoint;
+		private final HttpHost target;
+		private final CredentialsProvider credentialsProvider;
+		private final CloseableHttpClient httpClient;
+
+		private RulesClient() {
+			PropertiesReader constants = PropertiesReader.getInstance();
+			endpoint = constants.getStringProperty(EXECUTION_REST_URL_KEY) +
+			           constants.getStringProperty(RULE_APP_PATH_KEY);
+			String batchPath = constants.getStringProperty(BATCH_RULE_APP_PATH_KEY);
+			batchEndpoint = batchPath == null ? null : constants.getStringProperty(EXECUTION_REST_URL_KEY) + batchPath.trim();
+			URI uri = URI.create(endpoint);
+			target = new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme());
+
+			credentialsProvider = new BasicCredentialsProvider();
+			credentialsProvider.setCredentials(new AuthScope(target),
+					new UsernamePasswordCredentials(constants.getStringProperty(USERNAME_KEY),
+							constants.getStringProperty(PASSWORD_KEY)));
+
+			PoolingHttpClientConnectionManager connectionManager = new MeteredConnectionManager();
+			connectionManager.setDefaultMaxPerRoute(constants.getIntProperty(MAX_PER_ROUTE_KEY, 10));
+			connectionManager.setMaxTotal(constants.getIntProperty(MAX_TOTAL_KEY, 20));
+
+			RequestConfig requestConfig = RequestConfig.custom()
+					.setConnectTimeout(constants.getIntProperty(CONNECT_TIMEOUT_KEY, 5000))
+					.setSocketTimeout(constants.getIntProperty(READ_TIMEOUT_KEY, 30000))
+					.setConnectionRequestTimeout(constants.getIntProperty(POOL_TIMEOUT_KEY, 5000))
+					.build();
+
+			final long keepAlive = constants.getIntProperty(KEEP_ALIVE_KEY, 30000);
+			ConnectionKeepAliveStrategy keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+				@Override
+				public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+					long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+				}
+			};
+
+			httpClient = HttpClientBuilder.create()
+					.setConnectionManager(connectionManager)
+					.setDefaultRequestConfig(requestConfig)
+					.setKeepAliveStrategy(keepAliveStrategy)
+					.setDefaultCredentialsProvider(credentialsProvider)
+					.build();
+		}
+
+		/**
+		 * Creates the context of a request. Caching the basic scheme for the execution server makes the client send the
+		 * credentials with the request instead of waiting for the server to ask for them, which saves a round trip.
+		 */
+		private HttpClientContext createContext() {
+			AuthCache authCache = new BasicAuthCache();
+			authCache.put(target, new BasicScheme());
+			HttpClientContext context = HttpClientContext.create();
+			context.setCredentialsProvider(credentialsProvider);
+			context.setAuthCache(authCache);
+			return context;
+		}
+	}
+
+	/**
+	 * Connection manager that records how long each request waited for a connection, and whether the connection it got
+	 * was an open one from the pool or had to be opened.
+	 */
+	private static class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+
+		@Override
+		public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+			final ConnectionRequest request = super.requestConnection(route, state);
+			return new ConnectionRequest() {
+				@Override
+				public HttpClientConnection get(long timeout, TimeUnit tunit)
+						throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+					Metrics metrics = Metrics.getInstance();
+					long start = System.nanoTime();
+					HttpClientConnection connection;
+					try {
+						connection = request.get(timeout, tunit);
+					} finally {
+						metrics.timer("remy_business_rules_pool_wait_seconds",
+								"Time spent waiting for a connection to Business Rules.").stop(start);
+					}
+					metrics.counter("remy_business_rules_connections_total",
+							"Number of connections to Business Rules handed out, by whether they were reused or new.",
+							"state", connection.isOpen() ? "reused" : "new").inc();
+					return connection;
+				}
+
+				@Override
+				public boolean cancel() {
+					return request.cancel();
+				}
+			};
+		}
+	}
 }
@@ -0,0 +1,124 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters kept for a single locale of the {@link ItineraryCache}. These are used to size the cache, so they only
+ * track what is needed for that: how often the locale was served from the cache, how often it had to be built and how
+ * long those builds took.
+ */
+public class CacheStats {
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong builds = new AtomicLong();
+	private final AtomicLong buildFailures = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong totalBuildMillis = new AtomicLong();
+	private final AtomicLong lastBuildMillis = new AtomicLong();
+	private final AtomicLong maxBuildMillis = new AtomicLong();
+
+	/**
+	 * Records a request that was served from the cache.
+	 */
+	public void recordHit() {
+		hits.incrementAndGet();
+	}
+
+	/**
+	 * Records a request that could not be served from the cache.
+	 */
+	public void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Records a successful build of the cached data.
+	 *
+	 * @param millis How long the build took, in milliseconds.
+	 */
+	public void recordBuild(long millis) {
+		builds.incrementAndGet();
+		totalBuildMillis.addAndGet(millis);
+		lastBuildMillis.set(millis);
+		long max = maxBuildMillis.get();
+		while (millis > max && !maxBuildMillis.compareAndSet(max, millis)) {
+			max = maxBuildMillis.get();
+		}
+	}
+
+	/**
+	 * Records a build of the cached data that ended with an exception.
+	 */
+	public void recordBuildFailure() {
+		buildFailures.incrementAndGet();
+	}
+
+	/**
+	 * Records that the cached data was evicted, either because it expired or to make room for another locale.
+	 */
+	public void recordEviction() {
+		evictions.incrementAndGet();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getBuilds() {
+		return builds.get();
+	}
+
+	public long getBuildFailures() {
+		return buildFailures.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getTotalBuildMillis() {
+		return totalBuildMillis.get();
+	}
+
+	public long getLastBuildMillis() {
+		return lastBuildMillis.get();
+	}
+
+	public long getMaxBuildMillis() {
+		return maxBuildMillis.get();
+	}
+
+	/**
+	 * Creates a point in time copy of these counters that can be handed to Gson.
+	 *
+	 * @return A Map of counter name to counter value.
+	 */
+	public Map<String, Long> toMap() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		map.put("hits", getHits());
+		map.put("misses", getMisses());
+		map.put("builds", getBuilds());
+		map.put("buildFailures", getBuildFailures());
+		map.put("evictions", getEvictions());
+		map.put("totalBuildMillis", getTotalBuildMillis());
+		map.put("lastBuildMillis", getLastBuildMillis());
+		map.put("maxBuildMillis", getMaxBuildMillis());
+		return map;
+	}
+}
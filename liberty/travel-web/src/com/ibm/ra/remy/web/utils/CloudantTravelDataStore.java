@@ -0,0 +1,71 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.ibm.ra.remy.common.impl.CloudantObject;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyWeather;
+
+/**
+ * The travel data store that queries the views of the Cloudant database, see {@link CloudantUtils}. The connection is
+ * only made when the store is first used.
+ */
+public class CloudantTravelDataStore implements TravelDataStore {
+	private static final String ITINERARY_VIEW = "remy_design/itineraryJsonView";
+	private static final String WEATHER_VIEW = "remy_design/weatherViewFiltered";
+	private static final String RECOMMENDATIONS_VIEW = "remy_design/updatedRecsView";
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getItineraries(java.lang.String)
+	 */
+	@Override
+	public List<CloudantObject> getItineraries(String locale) {
+		return CloudantUtils.getInstance().getDocumentsWithComplexKey(ITINERARY_VIEW,
+				new Object[] { 0, 0, locale, 0 }, new Object[] { Long.MAX_VALUE, Integer.MAX_VALUE, locale, 1 }, CloudantObject.class);
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getWeather(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public List<RemyWeather> getWeather(String city, String country, String locale) {
+		return CloudantUtils.getInstance().getDocuments(WEATHER_VIEW, new Object[]{city, country, locale}, RemyWeather.class);
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getWeatherAsync(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public Future<List<RemyWeather>> getWeatherAsync(String city, String country, String locale) {
+		return CloudantUtils.getInstance().getDocumentsAsync(WEATHER_VIEW, new Object[]{city, country, locale}, RemyWeather.class);
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getRecommendations(java.lang.String)
+	 */
+	@Override
+	public List<RemyEvent> getRecommendations(String locale) {
+		return CloudantUtils.getInstance().getDocumentsWithComplexKey(RECOMMENDATIONS_VIEW,
+				new Object[]{locale,0}, new Object[]{locale,1}, RemyEvent.class);
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getRecommendationsAsync(java.lang.String)
+	 */
+	@Override
+	public Future<List<RemyEvent>> getRecommendationsAsync(String locale) {
+		return CloudantUtils.getInstance().getDocumentsWithComplexKeyAsync(RECOMMENDATIONS_VIEW,
+				new Object[]{locale,0}, new Object[]{locale,1}, RemyEvent.class);
+	}
+}
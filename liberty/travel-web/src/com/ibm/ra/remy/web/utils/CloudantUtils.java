@@ -10,16 +10,29 @@
 
 package com.ibm.ra.remy.web.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import com.cloudant.client.api.Changes;
 import com.cloudant.client.api.CloudantClient;
 import com.cloudant.client.api.Database;
+import com.cloudant.client.api.View;
+import org.lightcouch.CouchDbException;
 
 /**
  *
  * This class communicates with Cloudant and returns relevant information for
  * the user who has been properly authenticated. The functions in this class
  * will be invoked via the MobileFirst Platform Adapters.
+ * 
+ * Queries that do not depend on each other can be run at the same time with the async methods. They run on a fixed
+ * size pool of threads, set with CLOUDANT_QUERY_THREADS in app.properties (default 4).
  */
 public class CloudantUtils {
 	private static final CloudantUtils instance = new CloudantUtils();
@@ -29,6 +42,12 @@ public class CloudantUtils {
 	private static final String USERNAME_KEY="CLOUDANT_USERNAME";
 	private static final String PASSWORD_KEY="CLOUDANT_PASSWORD";
 	private static final String DB_KEY="CLOUDANT_DB_NAME";
+	private static final String QUERY_THREADS_KEY="CLOUDANT_QUERY_THREADS";
+	private static final int DEFAULT_QUERY_THREADS = 4;
+	private final Metrics metrics = Metrics.getInstance();
+	private final ExecutorService queryExecutor = Executors.newFixedThreadPool(
+			Math.max(1, constants.getIntProperty(QUERY_THREADS_KEY, DEFAULT_QUERY_THREADS)),
+			new DaemonThreadFactory("cloudant-query"));
 
 	public static CloudantUtils getInstance() {
 		return instance;
@@ -66,10 +85,15 @@ public class CloudantUtils {
 	 * @return A list of documents retrieved from the view, cast into the specified type. Or a zero sized list if no
 	 * documents were found matching the constraints.
 	 */
-	public <T> List<T> getData(String viewName, Object filter,
-			Class<T> castClass, boolean includDocs) {
-		return db.view(viewName).key(filter).reduce(false)
-				.includeDocs(includDocs).query(castClass);
+	public <T> List<T> getData(final String viewName, final Object filter,
+			final Class<T> castClass, final boolean includDocs) {
+		return query(viewName, new Metrics.Call<List<T>, RuntimeException>() {
+			@Override
+			public List<T> call() {
+				return db.view(viewName).key(filter).reduce(false)
+						.includeDocs(includDocs).query(castClass);
+			}
+		});
 	}
 
 	/**
@@ -81,10 +105,15 @@ public class CloudantUtils {
 	 * @return A list of documents retrieved from the view, cast into the specified type. Or a zero sized list if no
 	 * documents were found matching the constraints.
 	 */
-	public <T> List<T> getData(String viewName, Class<T> castClass,
-			boolean includDocs) {
-		return db.view(viewName).reduce(false).includeDocs(includDocs)
-				.query(castClass);
+	public <T> List<T> getData(final String viewName, final Class<T> castClass,
+			final boolean includDocs) {
+		return query(viewName, new Metrics.Call<List<T>, RuntimeException>() {
+			@Override
+			public List<T> call() {
+				return db.view(viewName).reduce(false).includeDocs(includDocs)
+						.query(castClass);
+			}
+		});
 	}
 
 	/**
@@ -99,11 +128,104 @@ public class CloudantUtils {
 	 * @return A list of documents retrieved from the view, cast into the specified type. Or a zero sized list if no
 	 * documents were found matching the constraints.
 	 */
-	public <T> List<T> getDataWithComplexKey(String viewName,
-			Object[] startKeys, Object[] endKeys, Class<T> castClass,
-			boolean includeDocs) {
-		return db.view(viewName).startKey(startKeys).endKey(endKeys)
-				.reduce(false).includeDocs(includeDocs).query(castClass);
+	public <T> List<T> getDataWithComplexKey(final String viewName,
+			final Object[] startKeys, final Object[] endKeys, final Class<T> castClass,
+			final boolean includeDocs) {
+		return query(viewName, new Metrics.Call<List<T>, RuntimeException>() {
+			@Override
+			public List<T> call() {
+				return db.view(viewName).startKey(startKeys).endKey(endKeys)
+						.reduce(false).includeDocs(includeDocs).query(castClass);
+			}
+		});
+	}
+
+	/**
+	 * Returns the documents of the rows of the given View that match the filter, decoded into their model objects as
+	 * the response streams in, see {@link ViewRowReader}. Unlike {@link #getData(String, Object, Class, boolean)
+	 * getData} no Map is built for the documents.
+	 * 
+	 * @param viewName The name of the view to query.
+	 * @param filter The filter to be applied to the query.
+	 * @param docClass The model class of the documents, such as RemyWeather. Documents of other classes are left out.
+	 * @return The documents, or a zero sized list if no documents were found matching the constraints.
+	 */
+	public <T> List<T> getDocuments(String viewName, Object filter, Class<T> docClass) {
+		return readDocuments(viewName, db.view(viewName).key(filter), docClass);
+	}
+
+	/**
+	 * Starts the same query as {@link #getDocuments(String, Object, Class) getDocuments} on the query thread pool and
+	 * returns without waiting for it.
+	 * 
+	 * @param viewName The name of the view to query.
+	 * @param filter The filter to be applied to the query.
+	 * @param docClass The model class of the documents.
+	 * @return A Future that completes with the documents.
+	 */
+	public <T> Future<List<T>> getDocumentsAsync(final String viewName, final Object filter, final Class<T> docClass) {
+		return queryExecutor.submit(new Callable<List<T>>() {
+			@Override
+			public List<T> call() {
+				return getDocuments(viewName, filter, docClass);
+			}
+		});
+	}
+
+	/**
+	 * Returns the documents of the rows of the given View from the start key to the end key, decoded into their model
+	 * objects as the response streams in, see {@link ViewRowReader}.
+	 * 
+	 * @param viewName The name of the view to query.
+	 * @param startKeys The starting complex key value.
+	 * @param endKeys The ending complex key value.
+	 * @param docClass The model class of the documents. Documents of other classes are left out.
+	 * @return The documents, or a zero sized list if no documents were found matching the constraints.
+	 */
+	public <T> List<T> getDocumentsWithComplexKey(String viewName, Object[] startKeys, Object[] endKeys,
+			Class<T> docClass) {
+		return readDocuments(viewName, db.view(viewName).startKey(startKeys).endKey(endKeys), docClass);
+	}
+
+	/**
+	 * Starts the same query as {@link #getDocumentsWithComplexKey(String, Object[], Object[], Class)
+	 * getDocumentsWithComplexKey} on the query thread pool and returns without waiting for it.
+	 * 
+	 * @param viewName The name of the view to query.
+	 * @param startKeys The starting complex key value.
+	 * @param endKeys The ending complex key value.
+	 * @param docClass The model class of the documents.
+	 * @return A Future that completes with the documents.
+	 */
+	public <T> Future<List<T>> getDocumentsWithComplexKeyAsync(final String viewName, final Object[] startKeys,
+			final Object[] endKeys, final Class<T> docClass) {
+		return queryExecutor.submit(new Callable<List<T>>() {
+			@Override
+			public List<T> call() {
+				return getDocumentsWithComplexKey(viewName, startKeys, endKeys, docClass);
+			}
+		});
+	}
+
+	/**
+	 * Runs a view query with include_docs and reads the documents from the response stream.
+	 */
+	private <T> List<T> readDocuments(String viewName, final View view, final Class<T> docClass) {
+		return query(viewName, new Metrics.Call<List<T>, RuntimeException>() {
+			@Override
+			public List<T> call() {
+				try {
+					InputStream in = view.reduce(false).includeDocs(true).queryForStream();
+					try {
+						return ViewRowReader.readRows(new InputStreamReader(in, MessageUtils.ENCODING), docClass);
+					} finally {
+						in.close();
+					}
+				} catch (IOException ex) {
+					throw new CouchDbException(ex);
+				}
+			}
+		});
 	}
 
 	/**
@@ -114,8 +236,13 @@ public class CloudantUtils {
 	 * @param filter The filter to apply to the View before calling the reduce function.
 	 * @return A String value representing the value returned from the View's reduce function.
 	 */
-	public String getReducedData(String viewName, Object filter) {
-		return db.view(viewName).key(filter).reduce(true).queryForString();
+	public String getReducedData(final String viewName, final Object filter) {
+		return query(viewName, new Metrics.Call<String, RuntimeException>() {
+			@Override
+			public String call() {
+				return db.view(viewName).key(filter).reduce(true).queryForString();
+			}
+		});
 	}
 
 	/**
@@ -127,10 +254,15 @@ public class CloudantUtils {
 	 * @param endKeys The ending complex key value.
 	 * @return A String value representing the value returned from the View's reduce function.
 	 */
-	public String getReducedDataWithComplexKey(String viewName,
-			Object[] startKeys, Object[] endKeys) {
-		return db.view(viewName).startKey(startKeys).endKey(endKeys)
-				.reduce(true).includeDocs(false).queryForString();
+	public String getReducedDataWithComplexKey(final String viewName,
+			final Object[] startKeys, final Object[] endKeys) {
+		return query(viewName, new Metrics.Call<String, RuntimeException>() {
+			@Override
+			public String call() {
+				return db.view(viewName).startKey(startKeys).endKey(endKeys)
+						.reduce(true).includeDocs(false).queryForString();
+			}
+		});
 	}
 
 	/**
@@ -140,8 +272,13 @@ public class CloudantUtils {
 	 * @param viewName The name of the view whose reduce function you wish to call.
 	 * @return A String value representing the value returned from the View's reduce function.
 	 */
-	public String getReducedData(String viewName) {
-		return db.view(viewName).reduce(true).queryForString();
+	public String getReducedData(final String viewName) {
+		return query(viewName, new Metrics.Call<String, RuntimeException>() {
+			@Override
+			public String call() {
+				return db.view(viewName).reduce(true).queryForString();
+			}
+		});
 	}
 
 	/**
@@ -154,10 +291,49 @@ public class CloudantUtils {
 	 * @return A list of "group reduced records" retrieved from the view, cast into the specified type. 
 	 * Or a zero sized list if no documents were found matching the constraints.
 	 */
-	public <T> List<T> getGroupedDataWithComplexKey(String viewName,
-			Object[] startKeys, Object[] endKeys, Class<T> castClass) {
-		return db.view(viewName).startKey(startKeys).endKey(endKeys)
-				.group(true).includeDocs(false).query(castClass);
+	public <T> List<T> getGroupedDataWithComplexKey(final String viewName,
+			final Object[] startKeys, final Object[] endKeys, final Class<T> castClass) {
+		return query(viewName, new Metrics.Call<List<T>, RuntimeException>() {
+			@Override
+			public List<T> call() {
+				return db.view(viewName).startKey(startKeys).endKey(endKeys)
+						.group(true).includeDocs(false).query(castClass);
+			}
+		});
+	}
+	
+	/**
+	 * Opens the continuous changes feed of the database. Each change comes with the current version of the document
+	 * that changed. The feed stays open until it is stopped or the connection is lost.
+	 * 
+	 * @param since The sequence to start after, or "now" to only see changes made from now on.
+	 * @param heartbeatMillis How often Cloudant should send a heartbeat while nothing changes, in milliseconds.
+	 * @return The changes feed. The caller must stop it when done with it.
+	 */
+	public Changes followChanges(String since, long heartbeatMillis) {
+		return db.changes().since(since).includeDocs(true).heartBeat(heartbeatMillis).continuousChanges();
+	}
+	
+	/**
+	 * Runs a query of a view, timing it and counting it if it fails, see {@link Metrics#time(Metrics.Timer,
+	 * Metrics.Counter, Metrics.Call) time}.
+	 */
+	private <T> T query(String viewName, Metrics.Call<T, RuntimeException> call) {
+		return metrics.time(queryTimer(viewName), queryErrors(viewName), call);
+	}
+	
+	/**
+	 * Returns the timer for the queries of a view. Every query is timed, see {@link Metrics}.
+	 */
+	private Metrics.Timer queryTimer(String viewName) {
+		return metrics.timer("remy_cloudant_query_seconds", "Time taken by Cloudant view queries.", "view", viewName);
+	}
+	
+	/**
+	 * Returns the counter of the queries of a view that failed.
+	 */
+	private Metrics.Counter queryErrors(String viewName) {
+		return metrics.counter("remy_cloudant_query_errors_total", "Number of Cloudant view queries that failed.", "view", viewName);
 	}
 	
 	/**
@@ -1,63 +0,0 @@
-/* 
- * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
- * Rights Reserved. This sample program is provided AS IS and may be used,
- * executed, copied and modified without royalty payment by customer (a) for its
- * own instruction and study, (b) in order to develop applications designed to
- * run with an IBM product, either for customer's own internal use or for
- * redistribution by customer, as part of such an application, in customer's own
- * products.
- */
-package com.ibm.ra.remy.web.utils;
-
-import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
-import java.io.ObjectInputStream;
-
-/**
- * Utility for making deep copies (vs. clone()'s shallow copies) of 
- * objects. Objects are first serialized and then deserialized. Error
- * checking is fairly minimal in this implementation. If an object is
- * encountered that cannot be serialized (or that references an object
- * that cannot be serialized) an error is printed to System.err and
- * null is returned. Depending on your specific application, it might
- * make more sense to have copy(...) re-throw the exception.
- *
- * See the source below for an optimized version, if desired.
- * Source: http://javatechniques.com/blog/faster-deep-copies-of-java-objects/
- */
-public class DeepCopy {
-
-    /**
-     * Returns a copy of the object, or null if the object cannot
-     * be serialized.
-     * @return A copy of the object, or null if the object cannot
-     * be serialized.
-     */
-    public static Object copy(Object orig) {
-        Object obj = null;
-        try {
-            // Write the object out to a byte array
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(bos);
-            out.writeObject(orig);
-            out.flush();
-            out.close();
-
-            // Make an input stream from the byte array and read
-            // a copy of the object back in.
-            ObjectInputStream in = new ObjectInputStream(
-                new ByteArrayInputStream(bos.toByteArray()));
-            obj = in.readObject();
-        }
-        catch(IOException e) {
-            e.printStackTrace();
-        }
-        catch(ClassNotFoundException cnfe) {
-            cnfe.printStackTrace();
-        }
-        return obj;
-    }
-
-}
\ No newline at end of file
@@ -0,0 +1,315 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Singleton holding the itinerary data built by {@link ItineraryUtils}, keyed by locale. Each locale is built and
+ * stored on its own, so a build for one locale never blocks readers of another locale.
+ *
+ * The data for a locale is held as an {@link ItinerarySnapshot} that is published through an AtomicReference. Readers
+ * share the current snapshot without copying or locking it, and a rebuild simply swaps in the new snapshot.
+ *
+ * The cache is bounded by the number of locales it will hold. When a new locale is added past that limit the least
+ * recently used locale is evicted. Entries can also be given a time to live, after which they are treated as missing
+ * and rebuilt on the next request. Both limits are read from app.properties:
+ *
+ *     ITINERARY_CACHE_MAX_LOCALES    The maximum number of locales to keep (default 10).
+ *     ITINERARY_CACHE_TTL_MINUTES    Minutes a locale stays cached, 0 to keep it until evicted or refreshed (default 0).
+ *
+ * The counters of a locale are only kept apart once it has had data cached, see {@link #getLabel(String)}. Requests for
+ * locales that have no data are counted together, so they cannot grow the counters without limit.
+ */
+public class ItineraryCache {
+	private static final ItineraryCache instance = new ItineraryCache();
+	private static final String MAX_LOCALES_KEY = "ITINERARY_CACHE_MAX_LOCALES";
+	private static final String TTL_MINUTES_KEY = "ITINERARY_CACHE_TTL_MINUTES";
+	private static final int DEFAULT_MAX_LOCALES = 10;
+	private static final int DEFAULT_TTL_MINUTES = 0;
+	private static final String OTHER_LOCALE = "other";
+
+	private final Logger logger = Logger.getLogger(ItineraryCache.class.getName());
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ConcurrentHashMap<String, CacheStats> stats = new ConcurrentHashMap<String, CacheStats>();
+	private final ConcurrentHashMap<String, BuildProgress> builds = new ConcurrentHashMap<String, BuildProgress>();
+	// The locales that have had data cached. Bounded by the locales in the data, unlike the locales asked for.
+	private final Set<String> knownLocales = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final int maxLocales;
+	private final long ttlMillis;
+
+	/**
+	 * A single cached locale.
+	 */
+	private static class Entry {
+		final AtomicReference<ItinerarySnapshot> snapshot;
+		volatile long lastAccess;
+
+		Entry(ItinerarySnapshot snapshot) {
+			this.snapshot = new AtomicReference<ItinerarySnapshot>(snapshot);
+			this.lastAccess = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Private constructor. Reads the cache limits from app.properties.
+	 */
+	private ItineraryCache() {
+		PropertiesReader constants = PropertiesReader.getInstance();
+		maxLocales = Math.max(1, constants.getIntProperty(MAX_LOCALES_KEY, DEFAULT_MAX_LOCALES));
+		ttlMillis = constants.getIntProperty(TTL_MINUTES_KEY, DEFAULT_TTL_MINUTES) * 60000L;
+	}
+
+	/**
+	 * Gets the singleton instance for the cache.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static ItineraryCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Retrieves the cached snapshot for the given locale and records the lookup as a hit or a miss.
+	 *
+	 * @param locale The locale of the data to retrieve.
+	 * @return The cached snapshot, or null if the locale is not cached or its entry has expired.
+	 */
+	public ItinerarySnapshot get(String locale) {
+		ItinerarySnapshot snapshot = peek(locale);
+		if (snapshot == null) {
+			getStats(locale).recordMiss();
+		} else {
+			getStats(locale).recordHit();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Retrieves the cached snapshot for the given locale without recording a hit or a miss. Used by builders to check
+	 * whether another thread finished a build of the locale just before theirs was started.
+	 *
+	 * @param locale The locale of the data to retrieve.
+	 * @return The cached snapshot, or null if the locale is not cached or its entry has expired.
+	 */
+	public ItinerarySnapshot peek(String locale) {
+		Entry entry = entries.get(locale);
+		if (entry == null) {
+			return null;
+		}
+		ItinerarySnapshot snapshot = entry.snapshot.get();
+		long now = System.currentTimeMillis();
+		if (ttlMillis > 0 && now - snapshot.getBuiltAt() > ttlMillis) {
+			if (entries.remove(locale, entry)) {
+				getStats(locale).recordEviction();
+			}
+			return null;
+		}
+		entry.lastAccess = now;
+		return snapshot;
+	}
+
+	/**
+	 * Retrieves the current snapshot for the given locale without recording a lookup, updating its access time or
+	 * expiring it. Used to report on the cache.
+	 *
+	 * @param locale The locale of the data to retrieve.
+	 * @return The current snapshot, or null if the locale is not cached.
+	 */
+	public ItinerarySnapshot getCurrent(String locale) {
+		Entry entry = entries.get(locale);
+		return entry == null ? null : entry.snapshot.get();
+	}
+
+	/**
+	 * Publishes a newly built snapshot for the given locale, evicting the least recently used locale if the cache is
+	 * full. Readers that already hold the previous snapshot keep using it until they are done.
+	 *
+	 * @param locale The locale the snapshot was built for.
+	 * @param snapshot The snapshot to publish, or null if there was no data for the locale.
+	 * @param buildMillis How long it took to build the snapshot, in milliseconds.
+	 */
+	public void put(String locale, ItinerarySnapshot snapshot, long buildMillis) {
+		if (snapshot == null) {
+			entries.remove(locale);
+		} else {
+			publish(locale, snapshot);
+		}
+		getStats(locale).recordBuild(buildMillis);
+	}
+
+	/**
+	 * Publishes a snapshot that was not built by this server, such as one read back from disk by
+	 * {@link ItinerarySnapshotStore}, without recording it as a build. A locale that already has data is left as it is.
+	 *
+	 * @param locale The locale the snapshot was built for.
+	 * @param snapshot The snapshot to publish.
+	 * @return True if the snapshot was published, false if the locale already had data.
+	 */
+	public boolean restore(String locale, ItinerarySnapshot snapshot) {
+		if (entries.containsKey(locale)) {
+			return false;
+		}
+		publish(locale, snapshot);
+		return true;
+	}
+
+	private void publish(String locale, ItinerarySnapshot snapshot) {
+		knownLocales.add(locale);
+		Entry entry = entries.get(locale);
+		if (entry != null) {
+			entry.snapshot.set(snapshot);
+			entry.lastAccess = System.currentTimeMillis();
+			if (entries.get(locale) == entry) {
+				return;
+			}
+		}
+		entries.put(locale, new Entry(snapshot));
+		evict(locale);
+	}
+
+	/**
+	 * Records that a build for the given locale failed.
+	 *
+	 * @param locale The locale whose build failed.
+	 */
+	public void recordBuildFailure(String locale) {
+		getStats(locale).recordBuildFailure();
+	}
+
+	/**
+	 * Records that a build of the given locale has started. Only one build of a locale runs at a time, see
+	 * {@link ItineraryUtils#getSnapshot(String, boolean) getSnapshot}.
+	 *
+	 * @param locale The locale being built.
+	 * @param totalSteps The number of steps in the build.
+	 * @return The progress object the build should update as it runs.
+	 */
+	public BuildProgress startBuild(String locale, int totalSteps) {
+		BuildProgress progress = new BuildProgress(locale, totalSteps);
+		builds.put(locale, progress);
+		return progress;
+	}
+
+	/**
+	 * Records that a build of the given locale has finished, whether or not it succeeded.
+	 *
+	 * @param progress The progress object returned by {@link #startBuild(String, int) startBuild}.
+	 */
+	public void finishBuild(BuildProgress progress) {
+		builds.remove(progress.getLocale(), progress);
+	}
+
+	/**
+	 * Gets the progress of the build that is running for the given locale.
+	 *
+	 * @param locale The locale to check.
+	 * @return The progress of the running build, or null if the locale is not being built.
+	 */
+	public BuildProgress getBuildProgress(String locale) {
+		return builds.get(locale);
+	}
+
+	/**
+	 * Gets the locales that are either cached or being built, sorted by locale.
+	 *
+	 * @return The set of locales.
+	 */
+	public Set<String> getLocales() {
+		Set<String> locales = new TreeSet<String>(entries.keySet());
+		locales.addAll(builds.keySet());
+		return locales;
+	}
+
+	/**
+	 * Gets the counters of every locale that has been requested, sorted by locale.
+	 *
+	 * @return A Map of locale to the counters for that locale.
+	 */
+	public Map<String, CacheStats> getStats() {
+		return new TreeMap<String, CacheStats>(stats);
+	}
+
+	/**
+	 * The maximum number of locales this cache will hold.
+	 *
+	 * @return The configured locale limit.
+	 */
+	public int getMaxLocales() {
+		return maxLocales;
+	}
+
+	/**
+	 * The number of locales currently cached.
+	 *
+	 * @return The number of cached locales.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The name to count a locale under, in the counters of this cache and in the metrics of its builds. A locale is
+	 * counted under its own name once it has had data cached, and under "other" until then, so locales that are asked
+	 * for but have no data are counted together.
+	 *
+	 * @param locale The locale.
+	 * @return The locale, or "other" if it has never had data cached.
+	 */
+	public String getLabel(String locale) {
+		return locale != null && knownLocales.contains(locale) ? locale : OTHER_LOCALE;
+	}
+
+	/**
+	 * Gets (or creates) the counters for a locale.
+	 */
+	private CacheStats getStats(String locale) {
+		String label = getLabel(locale);
+		CacheStats localeStats = stats.get(label);
+		if (localeStats == null) {
+			CacheStats newStats = new CacheStats();
+			localeStats = stats.putIfAbsent(label, newStats);
+			if (localeStats == null) {
+				localeStats = newStats;
+			}
+		}
+		return localeStats;
+	}
+
+	/**
+	 * Evicts the least recently used locales until the cache is back within its limit. The locale that was just added
+	 * is never chosen.
+	 */
+	private void evict(String keep) {
+		while (entries.size() > maxLocales) {
+			String eldest = null;
+			long eldestAccess = Long.MAX_VALUE;
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				if (!e.getKey().equals(keep) && e.getValue().lastAccess < eldestAccess) {
+					eldest = e.getKey();
+					eldestAccess = e.getValue().lastAccess;
+				}
+			}
+			if (eldest == null || entries.remove(eldest) == null) {
+				return;
+			}
+			getStats(eldest).recordEviction();
+			logger.info(MessageUtils.getInstance().getMessage("MSG0014", new Object[]{eldest}));
+		}
+	}
+}
@@ -0,0 +1,358 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.cloudant.client.api.Changes;
+import com.cloudant.client.api.model.ChangesResult;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyEventDate;
+import com.ibm.ra.remy.common.model.RemyItinerary;
+import com.ibm.ra.remy.common.model.RemyLocation;
+import com.ibm.ra.remy.common.model.RemyTravelData;
+
+/**
+ * Singleton that follows the changes feed of the Cloudant database and keeps the cached itinerary data up to date with
+ * it. Each changed document is mapped to the users and locales it affects, using the type field the design views
+ * switch on:
+ *
+ *     itinerary    The user and locale of the itinerary.
+ *     event        The user of the itinerary the event belongs to. Events that are not part of an itinerary, such as
+ *                  recommendations, affect every user of their locale.
+ *     weather      The users of the locale travelling to the place the weather is for.
+ *     recs         The user and locale of the recommendations.
+ *
+ * Only the affected users of the locales that are cached are rebuilt (see
+ * {@link ItineraryUtils#refreshUsers(String, Set) refreshUsers}). Changes are collected for a short while before the
+ * rebuild starts, so a burst of edits causes a single rebuild. Changes to the design document, and deleted documents
+ * that cannot be traced to a user, cause a full refresh of every cached locale instead.
+ *
+ * The listener is configured in app.properties:
+ *
+ *     ITINERARY_CHANGES_FEED           1 to follow the changes feed, 0 to only refresh on request (default 0). It
+ *                                      is not followed when the itinerary data comes from the memory store (see
+ *                                      {@link TravelDataStores}).
+ *     ITINERARY_CHANGES_DELAY_MILLIS   Milliseconds to collect changes for before rebuilding (default 1000).
+ */
+public class ItineraryChangesListener {
+	private static final ItineraryChangesListener instance = new ItineraryChangesListener();
+	private static final String ENABLED_KEY = "ITINERARY_CHANGES_FEED";
+	private static final String DELAY_KEY = "ITINERARY_CHANGES_DELAY_MILLIS";
+	private static final int DEFAULT_DELAY = 1000;
+	private static final long HEARTBEAT_MILLIS = 30000;
+	private static final long MIN_RECONNECT_MILLIS = 1000;
+	private static final long MAX_RECONNECT_MILLIS = 60000;
+
+	private final Logger logger = Logger.getLogger(ItineraryChangesListener.class.getName());
+	private final MessageUtils mUtils = MessageUtils.getInstance();
+	private final ItineraryCache cache = ItineraryCache.getInstance();
+	private final Metrics metrics = Metrics.getInstance();
+	private final ScheduledExecutorService rebuildExecutor;
+	private final boolean enabled;
+	private final long delayMillis;
+	// The users to rebuild for each locale, where a null set means every user. Guarded by this.
+	private final Map<String, Set<String>> pending = new HashMap<String, Set<String>>();
+	private boolean rebuildScheduled;
+
+	/**
+	 * Private constructor. Starts following the changes feed if it is turned on.
+	 */
+	private ItineraryChangesListener() {
+		PropertiesReader constants = PropertiesReader.getInstance();
+		enabled = constants.getIntProperty(ENABLED_KEY, 0) > 0 && TravelDataStores.isCloudant();
+		delayMillis = Math.max(0, constants.getIntProperty(DELAY_KEY, DEFAULT_DELAY));
+		rebuildExecutor = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("itinerary-changes"));
+		if (enabled) {
+			ExecutorService feedExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("cloudant-changes"));
+			feedExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					follow();
+				}
+			});
+			feedExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the singleton instance for the listener.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static ItineraryChangesListener getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return True if the changes feed is being followed.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Handles a single change from the feed, queueing a rebuild of whatever it affects.
+	 *
+	 * @param id The id of the document that changed.
+	 * @param doc The document as it is now, or null if it was deleted.
+	 */
+	public void changed(String id, JsonObject doc) {
+		String type = doc == null ? "deleted" : getString(doc, "type");
+		metrics.counter("remy_cloudant_changes_total", "Number of changes read from the Cloudant changes feed.",
+				"type", type == null ? "none" : type).inc();
+		for (Map.Entry<String, Set<String>> locale : getAffected(id, doc).entrySet()) {
+			if (locale.getValue() == null) {
+				affect(locale.getKey(), null);
+				continue;
+			}
+			for (String user : locale.getValue()) {
+				affect(locale.getKey(), user);
+			}
+		}
+	}
+
+	/**
+	 * Maps a single change from the feed to the users and locales it affects, without queueing anything. Only locales
+	 * that are cached are affected.
+	 *
+	 * @param id The id of the document that changed.
+	 * @param doc The document as it is now, or null if it was deleted.
+	 * @return The users to rebuild for each affected locale, where a null set means every user of the locale.
+	 */
+	public Map<String, Set<String>> getAffected(String id, JsonObject doc) {
+		Map<String, Set<String>> affected = new HashMap<String, Set<String>>();
+		String type = doc == null ? null : getString(doc, "type");
+		if (id.startsWith("_design/")) {
+			addAll(affected);
+		} else if (doc == null) {
+			changedDeleted(id, affected);
+		} else if ("itinerary".equals(type) || "recs".equals(type)) {
+			add(affected, getString(doc, "locale"), getString(doc, "user"));
+		} else if ("event".equals(type)) {
+			changedEvent(doc, affected);
+		} else if ("weather".equals(type)) {
+			changedWeather(doc, affected);
+		}
+		return affected;
+	}
+
+	/**
+	 * Reads the changes feed until the connection is lost, then opens it again after a growing delay. Changes made
+	 * while the feed was closed are read when it is opened again, since it continues from the last change seen.
+	 */
+	private void follow() {
+		String since = "now";
+		long reconnectMillis = MIN_RECONNECT_MILLIS;
+		while (true) {
+			Changes feed = null;
+			try {
+				feed = CloudantUtils.getInstance().followChanges(since, HEARTBEAT_MILLIS);
+				reconnectMillis = MIN_RECONNECT_MILLIS;
+				while (feed.hasNext()) {
+					ChangesResult.Row row = feed.next();
+					since = row.getSeq();
+					changed(row.getId(), row.isDeleted() ? null : row.getDoc());
+				}
+			} catch (Exception ex) {
+				logger.warning(mUtils.getMessage("MSG0021", new Object[]{reconnectMillis, ex.getMessage()}));
+			} finally {
+				if (feed != null) {
+					feed.stop();
+				}
+			}
+			try {
+				Thread.sleep(reconnectMillis);
+			} catch (InterruptedException ex) {
+				return;
+			}
+			reconnectMillis = Math.min(MAX_RECONNECT_MILLIS, reconnectMillis * 2);
+		}
+	}
+
+	/**
+	 * An event belongs to the user of its itinerary. An event that is not part of an itinerary that is cached may be
+	 * used as a recommendation for anyone, so every user of its locale is rebuilt.
+	 */
+	private void changedEvent(JsonObject doc, Map<String, Set<String>> affected) {
+		String locale = getString(doc, "locale");
+		ItinerarySnapshot snapshot = locale == null ? null : cache.getCurrent(locale);
+		if (snapshot == null) {
+			return;
+		}
+		add(affected, locale, findUser(snapshot, getString(doc, "itineraryId")));
+	}
+
+	/**
+	 * Weather affects the users travelling to the place it is for.
+	 */
+	private void changedWeather(JsonObject doc, Map<String, Set<String>> affected) {
+		String locale = getString(doc, "locale");
+		ItinerarySnapshot snapshot = locale == null ? null : cache.getCurrent(locale);
+		JsonElement location = doc.get("location");
+		if (snapshot == null || location == null || !location.isJsonObject()) {
+			return;
+		}
+		String city = getString(location.getAsJsonObject(), "city");
+		String country = getString(location.getAsJsonObject(), "country");
+		for (Map.Entry<String, RemyTravelData> user : snapshot.getData().entrySet()) {
+			for (RemyItinerary itinerary : user.getValue().getItineraries()) {
+				RemyLocation initial = itinerary.getInitialLocation();
+				if (initial != null && equal(city, initial.getCity()) && equal(country, initial.getCountry())) {
+					add(affected, locale, user.getKey());
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A deleted document no longer says what it was, so it is looked up in the cached data instead. If it is not found
+	 * there every cached locale is refreshed, since it may have been used by any of them.
+	 */
+	private void changedDeleted(String id, Map<String, Set<String>> affected) {
+		boolean found = false;
+		for (String locale : cache.getLocales()) {
+			ItinerarySnapshot snapshot = cache.getCurrent(locale);
+			String user = snapshot == null ? null : findUser(snapshot, id);
+			if (user != null) {
+				add(affected, locale, user);
+				found = true;
+			}
+		}
+		if (!found) {
+			addAll(affected);
+		}
+	}
+
+	/**
+	 * Finds the user that owns the itinerary or event with the given id in a snapshot.
+	 *
+	 * @return The user, or null if no itinerary or event of the snapshot has the id.
+	 */
+	private static String findUser(ItinerarySnapshot snapshot, String id) {
+		if (id == null) {
+			return null;
+		}
+		for (Map.Entry<String, RemyTravelData> user : snapshot.getData().entrySet()) {
+			for (RemyItinerary itinerary : user.getValue().getItineraries()) {
+				if (id.equals(itinerary.getId())) {
+					return user.getKey();
+				}
+				if (itinerary.getAllDates() == null) {
+					continue;
+				}
+				for (RemyEventDate date : itinerary.getAllDates()) {
+					for (RemyEvent event : date.getEvents()) {
+						if (id.equals(event.getId())) {
+							return user.getKey();
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds every user of every cached locale.
+	 */
+	private void addAll(Map<String, Set<String>> affected) {
+		for (String locale : cache.getLocales()) {
+			add(affected, locale, null);
+		}
+	}
+
+	/**
+	 * Adds a user of a locale, or every user of the locale if the user is null. Locales that are not cached are left
+	 * alone, they will be built from the current data when they are next asked for.
+	 */
+	private void add(Map<String, Set<String>> affected, String locale, String user) {
+		if (locale == null || cache.getCurrent(locale) == null) {
+			return;
+		}
+		if (user == null) {
+			affected.put(locale, null);
+		} else if (!affected.containsKey(locale)) {
+			Set<String> users = new HashSet<String>();
+			users.add(user);
+			affected.put(locale, users);
+		} else if (affected.get(locale) != null) {
+			affected.get(locale).add(user);
+		}
+	}
+
+	/**
+	 * Queues a rebuild of a user of a locale, or of every user of the locale if the user is null.
+	 */
+	private synchronized void affect(String locale, String user) {
+		add(pending, locale, user);
+		if (!pending.containsKey(locale)) {
+			return;
+		}
+		if (!rebuildScheduled) {
+			rebuildScheduled = true;
+			rebuildExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					rebuild();
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Rebuilds everything that was queued. A locale whose users could not be rebuilt is refreshed in full, which is
+	 * retried if it fails.
+	 */
+	private void rebuild() {
+		Map<String, Set<String>> affected;
+		synchronized (this) {
+			affected = new HashMap<String, Set<String>>(pending);
+			pending.clear();
+			rebuildScheduled = false;
+		}
+		for (Map.Entry<String, Set<String>> locale : affected.entrySet()) {
+			Set<String> users = locale.getValue();
+			if (users == null) {
+				ItineraryRefresher.getInstance().refresh(locale.getKey());
+				continue;
+			}
+			logger.info(mUtils.getMessage("MSG0022", new Object[]{locale.getKey(), new TreeSet<String>(users)}));
+			try {
+				new ItineraryUtils().refreshUsers(locale.getKey(), users);
+			} catch (Exception ex) {
+				logger.severe(mUtils.getMessage("MSG0023", new Object[]{locale.getKey(), ex.getMessage()}));
+				ItineraryRefresher.getInstance().refresh(locale.getKey());
+			}
+		}
+	}
+
+	private static String getString(JsonObject object, String name) {
+		JsonElement value = object.get(name);
+		return value == null || !value.isJsonPrimitive() ? null : value.getAsString();
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Encodes the itineraries of a user as differences from one another, and decodes them again.
+ *
+ * The versions of an itinerary that the recommendation engines generate are mostly the same, and each one builds on
+ * the one before it, so each itinerary after the first is replaced by a patch against the itinerary before it (the
+ * base). The first itinerary is kept in full, and a client rebuilds the others in order. A patch is an itinerary
+ * object with:
+ *
+ *     baseVersion    The version of the base itinerary.
+ *     version        The version of this itinerary.
+ *     (any field)    Each itinerary field, other than dates, whose value differs from the base.
+ *     dates          One object for each date that differs from the same date in the base, holding:
+ *
+ *         date       The date, which identifies the date of the base that is patched.
+ *         (any field)    Each date field, other than events, whose value differs from the base.
+ *         removed    The _id of each event of the base date that is not in this date.
+ *         replaced   Each event of this date whose _id is in the base date but whose content differs.
+ *         added      Each event of this date whose _id is not in the base date.
+ *         order      The _id of every event of this date in order, only sent when removing, replacing in place and
+ *                    appending the added events does not already give the right order.
+ *         events     Every event of this date, sent instead of the above when the events can not be told apart by
+ *                    their _id.
+ *
+ * An itinerary that can not be expressed as a patch (for example because it has different dates than the base) is
+ * kept as it is, so a client can tell the two apart by the baseVersion field. Time fields in a patch are time offsets
+ * like in a full itinerary, so {@link ItineraryTimeShift} shifts both the same way.
+ *
+ * The encoded form is what {@link ItinerarySnapshot} keeps, and what is sent to clients that ask for it.
+ */
+public class ItineraryDelta {
+	static final String ITINERARIES = "itineraries";
+	static final String DATES = "dates";
+	static final String EVENTS = "events";
+	static final String BASE_VERSION = "baseVersion";
+	static final String VERSION = "version";
+	static final String DATE = "date";
+	static final String ID = "_id";
+	static final String REMOVED = "removed";
+	static final String REPLACED = "replaced";
+	static final String ADDED = "added";
+	static final String ORDER = "order";
+
+	private ItineraryDelta() {
+	}
+
+	/**
+	 * Replaces each itinerary of a user after the first with a patch against the itinerary before it, where possible.
+	 * The given JSON is not modified; the result shares the parts that did not change with it.
+	 *
+	 * @param travelData The JSON form of a {@link com.ibm.ra.remy.common.model.RemyTravelData RemyTravelData}.
+	 * @return The encoded travel data.
+	 */
+	public static JsonElement encode(JsonElement travelData) {
+		JsonArray itineraries = getItineraries(travelData);
+		if (itineraries == null || itineraries.size() < 2) {
+			return travelData;
+		}
+		JsonArray encoded = new JsonArray();
+		encoded.add(itineraries.get(0));
+		for (int i = 1; i < itineraries.size(); i++) {
+			JsonElement base = itineraries.get(i - 1);
+			JsonElement itinerary = itineraries.get(i);
+			JsonObject patch = null;
+			if (base.isJsonObject() && itinerary.isJsonObject()) {
+				patch = diffItinerary(base.getAsJsonObject(), itinerary.getAsJsonObject());
+			}
+			encoded.add(patch != null ? patch : itinerary);
+		}
+		return replaceItineraries(travelData.getAsJsonObject(), encoded);
+	}
+
+	/**
+	 * Rebuilds one full itinerary from the form returned by {@link #encode(JsonElement) encode}. The itineraries of a
+	 * user are decoded in order, one at a time, so only the itinerary before the one being decoded has to be kept.
+	 *
+	 * @param previous The full itinerary before this one, or null for the first itinerary.
+	 * @param itinerary The encoded itinerary, which is either a patch against the previous itinerary or kept in full.
+	 * @return The full itinerary. It shares the parts the patch did not change with the previous itinerary.
+	 */
+	public static JsonElement decodeItinerary(JsonElement previous, JsonElement itinerary) {
+		// Only an itinerary that follows an object is ever encoded as a patch.
+		if (previous != null && previous.isJsonObject() && itinerary.isJsonObject()
+				&& itinerary.getAsJsonObject().has(BASE_VERSION)) {
+			return patchItinerary(previous.getAsJsonObject(), itinerary.getAsJsonObject());
+		}
+		return itinerary;
+	}
+
+	private static JsonArray getItineraries(JsonElement travelData) {
+		if (travelData == null || !travelData.isJsonObject()) {
+			return null;
+		}
+		JsonElement itineraries = travelData.getAsJsonObject().get(ITINERARIES);
+		return itineraries != null && itineraries.isJsonArray() ? itineraries.getAsJsonArray() : null;
+	}
+
+	private static JsonObject replaceItineraries(JsonObject travelData, JsonArray itineraries) {
+		JsonObject result = new JsonObject();
+		for (Map.Entry<String, JsonElement> field : travelData.entrySet()) {
+			result.add(field.getKey(), ITINERARIES.equals(field.getKey()) ? itineraries : field.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the patch that turns the base itinerary into the target, or returns null if the target can not be
+	 * expressed as a patch.
+	 */
+	private static JsonObject diffItinerary(JsonObject base, JsonObject target) {
+		if (!sameKeys(base, target) || !base.has(VERSION)) {
+			return null;
+		}
+		JsonArray baseDates = getArray(base, DATES);
+		JsonArray targetDates = getArray(target, DATES);
+		if ((baseDates == null) != (targetDates == null)
+				|| (baseDates != null && !sameDates(baseDates, targetDates))) {
+			return null;
+		}
+
+		JsonObject patch = new JsonObject();
+		patch.add(BASE_VERSION, base.get(VERSION));
+		patch.add(VERSION, target.get(VERSION));
+		for (Map.Entry<String, JsonElement> field : target.entrySet()) {
+			String name = field.getKey();
+			if (!DATES.equals(name) && !VERSION.equals(name) && !same(base.get(name), field.getValue())) {
+				patch.add(name, field.getValue());
+			}
+		}
+		if (baseDates != null) {
+			JsonArray datePatches = new JsonArray();
+			for (int i = 0; i < baseDates.size(); i++) {
+				JsonObject baseDate = baseDates.get(i).getAsJsonObject();
+				JsonObject targetDate = targetDates.get(i).getAsJsonObject();
+				if (!same(baseDate, targetDate)) {
+					JsonObject datePatch = diffDate(baseDate, targetDate);
+					if (datePatch == null) {
+						return null;
+					}
+					datePatches.add(datePatch);
+				}
+			}
+			patch.add(DATES, datePatches);
+		}
+		return patch;
+	}
+
+	/**
+	 * Whether two lists of dates hold the same days in the same order, each day once, so that the dates can be
+	 * patched one by one.
+	 */
+	private static boolean sameDates(JsonArray baseDates, JsonArray targetDates) {
+		if (baseDates.size() != targetDates.size()) {
+			return false;
+		}
+		Set<String> seen = new HashSet<String>();
+		for (int i = 0; i < baseDates.size(); i++) {
+			JsonElement baseDate = baseDates.get(i);
+			JsonElement targetDate = targetDates.get(i);
+			if (!baseDate.isJsonObject() || !targetDate.isJsonObject()) {
+				return false;
+			}
+			JsonElement day = baseDate.getAsJsonObject().get(DATE);
+			if (day == null || !same(day, targetDate.getAsJsonObject().get(DATE)) || !seen.add(day.toString())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static JsonObject diffDate(JsonObject base, JsonObject target) {
+		if (!sameKeys(base, target)) {
+			return null;
+		}
+		JsonObject patch = new JsonObject();
+		patch.add(DATE, target.get(DATE));
+		for (Map.Entry<String, JsonElement> field : target.entrySet()) {
+			String name = field.getKey();
+			if (!DATE.equals(name) && !EVENTS.equals(name) && !same(base.get(name), field.getValue())) {
+				patch.add(name, field.getValue());
+			}
+		}
+
+		JsonArray baseEvents = getArray(base, EVENTS);
+		JsonArray targetEvents = getArray(target, EVENTS);
+		if (same(baseEvents, targetEvents)) {
+			return patch;
+		}
+		Map<String, JsonElement> baseById = indexById(baseEvents);
+		Map<String, JsonElement> targetById = indexById(targetEvents);
+		if (baseById == null || targetById == null) {
+			patch.add(EVENTS, target.get(EVENTS));
+			return patch;
+		}
+
+		JsonArray removed = new JsonArray();
+		JsonArray replaced = new JsonArray();
+		JsonArray added = new JsonArray();
+		List<String> applied = new ArrayList<String>();
+		for (Map.Entry<String, JsonElement> event : baseById.entrySet()) {
+			JsonElement targetEvent = targetById.get(event.getKey());
+			if (targetEvent == null) {
+				removed.add(new JsonPrimitive(event.getKey()));
+			} else {
+				applied.add(event.getKey());
+				if (!same(event.getValue(), targetEvent)) {
+					replaced.add(targetEvent);
+				}
+			}
+		}
+		for (Map.Entry<String, JsonElement> event : targetById.entrySet()) {
+			if (!baseById.containsKey(event.getKey())) {
+				added.add(event.getValue());
+				applied.add(event.getKey());
+			}
+		}
+		if (removed.size() > 0) {
+			patch.add(REMOVED, removed);
+		}
+		if (replaced.size() > 0) {
+			patch.add(REPLACED, replaced);
+		}
+		if (added.size() > 0) {
+			patch.add(ADDED, added);
+		}
+		List<String> order = new ArrayList<String>(targetById.keySet());
+		if (!order.equals(applied)) {
+			JsonArray ids = new JsonArray();
+			for (String id : order) {
+				ids.add(new JsonPrimitive(id));
+			}
+			patch.add(ORDER, ids);
+		}
+		return patch;
+	}
+
+	private static JsonObject patchItinerary(JsonObject base, JsonObject patch) {
+		Map<String, JsonObject> datePatches = new HashMap<String, JsonObject>();
+		JsonArray dates = getArray(patch, DATES);
+		if (dates != null) {
+			for (JsonElement datePatch : dates) {
+				datePatches.put(datePatch.getAsJsonObject().get(DATE).toString(), datePatch.getAsJsonObject());
+			}
+		}
+
+		JsonObject itinerary = new JsonObject();
+		for (Map.Entry<String, JsonElement> field : base.entrySet()) {
+			String name = field.getKey();
+			if (DATES.equals(name) && field.getValue().isJsonArray()) {
+				JsonArray patchedDates = new JsonArray();
+				for (JsonElement date : field.getValue().getAsJsonArray()) {
+					JsonObject datePatch = datePatches.get(date.getAsJsonObject().get(DATE).toString());
+					patchedDates.add(datePatch == null ? date : patchDate(date.getAsJsonObject(), datePatch));
+				}
+				itinerary.add(name, patchedDates);
+			} else {
+				itinerary.add(name, patch.has(name) ? patch.get(name) : field.getValue());
+			}
+		}
+		return itinerary;
+	}
+
+	private static JsonObject patchDate(JsonObject base, JsonObject patch) {
+		JsonObject date = new JsonObject();
+		for (Map.Entry<String, JsonElement> field : base.entrySet()) {
+			String name = field.getKey();
+			if (EVENTS.equals(name) && !patch.has(EVENTS) && field.getValue().isJsonArray()) {
+				date.add(name, patchEvents(field.getValue().getAsJsonArray(), patch));
+			} else {
+				date.add(name, patch.has(name) ? patch.get(name) : field.getValue());
+			}
+		}
+		return date;
+	}
+
+	private static JsonArray patchEvents(JsonArray baseEvents, JsonObject patch) {
+		Set<String> removed = new HashSet<String>();
+		JsonArray removedIds = getArray(patch, REMOVED);
+		if (removedIds != null) {
+			for (JsonElement id : removedIds) {
+				removed.add(id.getAsString());
+			}
+		}
+		Map<String, JsonElement> replaced = indexById(getArray(patch, REPLACED));
+
+		Map<String, JsonElement> events = new LinkedHashMap<String, JsonElement>();
+		for (JsonElement event : baseEvents) {
+			String id = getId(event);
+			if (!removed.contains(id)) {
+				JsonElement replacement = replaced == null ? null : replaced.get(id);
+				events.put(id, replacement != null ? replacement : event);
+			}
+		}
+		JsonArray added = getArray(patch, ADDED);
+		if (added != null) {
+			for (JsonElement event : added) {
+				events.put(getId(event), event);
+			}
+		}
+
+		JsonArray result = new JsonArray();
+		JsonArray order = getArray(patch, ORDER);
+		if (order != null) {
+			for (JsonElement id : order) {
+				result.add(events.get(id.getAsString()));
+			}
+		} else {
+			for (JsonElement event : events.values()) {
+				result.add(event);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Indexes events by their _id, keeping their order, or returns null if an event has no _id or two events have
+	 * the same one.
+	 */
+	private static Map<String, JsonElement> indexById(JsonArray events) {
+		Map<String, JsonElement> byId = new LinkedHashMap<String, JsonElement>();
+		if (events != null) {
+			for (JsonElement event : events) {
+				String id = getId(event);
+				if (id == null || byId.put(id, event) != null) {
+					return null;
+				}
+			}
+		}
+		return byId;
+	}
+
+	private static String getId(JsonElement event) {
+		if (event == null || !event.isJsonObject()) {
+			return null;
+		}
+		JsonElement id = event.getAsJsonObject().get(ID);
+		return id != null && id.isJsonPrimitive() ? id.getAsString() : null;
+	}
+
+	private static JsonArray getArray(JsonObject object, String name) {
+		JsonElement value = object.get(name);
+		return value != null && value.isJsonArray() ? value.getAsJsonArray() : null;
+	}
+
+	/**
+	 * Whether two objects have the same fields in the same order, so that patching the fields of one in place gives
+	 * exactly the other.
+	 */
+	private static boolean sameKeys(JsonObject base, JsonObject target) {
+		List<String> baseKeys = new ArrayList<String>();
+		for (Map.Entry<String, JsonElement> field : base.entrySet()) {
+			baseKeys.add(field.getKey());
+		}
+		List<String> targetKeys = new ArrayList<String>();
+		for (Map.Entry<String, JsonElement> field : target.entrySet()) {
+			targetKeys.add(field.getKey());
+		}
+		return baseKeys.equals(targetKeys);
+	}
+
+	/**
+	 * Whether two values serialize to the same JSON, including the order of their fields.
+	 */
+	private static boolean same(JsonElement a, JsonElement b) {
+		if (a == b) {
+			return true;
+		}
+		return a != null && b != null && a.toString().equals(b.toString());
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The response body for an {@link ItinerarySnapshot} on a given day, serialized once as UTF-8 JSON and once as gzip
+ * compressed JSON. Requests for the same locale on the same day are then answered by writing these bytes as they are.
+ * A payload holds either the data of every user in the snapshot or the data of a single user, with either full
+ * itineraries or patches (see {@link ItineraryDelta}).
+ *
+ * The arrays returned by this class are shared by every request and must not be modified.
+ */
+public class ItineraryPayload {
+	private final long baseline;
+	private final byte[] raw;
+	private final byte[] gzip;
+
+	/**
+	 * Serializes and compresses the data of one user, or every user, in the given snapshot.
+	 *
+	 * @param snapshot The snapshot to serialize.
+	 * @param user The user whose data should be serialized, or null for every user.
+	 * @param delta True to serialize the later versions of each itinerary as patches, false to serialize them in full.
+	 * @param baseline The value added to the time offsets of the snapshot, see {@link ItinerarySnapshot#getTodayBaseline()}.
+	 * @throws IOException If the snapshot could not be serialized or compressed.
+	 */
+	public ItineraryPayload(ItinerarySnapshot snapshot, String user, boolean delta, long baseline) throws IOException {
+		this.baseline = baseline;
+
+		ByteArrayOutputStream rawBytes = new ByteArrayOutputStream(user == null ? 64 * 1024 : 8 * 1024);
+		Writer writer = new OutputStreamWriter(rawBytes, MessageUtils.ENCODING);
+		if (user == null) {
+			snapshot.writeJson(baseline, delta, writer);
+		} else {
+			snapshot.writeUserJson(user, baseline, delta, writer);
+		}
+		writer.close();
+		this.raw = rawBytes.toByteArray();
+
+		ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream(raw.length / 4 + 64);
+		GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBytes);
+		gzipStream.write(raw);
+		gzipStream.close();
+		this.gzip = gzipBytes.toByteArray();
+	}
+
+	/**
+	 * @return The value that was added to the time offsets of the snapshot.
+	 */
+	public long getBaseline() {
+		return baseline;
+	}
+
+	/**
+	 * @return The JSON for the snapshot, encoded as UTF-8.
+	 */
+	public byte[] getRaw() {
+		return raw;
+	}
+
+	/**
+	 * @return The JSON for the snapshot, encoded as UTF-8 and compressed with gzip.
+	 */
+	public byte[] getGzip() {
+		return gzip;
+	}
+}
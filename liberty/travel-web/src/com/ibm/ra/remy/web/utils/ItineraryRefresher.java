@@ -0,0 +1,149 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Singleton that rebuilds the itinerary data in the background. While a locale is being rebuilt, requests for it keep
+ * getting the previous {@link ItinerarySnapshot}; the new snapshot replaces it in the {@link ItineraryCache} as soon as
+ * the build finishes.
+ *
+ * The cached locales can also be refreshed on a schedule by setting the following in app.properties:
+ *
+ *     ITINERARY_REFRESH_INTERVAL_MINUTES    Minutes between refreshes of every cached locale, 0 to only refresh on
+ *                                           request (default 0).
+ */
+public class ItineraryRefresher {
+	private static final ItineraryRefresher instance = new ItineraryRefresher();
+	private static final String REFRESH_INTERVAL_KEY = "ITINERARY_REFRESH_INTERVAL_MINUTES";
+	private static final int DEFAULT_REFRESH_INTERVAL = 0;
+
+	private final Logger logger = Logger.getLogger(ItineraryRefresher.class.getName());
+	private final MessageUtils mUtils = MessageUtils.getInstance();
+	private final ItineraryCache cache = ItineraryCache.getInstance();
+	private final ConcurrentHashMap<String, Future<ItinerarySnapshot>> pending = new ConcurrentHashMap<String, Future<ItinerarySnapshot>>();
+	private final ScheduledExecutorService executor;
+	private final int intervalMinutes;
+
+	/**
+	 * A background rebuild of one locale. It removes itself from the pending refreshes when it is done, so the next
+	 * refresh request starts a new build, and logs the failure if the build did not succeed.
+	 */
+	private class RefreshTask extends FutureTask<ItinerarySnapshot> {
+		private final String locale;
+
+		RefreshTask(final String locale) {
+			super(new Callable<ItinerarySnapshot>() {
+				@Override
+				public ItinerarySnapshot call() throws Exception {
+					return new ItineraryUtils().getSnapshot(locale, true);
+				}
+			});
+			this.locale = locale;
+		}
+
+		@Override
+		protected void done() {
+			pending.remove(locale, this);
+			if (!isCancelled()) {
+				try {
+					get();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException ex) {
+					logger.severe(mUtils.getMessage("MSG0016", new Object[]{locale, ex.getCause().getMessage()}));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Private constructor. Starts the scheduled refresh if one is configured.
+	 */
+	private ItineraryRefresher() {
+		intervalMinutes = Math.max(0, PropertiesReader.getInstance().getIntProperty(REFRESH_INTERVAL_KEY, DEFAULT_REFRESH_INTERVAL));
+		executor = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("itinerary-refresh"));
+		if (intervalMinutes > 0) {
+			executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					refreshAll();
+				}
+			}, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Gets the singleton instance for the refresher.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static ItineraryRefresher getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts a background rebuild of the given locale, unless one is already running, in which case the running
+	 * rebuild is returned instead.
+	 *
+	 * @param locale The locale to rebuild.
+	 * @return A Future that completes with the new snapshot, or null if there is no data for the locale.
+	 */
+	public Future<ItinerarySnapshot> refresh(String locale) {
+		Future<ItinerarySnapshot> running = pending.get(locale);
+		if (running != null) {
+			return running;
+		}
+		RefreshTask task = new RefreshTask(locale);
+		running = pending.putIfAbsent(locale, task);
+		if (running != null) {
+			return running;
+		}
+		logger.info(mUtils.getMessage("MSG0015", new Object[]{locale}));
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Whether a background rebuild of the given locale has been requested and has not finished yet.
+	 *
+	 * @param locale The locale to check.
+	 * @return True if a rebuild is pending or running.
+	 */
+	public boolean isRefreshing(String locale) {
+		return pending.containsKey(locale);
+	}
+
+	/**
+	 * @return The number of minutes between scheduled refreshes, 0 if there are no scheduled refreshes.
+	 */
+	public int getIntervalMinutes() {
+		return intervalMinutes;
+	}
+
+	/**
+	 * Queues a rebuild of every cached locale. The rebuilds run one after the other on the refresh thread.
+	 */
+	private void refreshAll() {
+		for (String locale : cache.getLocales()) {
+			refresh(locale);
+		}
+	}
+}
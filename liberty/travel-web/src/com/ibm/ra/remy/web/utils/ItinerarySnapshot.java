@@ -0,0 +1,306 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.ra.remy.common.model.RemyTravelData;
+import com.ibm.ra.remy.common.utils.DateUtils;
+
+/**
+ * The itinerary data built for one locale, published once and then shared by every request for that locale.
+ *
+ * A snapshot is never modified after it is created, so readers do not need to copy it or hold a lock while they use
+ * it. The times in the stored itineraries are still offsets from midnight (see {@link RemyTravelData#fixTime()}). The
+ * JSON form of the data is generated once when the snapshot is created, and {@link #writeJson(long, boolean, Writer) writeJson}
+ * adds the day baseline to the time fields as it writes them out, so the shift for "today" never touches the model.
+ *
+ * The response body for the current day is kept with the snapshot as an {@link ItineraryPayload}, so it is only
+ * serialized and compressed again when the snapshot is replaced or the day changes. Keeping the bodies can be turned
+ * off with ITINERARY_PAYLOAD_CACHE=0 in app.properties, in which case every response is written straight from the
+ * snapshot (see {@link ItineraryStreamingOutput}) and no body is ever held in memory as a whole.
+ *
+ * The snapshot also indexes its data by user, so the data of a single user can be served without serializing the data
+ * of every other user. Each user's response body is kept the same way as the body for all users.
+ *
+ * The JSON of each user is kept in the form produced by {@link ItineraryDelta}, where every itinerary after the first
+ * is a patch against the one before it, since the versions of an itinerary are mostly the same. Clients that ask for it get
+ * that form as it is; everyone else gets the full itineraries, which are rebuilt from the patches as they are written.
+ * They are rebuilt one itinerary at a time, so writing a response holds at most two full itineraries of one user on top
+ * of the snapshot itself, whatever the number of users and versions.
+ */
+public class ItinerarySnapshot {
+	private static final AtomicLong versions = new AtomicLong();
+	private static final Gson gson = new Gson();
+	private static final String PAYLOAD_CACHE_KEY = "ITINERARY_PAYLOAD_CACHE";
+	private static final boolean payloadCacheEnabled = PropertiesReader.getInstance().getIntProperty(PAYLOAD_CACHE_KEY, 1) > 0;
+
+	private final String locale;
+	private final long version;
+	private final long builtAt;
+	private final Map<String, RemyTravelData> data;
+	private final Map<String, JsonElement> users = new LinkedHashMap<String, JsonElement>();
+	private final AtomicReference<ItineraryPayload> payload = new AtomicReference<ItineraryPayload>();
+	private final AtomicReference<ItineraryPayload> deltaPayload = new AtomicReference<ItineraryPayload>();
+	private final ConcurrentHashMap<String, ItineraryPayload> userPayloads = new ConcurrentHashMap<String, ItineraryPayload>();
+	private final ConcurrentHashMap<String, ItineraryPayload> deltaUserPayloads = new ConcurrentHashMap<String, ItineraryPayload>();
+
+	/**
+	 * Creates a snapshot of the given data. The caller must not modify the data after handing it to the snapshot.
+	 *
+	 * @param locale The locale the data was built for.
+	 * @param data A Map of itinerary data where the keys are the users who own the data.
+	 */
+	public ItinerarySnapshot(String locale, Map<String, RemyTravelData> data) {
+		this(locale, data, System.currentTimeMillis());
+	}
+
+	/**
+	 * Creates a snapshot of data that was built earlier, such as data read back from disk by
+	 * {@link ItinerarySnapshotStore}.
+	 *
+	 * @param locale The locale the data was built for.
+	 * @param data A Map of itinerary data where the keys are the users who own the data.
+	 * @param builtAt The time the data was built, in milliseconds since the Epoch.
+	 */
+	ItinerarySnapshot(String locale, Map<String, RemyTravelData> data, long builtAt) {
+		this.locale = locale;
+		this.version = versions.incrementAndGet();
+		this.builtAt = builtAt;
+		this.data = Collections.unmodifiableMap(new HashMap<String, RemyTravelData>(data));
+		JsonElement json = gson.toJsonTree(data);
+		for (Map.Entry<String, JsonElement> user : json.getAsJsonObject().entrySet()) {
+			users.put(user.getKey(), ItineraryDelta.encode(user.getValue()));
+		}
+	}
+
+	/**
+	 * Creates a snapshot from the given one in which only the data of some users has changed.
+	 */
+	private ItinerarySnapshot(ItinerarySnapshot previous, Set<String> changedUsers, Map<String, RemyTravelData> changedData) {
+		this.locale = previous.locale;
+		this.version = versions.incrementAndGet();
+		this.builtAt = System.currentTimeMillis();
+		Map<String, RemyTravelData> merged = new HashMap<String, RemyTravelData>(previous.data);
+		merged.keySet().removeAll(changedUsers);
+		merged.putAll(changedData);
+		this.data = Collections.unmodifiableMap(merged);
+		// The users keep their place, and the JSON of the users that did not change is shared with the previous snapshot.
+		for (Map.Entry<String, JsonElement> user : previous.users.entrySet()) {
+			if (!changedUsers.contains(user.getKey())) {
+				users.put(user.getKey(), user.getValue());
+			} else if (changedData.containsKey(user.getKey())) {
+				users.put(user.getKey(), ItineraryDelta.encode(gson.toJsonTree(changedData.get(user.getKey()))));
+			}
+		}
+		for (Map.Entry<String, RemyTravelData> user : changedData.entrySet()) {
+			if (!users.containsKey(user.getKey())) {
+				users.put(user.getKey(), ItineraryDelta.encode(gson.toJsonTree(user.getValue())));
+			}
+		}
+	}
+
+	/**
+	 * Creates a new snapshot with the data of the given users replaced, leaving every other user as it is in this
+	 * snapshot. The JSON of the other users is not generated again. This snapshot is not modified.
+	 *
+	 * @param changedUsers The users whose data changed. Users without new data are removed from the new snapshot.
+	 * @param changedData A Map of the new data of the changed users. The caller must not modify it afterwards.
+	 * @return The new snapshot.
+	 */
+	public ItinerarySnapshot withUsers(Set<String> changedUsers, Map<String, RemyTravelData> changedData) {
+		return new ItinerarySnapshot(this, changedUsers, changedData);
+	}
+
+	/**
+	 * Returns the baseline that is added to the stored time offsets for requests made right now, which is midnight of
+	 * the current day.
+	 *
+	 * @return Midnight of the current day, in milliseconds since the Epoch.
+	 */
+	public static long getTodayBaseline() {
+		return DateUtils.generalizeTime(new Date()).getTime();
+	}
+
+	/**
+	 * Whether the serialized response bodies are kept with each snapshot, or every response is written straight from
+	 * the snapshot as it is sent.
+	 *
+	 * @return True if the bodies returned by {@link #getPayload(long, boolean) getPayload} should be used.
+	 */
+	public static boolean isPayloadCacheEnabled() {
+		return payloadCacheEnabled;
+	}
+
+	/**
+	 * @return The locale this snapshot was built for.
+	 */
+	public String getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return A number that increases every time a snapshot is built, for any locale.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The time this snapshot was built, in milliseconds since the Epoch.
+	 */
+	public long getBuiltAt() {
+		return builtAt;
+	}
+
+	/**
+	 * Returns a value that identifies the response body this snapshot gives for a baseline, for use as an HTTP entity
+	 * tag. The body only changes when the snapshot is replaced or the day changes, so the tag is made of the locale,
+	 * the version and build time of the snapshot and the baseline. The build time is included because versions start
+	 * again from one when the server restarts.
+	 *
+	 * @param baseline The value added to the time offsets of the snapshot, see {@link #getTodayBaseline()}.
+	 * @param delta True for the body with the later versions of each itinerary as patches.
+	 * @return The entity tag, without quotes.
+	 */
+	public String getEntityTag(long baseline, boolean delta) {
+		return locale.replaceAll("[^A-Za-z0-9_.]", "_") + "-" + version + "-" + Long.toString(builtAt, 36) + "-"
+				+ Long.toString(baseline, 36) + (delta ? "-delta" : "");
+	}
+
+	/**
+	 * Returns the data held by this snapshot. The times in the data are offsets that have not been fixed yet, and the
+	 * data is shared with every other reader so it must not be modified.
+	 *
+	 * @return A read only Map of itinerary data where the keys are the users who own the data.
+	 */
+	public Map<String, RemyTravelData> getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the response body for this snapshot, either with full itineraries or with the later versions of each
+	 * itinerary as patches (see {@link ItineraryDelta}), with its times shifted by the given baseline. Each body is built
+	 * the first time it is asked for on a given day and reused after that. If two requests build it at the same time
+	 * they produce the same bytes, so whichever finishes last is kept.
+	 *
+	 * @param baseline The value to add to every time offset, usually {@link #getTodayBaseline()}.
+	 * @param delta True for the body with patches, false for the body with full itineraries.
+	 * @return The serialized and compressed body.
+	 * @throws IOException If the body could not be serialized or compressed.
+	 */
+	public ItineraryPayload getPayload(long baseline, boolean delta) throws IOException {
+		AtomicReference<ItineraryPayload> kept = delta ? deltaPayload : payload;
+		ItineraryPayload current = kept.get();
+		if (current == null || current.getBaseline() != baseline) {
+			current = new ItineraryPayload(this, null, delta, baseline);
+			kept.set(current);
+		}
+		return current;
+	}
+
+	/**
+	 * Whether this snapshot contains data for the given user.
+	 *
+	 * @param user The user to look for.
+	 * @return True if the user has data in this snapshot.
+	 */
+	public boolean hasUser(String user) {
+		return users.containsKey(user);
+	}
+
+	/**
+	 * Returns the response body for a single user of this snapshot, either with full itineraries or with patches, built
+	 * and kept the same way as the body returned by {@link #getPayload(long, boolean) getPayload}.
+	 *
+	 * @param user The user whose data to return.
+	 * @param baseline The value to add to every time offset, usually {@link #getTodayBaseline()}.
+	 * @param delta True for the body with patches, false for the body with full itineraries.
+	 * @return The serialized and compressed body, or null if this snapshot has no data for the user.
+	 * @throws IOException If the body could not be serialized or compressed.
+	 */
+	public ItineraryPayload getUserPayload(String user, long baseline, boolean delta) throws IOException {
+		if (!hasUser(user)) {
+			return null;
+		}
+		ConcurrentHashMap<String, ItineraryPayload> kept = delta ? deltaUserPayloads : userPayloads;
+		ItineraryPayload current = kept.get(user);
+		if (current == null || current.getBaseline() != baseline) {
+			current = new ItineraryPayload(this, user, delta, baseline);
+			kept.put(user, current);
+		}
+		return current;
+	}
+
+	/**
+	 * Writes the JSON for this snapshot with its times shifted by the given baseline, either with full itineraries or
+	 * with patches (see {@link ItineraryDelta}).
+	 *
+	 * @param baseline The value to add to every time offset, usually {@link #getTodayBaseline()}.
+	 * @param delta True to write the later versions of each itinerary as patches, false to write them in full.
+	 * @param out Where to write the JSON.
+	 * @throws IOException If the JSON could not be written to the given Writer.
+	 */
+	public void writeJson(long baseline, boolean delta, Writer out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+		writer.setHtmlSafe(true);
+		writer.beginObject();
+		for (Map.Entry<String, JsonElement> user : users.entrySet()) {
+			writer.name(user.getKey());
+			writeTravelData(user.getValue(), baseline, delta, writer);
+		}
+		writer.endObject();
+		writer.flush();
+	}
+
+	/**
+	 * Writes the JSON for a single user of this snapshot, either with full itineraries or with patches. See
+	 * {@link #writeJson(long, boolean, Writer) writeJson}.
+	 *
+	 * @param user The user whose data to write.
+	 * @param baseline The value to add to every time offset, usually {@link #getTodayBaseline()}.
+	 * @param delta True to write the later versions of each itinerary as patches, false to write them in full.
+	 * @param out Where to write the JSON.
+	 * @throws IOException If the JSON could not be written to the given Writer.
+	 */
+	public void writeUserJson(String user, long baseline, boolean delta, Writer out) throws IOException {
+		JsonElement travelData = users.get(user);
+		if (travelData == null) {
+			throw new IllegalArgumentException(user);
+		}
+		JsonWriter writer = new JsonWriter(out);
+		writer.setHtmlSafe(true);
+		writeTravelData(travelData, baseline, delta, writer);
+		writer.flush();
+	}
+
+	private static void writeTravelData(JsonElement travelData, long baseline, boolean delta, JsonWriter out)
+			throws IOException {
+		if (travelData.isJsonNull()) {
+			out.nullValue();
+		} else {
+			ItineraryTimeShift.writeTravelData(travelData, baseline, !delta, out);
+		}
+	}
+}
@@ -0,0 +1,419 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.ibm.ra.remy.common.impl.CloudantLocation;
+import com.ibm.ra.remy.common.impl.CloudantObject;
+import com.ibm.ra.remy.common.impl.GooglePlacesLocation;
+import com.ibm.ra.remy.common.impl.LatLong;
+import com.ibm.ra.remy.common.impl.RemyEventDateImpl;
+import com.ibm.ra.remy.common.impl.RemyEventImpl;
+import com.ibm.ra.remy.common.impl.RemyFlightEvent;
+import com.ibm.ra.remy.common.impl.RemyItineraryImpl;
+import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+import com.ibm.ra.remy.common.impl.RemyLodgingEventDiscount;
+import com.ibm.ra.remy.common.impl.RemyMeetingEvent;
+import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
+import com.ibm.ra.remy.common.impl.RemyRecsImpl;
+import com.ibm.ra.remy.common.impl.RemyRestaurantEvent;
+import com.ibm.ra.remy.common.impl.RemyTransitEvent;
+import com.ibm.ra.remy.common.impl.RemyTransitStep;
+import com.ibm.ra.remy.common.impl.RemyTravelDataImpl;
+import com.ibm.ra.remy.common.impl.RemyWeatherImpl;
+import com.ibm.ra.remy.common.model.RemyTravelData;
+
+/**
+ * Singleton that keeps a copy of each published {@link ItinerarySnapshot} in a file on the local disk, so a server that
+ * restarts can serve the data it had straight away instead of waiting for a full build.
+ *
+ * A snapshot is saved in the background whenever one is published, and every cached snapshot is saved when the
+ * application stops. Each file is written under a temporary name and then moved over the old file, so a reader never
+ * sees a file that is only partly written. When the application starts the files are mapped into memory and read back
+ * by {@link #loadAll()}; see {@link ItineraryWarmup}.
+ *
+ * A file holds a header followed by the itinerary data in Java serialized form, compressed with deflate:
+ *
+ *     int       MAGIC, marks the file as a snapshot file.
+ *     short     FORMAT_VERSION, the layout of the file.
+ *     long      A fingerprint of the fields of the model classes, so data written by a build with different model
+ *               classes is not read into the classes of this build.
+ *     UTF       The locale of the snapshot.
+ *     long      The time the snapshot was built, in milliseconds since the Epoch.
+ *     int       The length of the compressed data.
+ *     long      The CRC32 of the compressed data.
+ *     byte[]    The compressed data.
+ *
+ * A file whose header does not match, whose checksum is wrong, that is older than ITINERARY_SNAPSHOT_MAX_AGE_HOURS or
+ * that cannot be read for any other reason is ignored and deleted, and the locale is built from Cloudant as usual.
+ *
+ * The store is configured in app.properties:
+ *
+ *     ITINERARY_SNAPSHOT_PERSIST          1 to save snapshots to disk, 0 to never save or load them (default 1).
+ *     ITINERARY_SNAPSHOT_DIR              The directory for the files, empty for a directory in java.io.tmpdir.
+ *     ITINERARY_SNAPSHOT_MAX_AGE_HOURS    Hours a saved snapshot may be used for after it was built (default 24).
+ */
+public class ItinerarySnapshotStore {
+	private static final ItinerarySnapshotStore instance = new ItinerarySnapshotStore();
+	private static final String ENABLED_KEY = "ITINERARY_SNAPSHOT_PERSIST";
+	private static final String DIR_KEY = "ITINERARY_SNAPSHOT_DIR";
+	private static final String MAX_AGE_KEY = "ITINERARY_SNAPSHOT_MAX_AGE_HOURS";
+	private static final int DEFAULT_MAX_AGE = 24;
+	private static final String DEFAULT_DIR = "remy-snapshots";
+	private static final String FILE_PREFIX = "itinerary-";
+	private static final String FILE_SUFFIX = ".snapshot";
+	private static final int MAGIC = 0x52454d59;
+	private static final short FORMAT_VERSION = 1;
+	// The classes whose fields make up the model fingerprint, which are all the classes that can be in the data.
+	private static final Class<?>[] MODEL_CLASSES = {
+		CloudantLocation.class, CloudantObject.class, GooglePlacesLocation.class, LatLong.class,
+		RemyEventDateImpl.class, RemyEventImpl.class, RemyFlightEvent.class, RemyItineraryImpl.class,
+		RemyLodgingEvent.class, RemyLodgingEventDiscount.class, RemyMeetingEvent.class, RemyRecommendationsEvent.class,
+		RemyRecsImpl.class, RemyRestaurantEvent.class, RemyTransitEvent.class, RemyTransitStep.class,
+		RemyTravelDataImpl.class, RemyWeatherImpl.class
+	};
+	private static final long MODEL_FINGERPRINT = fingerprint();
+
+	private final Logger logger = Logger.getLogger(ItinerarySnapshotStore.class.getName());
+	private final MessageUtils mUtils = MessageUtils.getInstance();
+	private final Metrics metrics = Metrics.getInstance();
+	private final boolean enabled;
+	private final File dir;
+	private final long maxAgeMillis;
+	private final ExecutorService writer;
+	// The newest snapshot waiting to be written for each locale, so a burst of builds only writes the last one.
+	private final ConcurrentHashMap<String, ItinerarySnapshot> pending = new ConcurrentHashMap<String, ItinerarySnapshot>();
+	// The version of the snapshot in the file of each locale.
+	private final ConcurrentHashMap<String, Long> saved = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Private constructor. Reads the location of the files from app.properties.
+	 */
+	private ItinerarySnapshotStore() {
+		PropertiesReader constants = PropertiesReader.getInstance();
+		enabled = constants.getIntProperty(ENABLED_KEY, 1) > 0;
+		String path = constants.getStringProperty(DIR_KEY);
+		dir = path == null || path.trim().isEmpty() ? new File(System.getProperty("java.io.tmpdir"), DEFAULT_DIR)
+				: new File(path.trim());
+		maxAgeMillis = TimeUnit.HOURS.toMillis(constants.getIntProperty(MAX_AGE_KEY, DEFAULT_MAX_AGE));
+		writer = Executors.newSingleThreadExecutor(new DaemonThreadFactory("itinerary-snapshot-writer"));
+	}
+
+	/**
+	 * Gets the singleton instance for the store.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static ItinerarySnapshotStore getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Saves a snapshot in the background. If another snapshot of the same locale is published before this one has
+	 * been written, only the newer one is written.
+	 *
+	 * @param snapshot The snapshot that was published.
+	 */
+	public void save(ItinerarySnapshot snapshot) {
+		if (!enabled || snapshot == null) {
+			return;
+		}
+		final String locale = snapshot.getLocale();
+		if (pending.put(locale, snapshot) != null) {
+			return;
+		}
+		try {
+			writer.execute(new Runnable() {
+				@Override
+				public void run() {
+					ItinerarySnapshot latest = pending.remove(locale);
+					if (latest != null) {
+						write(latest);
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			// The application is stopping and the snapshots have already been saved.
+			pending.remove(locale, snapshot);
+		}
+	}
+
+	/**
+	 * Saves every cached snapshot that has not been saved yet, waiting until they are written. Used when the
+	 * application stops.
+	 */
+	public void saveAll() {
+		if (!enabled) {
+			return;
+		}
+		ItineraryCache cache = ItineraryCache.getInstance();
+		for (String locale : cache.getLocales()) {
+			save(cache.getCurrent(locale));
+		}
+		writer.shutdown();
+		try {
+			writer.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reads back every saved snapshot that can still be used.
+	 *
+	 * @return The snapshots that were read, at most one for each locale.
+	 */
+	public List<ItinerarySnapshot> loadAll() {
+		List<ItinerarySnapshot> snapshots = new ArrayList<ItinerarySnapshot>();
+		File[] files = enabled ? dir.listFiles() : null;
+		if (files == null) {
+			return snapshots;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+				continue;
+			}
+			long start = System.nanoTime();
+			try {
+				ItinerarySnapshot snapshot = read(file);
+				saved.put(snapshot.getLocale(), snapshot.getVersion());
+				snapshots.add(snapshot);
+				metrics.timer("remy_snapshot_load_seconds", "Time taken to read a saved snapshot from disk.").stop(start);
+				logger.info(mUtils.getMessage("MSG0028", new Object[]{snapshot.getLocale(),
+						new Date(snapshot.getBuiltAt()), file}));
+			} catch (Exception ex) {
+				logger.warning(mUtils.getMessage("MSG0029", new Object[]{file, ex.getMessage()}));
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Writes a snapshot to the file for its locale, unless that file already holds it.
+	 */
+	private void write(ItinerarySnapshot snapshot) {
+		String locale = snapshot.getLocale();
+		Long current = saved.get(locale);
+		if (current != null && current >= snapshot.getVersion()) {
+			return;
+		}
+		long start = System.nanoTime();
+		File file = getFile(locale);
+		File temp = new File(dir, file.getName() + ".tmp");
+		try {
+			byte[] body = serialize(snapshot.getData());
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException(dir.toString());
+			}
+			FileOutputStream fileOut = new FileOutputStream(temp);
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+				out.writeInt(MAGIC);
+				out.writeShort(FORMAT_VERSION);
+				out.writeLong(MODEL_FINGERPRINT);
+				out.writeUTF(locale);
+				out.writeLong(snapshot.getBuiltAt());
+				out.writeInt(body.length);
+				out.writeLong(crc.getValue());
+				out.write(body);
+				out.flush();
+				fileOut.getFD().sync();
+			} finally {
+				fileOut.close();
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			saved.put(locale, snapshot.getVersion());
+			metrics.timer("remy_snapshot_save_seconds", "Time taken to save a snapshot to disk.").stop(start);
+		} catch (Exception ex) {
+			logger.warning(mUtils.getMessage("MSG0027", new Object[]{locale, ex.getMessage()}));
+			if (!temp.delete()) {
+				temp.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a file, checking that it was written by this version of the application and is not too
+	 * old to use.
+	 */
+	private ItinerarySnapshot read(File file) throws IOException, ClassNotFoundException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			DataInputStream header = new DataInputStream(new ByteBufferInputStream(buffer));
+			if (header.readInt() != MAGIC || header.readShort() != FORMAT_VERSION || header.readLong() != MODEL_FINGERPRINT) {
+				throw new IOException("not a snapshot written by this version of the application");
+			}
+			String locale = header.readUTF();
+			long builtAt = header.readLong();
+			if (maxAgeMillis > 0 && System.currentTimeMillis() - builtAt > maxAgeMillis) {
+				throw new IOException("built at " + new Date(builtAt));
+			}
+			int length = header.readInt();
+			long checksum = header.readLong();
+			if (length != buffer.remaining()) {
+				throw new IOException("expected " + length + " bytes of data, found " + buffer.remaining());
+			}
+			ByteBuffer body = buffer.slice();
+			CRC32 crc = new CRC32();
+			byte[] chunk = new byte[8192];
+			while (body.hasRemaining()) {
+				int count = Math.min(chunk.length, body.remaining());
+				body.get(chunk, 0, count);
+				crc.update(chunk, 0, count);
+			}
+			if (crc.getValue() != checksum) {
+				throw new IOException("checksum mismatch");
+			}
+			body.rewind();
+			return new ItinerarySnapshot(locale, deserialize(new ByteBufferInputStream(body)), builtAt);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private File getFile(String locale) {
+		return new File(dir, FILE_PREFIX + locale.replaceAll("[^A-Za-z0-9_.-]", "_") + FILE_SUFFIX);
+	}
+
+	private static byte[] serialize(Map<String, RemyTravelData> data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes, deflater));
+			out.writeObject(new HashMap<String, RemyTravelData>(data));
+			out.close();
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, RemyTravelData> deserialize(InputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream objects = new ModelObjectInputStream(new InflaterInputStream(in));
+		try {
+			return (Map<String, RemyTravelData>) objects.readObject();
+		} finally {
+			objects.close();
+		}
+	}
+
+	/**
+	 * Works out the fingerprint of the model classes from the names and types of their serialized fields.
+	 */
+	private static long fingerprint() {
+		CRC32 crc = new CRC32();
+		for (Class<?> modelClass : MODEL_CLASSES) {
+			StringBuilder fields = new StringBuilder(modelClass.getName());
+			ObjectStreamClass streamClass = ObjectStreamClass.lookup(modelClass);
+			fields.append(':').append(streamClass.getSerialVersionUID());
+			for (ObjectStreamField field : streamClass.getFields()) {
+				fields.append(',').append(field.getName()).append(' ').append(field.getTypeCode());
+				if (field.getTypeString() != null) {
+					fields.append(field.getTypeString());
+				}
+			}
+			crc.update(fields.toString().getBytes(Charset.forName(MessageUtils.ENCODING)));
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Reads the serialized data, refusing any class that cannot be part of the model, so a file that was tampered
+	 * with cannot be used to create arbitrary objects.
+	 */
+	private static class ModelObjectInputStream extends ObjectInputStream {
+		ModelObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			String name = desc.getName();
+			while (name.startsWith("[")) {
+				name = name.substring(1);
+			}
+			if (name.length() > 1 && !name.startsWith("Lcom.ibm.ra.remy.") && !name.startsWith("Ljava.")
+					&& !name.startsWith("com.ibm.ra.remy.") && !name.startsWith("java.")) {
+				throw new InvalidClassException(desc.getName(), "not part of the itinerary data");
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * Reads the bytes left in a buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes the JSON of an {@link ItinerarySnapshot} straight to the response as it is generated, instead of building the
+ * whole body in memory first. Only the buffers of the writer are held while the response is written, so the memory a
+ * request needs does not grow with the size of the data. Used when the serialized bodies are not kept with the
+ * snapshot (see {@link ItinerarySnapshot#isPayloadCacheEnabled()}).
+ */
+public class ItineraryStreamingOutput implements StreamingOutput {
+	private final ItinerarySnapshot snapshot;
+	private final String user;
+	private final boolean delta;
+	private final long baseline;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param snapshot The snapshot to write.
+	 * @param user The user whose data should be written, or null for every user.
+	 * @param delta True to write the later versions of each itinerary as patches, false to write them in full.
+	 * @param baseline The value added to the time offsets of the snapshot, see {@link ItinerarySnapshot#getTodayBaseline()}.
+	 */
+	public ItineraryStreamingOutput(ItinerarySnapshot snapshot, String user, boolean delta, long baseline) {
+		this.snapshot = snapshot;
+		this.user = user;
+		this.delta = delta;
+		this.baseline = baseline;
+	}
+
+	/**
+	 * @see javax.ws.rs.core.StreamingOutput#write(java.io.OutputStream)
+	 */
+	@Override
+	public void write(OutputStream out) throws IOException, WebApplicationException {
+		Writer writer = new OutputStreamWriter(out, MessageUtils.ENCODING);
+		if (user == null) {
+			snapshot.writeJson(baseline, delta, writer);
+		} else {
+			snapshot.writeUserJson(user, baseline, delta, writer);
+		}
+		writer.flush();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the JSON form of the itinerary data while adding a baseline to its time offsets. This does the same job as
+ * calling {@link com.ibm.ra.remy.common.model.RemyTravelData#fixTime() fixTime} on every user before serializing the
+ * data, but it works on the JSON as it is written, so the cached data is neither modified nor copied.
+ *
+ * The fields that are shifted, and the nested objects that are followed, match the fixTime methods of the model:
+ *
+ *     itinerary      itineraryStartDate, itineraryEndDate and each of its dates
+ *     date           date and each of its events (including the replaced and added events of a patch, see
+ *                    {@link ItineraryDelta})
+ *     event          start_time, end_time, plus the time fields of the subclass (boardingTime, departureTime and
+ *                    arrivalTime for flights, checkin and checkout for lodging, time for meetings and restaurants),
+ *                    the events of a recommendationList and the steps of a transit event
+ *
+ * Anything else, including the recommendedReplacements of a restaurant, is written unchanged.
+ */
+public class ItineraryTimeShift {
+	private static final Gson gson = new Gson();
+	private static final String ITINERARIES = "itineraries";
+
+	/**
+	 * The levels of the itinerary data that hold time offsets. Each level names the fields that are shifted and the
+	 * arrays whose objects belong to the next level down.
+	 */
+	private enum Level {
+		ITINERARY(new String[] { "itineraryStartDate", "itineraryEndDate" }, new String[] { "dates" }),
+		DATE(new String[] { "date" }, new String[] { "events", "replaced", "added" }),
+		EVENT(new String[] { "start_time", "end_time", "boardingTime", "departureTime", "arrivalTime", "checkin",
+				"checkout", "time" }, new String[] { "recommendationList", "transit_steps" });
+
+		private final Set<String> times;
+		private final Set<String> children;
+
+		private Level(String[] times, String[] children) {
+			this.times = new HashSet<String>(Arrays.asList(times));
+			this.children = new HashSet<String>(Arrays.asList(children));
+		}
+
+		private Level next() {
+			return this == ITINERARY ? DATE : EVENT;
+		}
+	}
+
+	private ItineraryTimeShift() {
+	}
+
+	/**
+	 * Writes the itinerary data of a single user to the given writer, shifting the time offsets by the given baseline.
+	 * The itineraries can also be decoded from the form kept by {@link ItineraryDelta} as they are written. Each one is
+	 * decoded from the one before it and written straight away, so no more than two full itineraries are held at once
+	 * however many versions the user has.
+	 *
+	 * @param travelData The JSON form of a {@link com.ibm.ra.remy.common.model.RemyTravelData RemyTravelData}.
+	 * @param baseline The value to add to every time offset.
+	 * @param decode True to write the itineraries in full, false to write them as they are in the given JSON.
+	 * @param out The writer to write the JSON to.
+	 * @throws IOException If the JSON could not be written.
+	 */
+	public static void writeTravelData(JsonElement travelData, long baseline, boolean decode, JsonWriter out)
+			throws IOException {
+		if (!travelData.isJsonObject()) {
+			copy(travelData, out);
+			return;
+		}
+		out.beginObject();
+		for (Map.Entry<String, JsonElement> field : travelData.getAsJsonObject().entrySet()) {
+			out.name(field.getKey());
+			if (ITINERARIES.equals(field.getKey()) && field.getValue().isJsonArray()) {
+				if (decode) {
+					writeItineraries(field.getValue(), baseline, out);
+				} else {
+					writeArray(field.getValue(), Level.ITINERARY, baseline, out);
+				}
+			} else {
+				copy(field.getValue(), out);
+			}
+		}
+		out.endObject();
+	}
+
+	private static void writeItineraries(JsonElement itineraries, long baseline, JsonWriter out) throws IOException {
+		out.beginArray();
+		JsonElement previous = null;
+		for (JsonElement itinerary : itineraries.getAsJsonArray()) {
+			previous = ItineraryDelta.decodeItinerary(previous, itinerary);
+			writeObject(previous, Level.ITINERARY, baseline, out);
+		}
+		out.endArray();
+	}
+
+	private static void writeArray(JsonElement array, Level level, long baseline, JsonWriter out) throws IOException {
+		out.beginArray();
+		for (JsonElement element : array.getAsJsonArray()) {
+			writeObject(element, level, baseline, out);
+		}
+		out.endArray();
+	}
+
+	/**
+	 * Writes an itinerary, date or event object, shifting the time fields of its level and following the arrays
+	 * that hold the next level down.
+	 */
+	private static void writeObject(JsonElement element, Level level, long baseline, JsonWriter out)
+			throws IOException {
+		if (!element.isJsonObject()) {
+			copy(element, out);
+			return;
+		}
+		out.beginObject();
+		for (Map.Entry<String, JsonElement> field : element.getAsJsonObject().entrySet()) {
+			String name = field.getKey();
+			JsonElement value = field.getValue();
+			out.name(name);
+			if (level.times.contains(name) && value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()) {
+				out.value(value.getAsLong() + baseline);
+			} else if (level.children.contains(name) && value.isJsonArray()) {
+				writeArray(value, level.next(), baseline, out);
+			} else {
+				copy(value, out);
+			}
+		}
+		out.endObject();
+	}
+
+	private static void copy(JsonElement element, JsonWriter out) throws IOException {
+		gson.toJson(element, out);
+	}
+}
@@ -14,13 +14,26 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
+import com.ibm.ra.remy.common.impl.CloudantObject;
 import com.ibm.ra.remy.common.impl.RemyEventDateImpl;
-import com.ibm.ra.remy.common.impl.RemyItineraryImpl;
+import com.ibm.ra.remy.common.impl.RemyEventImpl;
 import com.ibm.ra.remy.common.impl.RemyTravelDataImpl;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.model.RemyEventDate;
@@ -36,12 +49,41 @@ import com.ibm.ra.remy.common.utils.DateUtils;
  * 
  */
 public class ItineraryUtils {
-	private static Map<String, RemyTravelData> cache = null;
-	private static final Object lock = new Object();
+	private static final ItineraryCache cache = ItineraryCache.getInstance();
+	// Loading the refresher starts the scheduled refresh of the cache, if one is configured in app.properties.
+	private static final ItineraryRefresher refresher = ItineraryRefresher.getInstance();
+	// Loading the listener starts following the changes made in Cloudant, if it is turned on in app.properties.
+	private static final ItineraryChangesListener changesListener = ItineraryChangesListener.getInstance();
 	
 	private Logger logger = Logger.getLogger(ItineraryUtils.class.getName());
 	private MessageUtils mUtils = MessageUtils.getInstance();
 	public static final String DEFAULT_LOCALE = "en";
+	private static final int BUILD_STEPS = 7;
+	private static final String BUILD_THREADS_KEY = "ITINERARY_BUILD_THREADS";
+	private static final String USER_TIMEOUT_KEY = "ITINERARY_USER_TIMEOUT_SECONDS";
+	private static final int DEFAULT_USER_TIMEOUT = 0;
+	// Generates the itinerary versions of several users at once. The work is mostly waiting on the Business Rules and
+	// Watson services, so by default there are twice as many threads as processors.
+	private static final ExecutorService userExecutor = Executors.newFixedThreadPool(
+			Math.max(1, PropertiesReader.getInstance().getIntProperty(BUILD_THREADS_KEY, 2 * Runtime.getRuntime().availableProcessors())),
+			new DaemonThreadFactory("itinerary-build"));
+	private static final long userTimeoutMillis = 1000L * Math.max(0, PropertiesReader.getInstance().getIntProperty(USER_TIMEOUT_KEY, DEFAULT_USER_TIMEOUT));
+	private static final String BUILD_TIMEOUT_KEY = "ITINERARY_BUILD_TIMEOUT_SECONDS";
+	private static final String BUILD_RETRIES_KEY = "ITINERARY_BUILD_RETRIES";
+	private static final String RETRY_DELAY_KEY = "ITINERARY_BUILD_RETRY_DELAY_SECONDS";
+	private static final int DEFAULT_BUILD_TIMEOUT = 300;
+	private static final int DEFAULT_BUILD_RETRIES = 2;
+	private static final int DEFAULT_RETRY_DELAY = 1;
+	private static final long buildTimeoutMillis = 1000L * Math.max(0, PropertiesReader.getInstance().getIntProperty(BUILD_TIMEOUT_KEY, DEFAULT_BUILD_TIMEOUT));
+	private static final int buildRetries = Math.max(0, PropertiesReader.getInstance().getIntProperty(BUILD_RETRIES_KEY, DEFAULT_BUILD_RETRIES));
+	private static final long retryDelayMillis = 1000L * Math.max(0, PropertiesReader.getInstance().getIntProperty(RETRY_DELAY_KEY, DEFAULT_RETRY_DELAY));
+	// Runs the build of each locale, so a caller can stop waiting on a build that takes too long. There is at most one
+	// build per locale at a time.
+	private static final ExecutorService buildExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("itinerary-snapshot"));
+	private static final ConcurrentHashMap<String, SnapshotBuild> builds = new ConcurrentHashMap<String, SnapshotBuild>();
+	private static final Metrics metrics = Metrics.getInstance();
+	private static final String USER_FAILURES_METRIC = "remy_build_user_failures_total";
+	private static final String USER_FAILURES_HELP = "Number of users whose itinerary versions could not be generated.";
 	
 	/**
 	 * Supplementary method.  This will always retrieve the cached version of the itinerary data.
@@ -55,6 +97,40 @@ public class ItineraryUtils {
 		return this.getItineraries(locale, false);
 	}
 	
+	/**
+	 * Returns a private copy of the itinerary data with its times already fixed for today. See
+	 * {@link #getSnapshot(String, boolean) getSnapshot} for how the data is gathered.
+	 * 
+	 * The REST end points write the shared snapshot directly (see {@link ItinerarySnapshot#writeJson(long, boolean, java.io.Writer)
+	 * writeJson}), so this copy is only made for callers that need the data as objects they are free to modify.
+	 * 
+	 * @param locale The locale should use to retrieve all the data.
+	 * @param refresh If true it will force a refresh of the cache data. False will just return the cached data.
+	 * @return A Map of itinerary data where the keys are the users who own the data.
+	 * @throws Exception Any RuntimeException that can occur while gathering/formating the itinerary data.
+	 */
+	public Map<String, RemyTravelData> getItineraries(String locale, boolean refresh) throws Exception {
+		ItinerarySnapshot snapshot = getSnapshot(locale, refresh);
+		if (snapshot == null) {
+			return null;
+		}
+		long start = System.nanoTime();
+		Map<String, RemyTravelData> copy = new HashMap<String, RemyTravelData>();
+		for (Map.Entry<String, RemyTravelData> entry : snapshot.getData().entrySet()) {
+			// The versions of an itinerary share the dates and events they have in common (see ItineraryVersion). Each
+			// copy shares nothing, neither with the cache nor with the other versions, so every event is fixed once.
+			RemyTravelData userData = new RemyTravelDataImpl();
+			for (RemyItinerary itinerary : entry.getValue().getItineraries()) {
+				RemyItinerary itineraryCopy = itinerary.copy();
+				itineraryCopy.fixTime();
+				userData.addItinerary(itineraryCopy);
+			}
+			copy.put(entry.getKey(), userData);
+		}
+		metrics.timer("remy_itinerary_copy_seconds", "Time taken to copy the cached itinerary data and fix its times.").stop(start);
+		return copy;
+	}
+	
 	/**
 	 * This method is the brains of the whole operation.  It retrieves the data from Cloudant and calls the 
 	 * Business Rules service as well as Watson Tradeoff Analytics in order to generate recommendations for the user
@@ -70,157 +146,432 @@ public class ItineraryUtils {
 	 * Underground API to generate most of the data we have in Cloudant.  We just "cached" the results in Cloudant
 	 * to ensure a consistent response for our sales team. The data structures for weather and places actually mimics
 	 * what you would get back from either of the services (Google Places and Weather Underground) so you should be
-	 * able to change out the Cloudant call and replace it with a call the real API and we should still work.
+	 * able to change out the Cloudant call and replace it with a call the real API and we should still work. The
+	 * queries go through the configured {@link TravelDataStore}, so the same data can also be loaded from one of the
+	 * data files into memory and built without Cloudant (see {@link TravelDataStores}).
+	 * 
+	 * The results are published per locale as an immutable {@link ItinerarySnapshot} in the {@link ItineraryCache}.
+	 * Each locale is built independently, so building one locale does not block requests for locales that are already
+	 * cached, and readers share the snapshot without copying it. The times in the snapshot are still offsets from
+	 * midnight; they are shifted to today when the snapshot is written out.
+	 * 
+	 * Requests for a locale that is not cached share a single build of it. The build runs on its own thread, is
+	 * retried with a growing delay if it fails (ITINERARY_BUILD_RETRIES and ITINERARY_BUILD_RETRY_DELAY_SECONDS in
+	 * app.properties) and is cancelled if it runs longer than ITINERARY_BUILD_TIMEOUT_SECONDS.
 	 * 
 	 * @param locale The locale should use to retrieve all the data.
 	 * @param refresh If true it will force a refresh of the cache data. False will just return the cached data.
-	 * @return A Map of itinerary data where the keys are the users who own the data.
-	 * @throws Exception Any RuntimeException that can occur while gathering/formating the itinerary data.
+	 * @return The snapshot of itinerary data for the locale, or null if there are no itineraries for the locale.
+	 * @throws Exception Any RuntimeException that can occur while gathering/formating the itinerary data, or a
+	 * TimeoutException if the build did not finish in time.
 	 */
-	@SuppressWarnings("unchecked")
-	public Map<String, RemyTravelData> getItineraries(String locale, boolean refresh) throws Exception {
-		if (refresh) {
-			synchronized(lock) {
-				cache = null;	
+	public ItinerarySnapshot getSnapshot(String locale, boolean refresh) throws Exception {
+		locale = locale == null ? DEFAULT_LOCALE : locale;
+		ItinerarySnapshot snapshot = refresh ? null : cache.get(locale);
+		if (snapshot != null) {
+			logger.info(mUtils.getMessage("MSG0011", locale));
+			return snapshot;
+		}
+		// Only one build of a locale runs at a time. Whoever finds a build of the locale already in flight waits for
+		// it instead of starting another one.
+		final String buildLocale = locale;
+		final boolean buildRefresh = refresh;
+		SnapshotBuild build = new SnapshotBuild(locale, new Callable<ItinerarySnapshot>() {
+			@Override
+			public ItinerarySnapshot call() throws Exception {
+				return buildSnapshot(buildLocale, buildRefresh);
 			}
+		});
+		SnapshotBuild running = builds.putIfAbsent(locale, build);
+		if (running == null) {
+			running = build;
+			buildExecutor.execute(build);
 		}
-		if (cache == null) {
-			Exception exception = null;
-			synchronized(lock) {
-				try {
-					if (cache == null) {
-						locale = locale == null ? DEFAULT_LOCALE : locale;
-						long startAll = new Date().getTime();
-						long start = new Date().getTime();
-						CloudantUtils cUtils = CloudantUtils.getInstance();
-						logger.info("Instantiate cloudantutils: " + Utilities.getTimeDifference(start, new Date().getTime()));
-						start = new Date().getTime();
-						WeatherUtils wUtils = new WeatherUtils();
-						logger.info("Instantiate weatherutils: " + Utilities.getTimeDifference(start, new Date().getTime()));
-
-						start = new Date().getTime();
-						@SuppressWarnings("rawtypes")
-						List<HashMap> itineraries = cUtils.getDataWithComplexKey("remy_design/itineraryJsonView",
-								new Object[] { 0, 0, locale, 0 }, new Object[] { Long.MAX_VALUE, Integer.MAX_VALUE, locale, 1 }, HashMap.class, true);
-						logger.info("getItin data from cloudant: " + Utilities.getTimeDifference(start, new Date().getTime()));
-						if (itineraries != null && !itineraries.isEmpty()) {
-							start = new Date().getTime();
-							List<RemyItinerary> sortedItins = formatJoinedItineraryForClient(itineraries);
-							logger.info("call formatJoinedItinsforclient: " + Utilities.getTimeDifference(start, new Date().getTime()));
-							
-							// Now we need to inject weather data.
-							start = new Date().getTime();
-							String city = sortedItins.get(0).getInitialLocation().getCity();
-							String country = sortedItins.get(0).getInitialLocation().getCountry();
-							@SuppressWarnings("rawtypes")
-							List<HashMap> weatherData = cUtils.getData("remy_design/weatherViewFiltered", 
-									new Object[]{city, country, locale}, HashMap.class, true);
-							logger.info("get weather data from cloudant: " + Utilities.getTimeDifference(start, new Date().getTime()));
-
-							start = new Date().getTime();
-							List<RemyWeather> weatherList = wUtils.formatWeatherForItinerary(weatherData);
-							logger.info("format weather for itins: " + Utilities.getTimeDifference(start, new Date().getTime()));
-
-							start = new Date().getTime();
-							insertWeatherIntoItineraries(sortedItins, weatherList, true);
-
-							logger.info("inject weather into itins: " + Utilities.getTimeDifference(start, new Date().getTime()));
-							
-							// Next, we need to acquire all the recommendations.
-							start = new Date().getTime();
-							@SuppressWarnings("rawtypes")
-							List<HashMap> recommendations = cUtils.getDataWithComplexKey("remy_design/updatedRecsView", 
-									new Object[]{locale,0}, new Object[]{locale,1}, HashMap.class, true);
-							logger.info("get recommendations from cloudant: " + Utilities.getTimeDifference(start, new Date().getTime()));
-							
-							start = new Date().getTime();
-							HashMap<String, RemyRecs> sortedRecs = RecommendationUtils.formatRecs(recommendations);
-							logger.info("format recommendations: " + Utilities.getTimeDifference(start, new Date().getTime()));
-
-							// Generate itinerary version 1: hotel recommendations
-							start = new Date().getTime();
-							RemyItinerary defaultItinerary = sortedItins.get(0);
-							String defaultItineraryUser = defaultItinerary.getUser();
-							RemyRecs defaultItineraryRecs = sortedRecs.get(defaultItineraryUser);
-
-							RemyItinerary itin1 = RecEngineHotels.recommendHotels(defaultItinerary, defaultItineraryRecs, locale);
-							itin1.setVersion(1);
-							logger.info("call business rules for hotel recommendations: " + Utilities.getTimeDifference(start, new Date().getTime()));
-
-							// Generate itinerary version 2: choose hotel
-							start = new Date().getTime();
-							RemyItinerary itin2 = RecEngineHotels.chooseHotel(itin1, locale);
-							itin2.setVersion(2);
-							logger.info("choose hotel recommendation: " + Utilities.getTimeDifference(start, new Date().getTime()));
-
-							// Generate itinerary version 3: bad weather with recommended alternatives
-							start = new Date().getTime();
-							RemyItinerary itin3 = RecEngineWeather.injectBadWeather(itin2);
-							itin3 = RecEngineWeather.recommendWeatherAlternatives(itin3, defaultItineraryRecs, locale);
-							itin3.setVersion(3);
-							logger.info("call personality insights for weather recommendations: " + Utilities.getTimeDifference(start, new Date().getTime()));
+		return running.await();
+	}
+	
+	/**
+	 * Rebuilds the itineraries of some of the users of a cached locale and publishes a snapshot in which only their
+	 * data has changed. The other users' data, and their JSON, is carried over from the current snapshot, and only the
+	 * weather of the places the rebuilt users travel to is queried. Generating the itinerary versions, the costly part
+	 * of a build, therefore depends on the number of users rebuilt. The itineraries and recommendations are still
+	 * queried for the whole locale, since the design views are keyed by locale rather than by user. Used to apply
+	 * changes made to the data in Cloudant, see {@link ItineraryChangesListener}.
+	 * 
+	 * A build of the locale that is already running may have read the data before it changed, so the rebuild waits for
+	 * it to finish and then updates its result. If the locale is not cached the whole locale is built instead.
+	 * 
+	 * @param locale The locale to update.
+	 * @param users The users to rebuild. Users that no longer have any itineraries are removed from the snapshot.
+	 * @return The new snapshot of itinerary data for the locale, or null if there are no itineraries for the locale.
+	 * @throws Exception Any RuntimeException that can occur while gathering/formating the itinerary data, or a
+	 * TimeoutException if the rebuild did not finish in time.
+	 */
+	public ItinerarySnapshot refreshUsers(final String locale, final Set<String> users) throws Exception {
+		SnapshotBuild build = new SnapshotBuild(locale, new Callable<ItinerarySnapshot>() {
+			@Override
+			public ItinerarySnapshot call() throws Exception {
+				return buildUsers(locale, users);
+			}
+		});
+		SnapshotBuild running;
+		while ((running = builds.putIfAbsent(locale, build)) != null) {
+			try {
+				running.await();
+			} catch (Exception ex) {
+				// Whoever started the build reports its failure, this rebuild goes ahead regardless.
+			}
+			builds.remove(locale, running);
+		}
+		buildExecutor.execute(build);
+		return build.await();
+	}
+	
+	/**
+	 * A build of one locale that every caller asking for that locale can wait on. It removes itself from the builds in
+	 * flight when it is done, so the next cache miss starts a new build.
+	 */
+	private class SnapshotBuild extends FutureTask<ItinerarySnapshot> {
+		private final String locale;
+		private final long deadline;
 
-							// Generate itinerary version 4: alternative selected, transportation recommended
-							start = new Date().getTime();
-							RemyItinerary itin4 = RecEngineWeather.chooseWeatherAlternative(itin3);
-							itin4 = RecEngineTransportation.recommendTransportation(itin4, defaultItineraryRecs, locale);
-							itin4.setVersion(4);
-							logger.info("call tradeoff analytics for transportation recommendations: " + Utilities.getTimeDifference(start, new Date().getTime()));
+		SnapshotBuild(String locale, Callable<ItinerarySnapshot> build) {
+			super(build);
+			this.locale = locale;
+			this.deadline = buildTimeoutMillis > 0 ? new Date().getTime() + buildTimeoutMillis : 0;
+		}
 
-							// Generate itinerary version 5: transportation selected
-							start = new Date().getTime();
-							RemyItinerary itin5 = RecEngineTransportation.chooseTransportation(itin4);
-							itin5.setVersion(5);
-							logger.info("choose transportation recommendation: " + Utilities.getTimeDifference(start, new Date().getTime()));
-							
-							// Combine itineraries into JSON payload
-							start = new Date().getTime();
-							List<RemyItinerary> generatedItins = new ArrayList<RemyItinerary>();
-							generatedItins.add(itin1);
-							generatedItins.add(itin2);
-							generatedItins.add(itin3);
-							generatedItins.add(itin4);
-							generatedItins.add(itin5);
-							logger.info("combine generated itineraries: " + Utilities.getTimeDifference(start, new Date().getTime()));
+		@Override
+		protected void done() {
+			builds.remove(locale, this);
+		}
 
-							// Lastly, return the data.
-							cache = getUserDeliverable(generatedItins);
-							logger.info("Total time to generate itinerary data: " + Utilities.getTimeDifference(startAll, new Date().getTime()));
-						}
-					}	
-				} catch(Exception ex) {
-					exception = ex;
-					//Basically we have this catch block to ensure that we never exit out of this method without releasing the lock on the lock object.
+		/**
+		 * Waits for the build to finish. If it has not finished by its deadline it is cancelled, and every caller
+		 * waiting on it gets a TimeoutException.
+		 */
+		ItinerarySnapshot await() throws Exception {
+			try {
+				if (deadline == 0) {
+					return Utilities.getResult(this);
+				}
+				return get(Math.max(0, deadline - new Date().getTime()), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException ex) {
+				if (cancel(true)) {
+					metrics.counter("remy_build_timeouts_total", "Number of builds of the itinerary data that timed out.", "locale", cache.getLabel(locale)).inc();
+					logger.severe(mUtils.getMessage("MSG0020", new Object[]{locale}));
+				}
+				throw new TimeoutException(mUtils.getMessage("MSG0020", new Object[]{locale}));
+			} catch (CancellationException ex) {
+				// Another caller gave up on the build when it ran past its deadline.
+				throw new TimeoutException(mUtils.getMessage("MSG0020", new Object[]{locale}));
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				if (cause instanceof Exception) {
+					throw (Exception) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw ex;
+			}
+		}
+	}
+	
+	/**
+	 * Builds and publishes the snapshot of a locale, trying again a few times if the build fails. The wait between
+	 * attempts doubles after every failure.
+	 * 
+	 * @param locale The locale to build.
+	 * @param refresh False if a snapshot published since the build was requested should be used instead of building.
+	 * @return The snapshot of itinerary data for the locale, or null if there are no itineraries for the locale.
+	 * @throws Exception The failure of the last attempt, or InterruptedException if the build was cancelled.
+	 */
+	private ItinerarySnapshot buildSnapshot(String locale, boolean refresh) throws Exception {
+		if (!refresh) {
+			// Another request may have finished building this locale just before this build was started.
+			ItinerarySnapshot snapshot = cache.peek(locale);
+			if (snapshot != null) {
+				return snapshot;
+			}
+		}
+		long delay = retryDelayMillis;
+		for (int attempt = 0; ; attempt++) {
+			try {
+				return buildSnapshotOnce(locale);
+			} catch (InterruptedException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				cache.recordBuildFailure(locale);
+				metrics.counter("remy_build_failures_total", "Number of builds of the itinerary data that failed.", "locale", cache.getLabel(locale)).inc();
+				if (attempt >= buildRetries) {
 					logger.severe(ex.getMessage());
 					ex.printStackTrace();
+					throw ex;
 				}
+				logger.warning(mUtils.getMessage("MSG0019", new Object[]{locale, delay, ex.getMessage()}));
 			}
-			//Now that we've let go of the lock, lets actually throw the exception
-			if (exception != null) {
-				throw exception;
+			Thread.sleep(delay);
+			delay *= 2;
+		}
+	}
+	
+	/**
+	 * Builds the snapshot of a locale once and publishes it in the cache.
+	 */
+	private ItinerarySnapshot buildSnapshotOnce(String locale) throws Exception {
+		long startAll = new Date().getTime();
+		long startNanos = System.nanoTime();
+		ItinerarySnapshot snapshot;
+		BuildProgress progress = cache.startBuild(locale, BUILD_STEPS);
+		try {
+			Map<String, RemyTravelData> data = buildItineraries(locale, null, progress);
+			progress.startStep("publish snapshot");
+			snapshot = data == null ? null : new ItinerarySnapshot(locale, data);
+		} finally {
+			cache.finishBuild(progress);
+		}
+		long end = new Date().getTime();
+		cache.put(locale, snapshot, end - startAll);
+		metrics.timer("remy_build_seconds", "Time taken to build the itinerary data of a locale.", "locale", cache.getLabel(locale)).stop(startNanos);
+		ItinerarySnapshotStore.getInstance().save(snapshot);
+		logger.info("Total time to generate itinerary data: " + Utilities.getTimeDifference(startAll, end));
+		return snapshot;
+	}
+	
+	/**
+	 * Rebuilds some of the users of a locale and publishes the result. See {@link #refreshUsers(String, Set)
+	 * refreshUsers}.
+	 */
+	private ItinerarySnapshot buildUsers(String locale, Set<String> users) throws Exception {
+		ItinerarySnapshot current = cache.getCurrent(locale);
+		if (current == null) {
+			return buildSnapshot(locale, false);
+		}
+		long startAll = new Date().getTime();
+		long startNanos = System.nanoTime();
+		ItinerarySnapshot snapshot;
+		BuildProgress progress = cache.startBuild(locale, BUILD_STEPS);
+		try {
+			Map<String, RemyTravelData> data = buildItineraries(locale, users, progress);
+			progress.startStep("publish snapshot");
+			snapshot = current.withUsers(users, data == null ? new HashMap<String, RemyTravelData>() : data);
+			snapshot = snapshot.getData().isEmpty() ? null : snapshot;
+		} finally {
+			cache.finishBuild(progress);
+		}
+		long end = new Date().getTime();
+		cache.put(locale, snapshot, end - startAll);
+		metrics.timer("remy_user_rebuild_seconds", "Time taken to rebuild some of the users of a locale.", "locale", cache.getLabel(locale)).stop(startNanos);
+		ItinerarySnapshotStore.getInstance().save(snapshot);
+		logger.info("Total time to generate itinerary data for " + users.size() + " users: " + Utilities.getTimeDifference(startAll, end));
+		return snapshot;
+	}
+	
+	/**
+	 * Builds the itinerary data for a single locale. See {@link #getSnapshot(String, boolean) getSnapshot} for a
+	 * description of the steps involved.
+	 * 
+	 * @param locale The locale should use to retrieve all the data.
+	 * @param users The users to build, or null to build every user of the locale.
+	 * @param progress Updated as the build moves through its steps, so the status end point can report on it.
+	 * @return A Map of itinerary data where the keys are the users who own the data, or null if there are no
+	 * itineraries stored for the locale.
+	 * @throws Exception Any RuntimeException that can occur while gathering/formating the itinerary data.
+	 */
+	private Map<String, RemyTravelData> buildItineraries(String locale, Set<String> users, BuildProgress progress) throws Exception {
+		progress.startStep("query itineraries");
+		long start = System.nanoTime();
+		TravelDataStore store = TravelDataStores.getStore();
+		WeatherUtils wUtils = new WeatherUtils();
+
+		// The recommendations do not depend on anything else we query, so they are fetched in the background while we
+		// fetch the itineraries and then the weather for the itineraries' city.
+		Future<List<RemyEvent>> recommendationsQuery = store.getRecommendationsAsync(locale);
+
+		List<CloudantObject> itineraries = store.getItineraries(locale);
+		stageTimer("query_itineraries").stop(start);
+		if (itineraries == null || itineraries.isEmpty()) {
+			recommendationsQuery.cancel(true);
+			return null;
+		}
+		progress.startStep("format itineraries");
+		start = System.nanoTime();
+		List<RemyItinerary> sortedItins = formatJoinedItineraryForClient(itineraries);
+		stageTimer("format_itineraries").stop(start);
+		
+		// Each user's recommendations are generated from the first of their itineraries.
+		Map<String, RemyItinerary> userItins = new LinkedHashMap<String, RemyItinerary>();
+		for (RemyItinerary itin : sortedItins) {
+			if (!userItins.containsKey(itin.getUser()) && (users == null || users.contains(itin.getUser()))) {
+				userItins.put(itin.getUser(), itin);
 			}
-		} else {
-			logger.info(mUtils.getMessage("MSG0011", locale));
 		}
+		
+		// Now we need to inject weather data. Users may be travelling to different places, so the weather for each
+		// location is queried at the same time and injected into the itineraries for that location.
+		progress.startStep("query weather");
+		start = System.nanoTime();
+		Map<String, List<RemyItinerary>> locationItins = new LinkedHashMap<String, List<RemyItinerary>>();
+		Map<String, Future<List<RemyWeather>>> weatherQueries = new HashMap<String, Future<List<RemyWeather>>>();
+		for (RemyItinerary itin : userItins.values()) {
+			String city = itin.getInitialLocation().getCity();
+			String country = itin.getInitialLocation().getCountry();
+			String location = city + "," + country;
+			if (!locationItins.containsKey(location)) {
+				locationItins.put(location, new ArrayList<RemyItinerary>());
+				weatherQueries.put(location, store.getWeatherAsync(city, country, locale));
+			}
+			locationItins.get(location).add(itin);
+		}
+		Map<String, List<RemyWeather>> weatherData = new HashMap<String, List<RemyWeather>>();
+		for (String location : locationItins.keySet()) {
+			weatherData.put(location, Utilities.getResult(weatherQueries.get(location)));
+		}
+		stageTimer("query_weather").stop(start);
 
-		long start = new Date().getTime();
-		Map<String, RemyTravelData> copy = null;
-		synchronized (lock) {
-			copy = (Map<String, RemyTravelData>) DeepCopy.copy(cache);
+		progress.startStep("inject weather");
+		start = System.nanoTime();
+		for (String location : locationItins.keySet()) {
+			List<RemyWeather> weatherList = wUtils.formatWeatherForItinerary(weatherData.get(location));
+			insertWeatherIntoItineraries(locationItins.get(location), weatherList, true);
 		}
+		stageTimer("inject_weather").stop(start);
 		
-		logger.info("deep copy cached data: " + Utilities.getTimeDifference(start, new Date().getTime()));
-		start = new Date().getTime();
-		if (copy != null) {
-			for (String key : copy.keySet()) {
-				RemyTravelData data = copy.get(key);
-				if (data != null) {
-					data.fixTime();
+		// Next, we need to acquire all the recommendations.
+		progress.startStep("query recommendations");
+		start = System.nanoTime();
+		List<RemyEvent> recommendations = Utilities.getResult(recommendationsQuery);
+		stageTimer("query_recommendations").stop(start);
+		
+		start = System.nanoTime();
+		HashMap<String, RemyRecs> sortedRecs = RecommendationUtils.formatRecs(recommendations);
+		stageTimer("format_recommendations").stop(start);
+
+		// Generate the five versions of each user's itinerary. Users are independent of each other, so they are
+		// generated in parallel, and a user that fails or takes too long is left out instead of failing the build.
+		progress.startStep("generate itinerary versions");
+		start = System.nanoTime();
+		Map<String, Future<List<RemyItinerary>>> userBuilds = new LinkedHashMap<String, Future<List<RemyItinerary>>>();
+		for (RemyItinerary itin : userItins.values()) {
+			userBuilds.put(itin.getUser(), userExecutor.submit(
+					new ItineraryVersionsTask(itin, sortedRecs.get(itin.getUser()), locale)));
+		}
+		List<RemyItinerary> generatedItins = new ArrayList<RemyItinerary>();
+		Exception failure = null;
+		long deadline = new Date().getTime() + userTimeoutMillis;
+		int done = 0;
+		for (Map.Entry<String, Future<List<RemyItinerary>>> userBuild : userBuilds.entrySet()) {
+			String user = userBuild.getKey();
+			try {
+				if (userTimeoutMillis > 0) {
+					long remaining = Math.max(0, deadline - new Date().getTime());
+					generatedItins.addAll(userBuild.getValue().get(remaining, TimeUnit.MILLISECONDS));
+				} else {
+					generatedItins.addAll(Utilities.getResult(userBuild.getValue()));
+				}
+			} catch (InterruptedException ex) {
+				// The build was cancelled, so stop generating the other users as well.
+				for (Future<List<RemyItinerary>> build : userBuilds.values()) {
+					build.cancel(true);
 				}
+				throw ex;
+			} catch (TimeoutException ex) {
+				userBuild.getValue().cancel(true);
+				failure = failure == null ? ex : failure;
+				metrics.counter(USER_FAILURES_METRIC, USER_FAILURES_HELP, "reason", "timeout").inc();
+				logger.severe(mUtils.getMessage("MSG0018", new Object[]{user}));
+			} catch (Exception ex) {
+				Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+				failure = failure == null ? (cause instanceof Exception ? (Exception) cause : ex) : failure;
+				metrics.counter(USER_FAILURES_METRIC, USER_FAILURES_HELP, "reason", "error").inc();
+				logger.severe(mUtils.getMessage("MSG0017", new Object[]{user, cause.getMessage()}));
 			}
+			progress.setDescription("generate itinerary versions (" + (++done) + " of " + userBuilds.size() + " users)");
+		}
+		stageTimer("generate_versions").stop(start);
+		// Write the profiles Personality Insights analyzed for this build to disk in one go.
+		PersonalityProfileCache.getInstance().save();
+		if (generatedItins.isEmpty() && failure != null) {
+			// Nobody's itineraries could be generated, so fail the build and keep serving the previous data.
+			throw failure;
+		}
+
+		// Lastly, return the data.
+		return getUserDeliverable(generatedItins);
+	}
+	
+	/**
+	 * Returns the timer for one step of building the itinerary data.
+	 * 
+	 * @param stage The name of the step.
+	 * @return The timer for the step.
+	 */
+	private static Metrics.Timer stageTimer(String stage) {
+		return metrics.timer("remy_build_stage_seconds", "Time taken by each step of building the itinerary data.", "stage", stage);
+	}
+	
+	/**
+	 * Generates the five versions of a single user's itinerary, one for each step of the demo:
+	 * 
+	 * 1) Hotel recommendations.
+	 * 2) A hotel has been chosen.
+	 * 3) Bad weather, with recommended alternatives for the outdoor event it affects.
+	 * 4) An alternative has been chosen, with recommended transportation to it.
+	 * 5) Transportation has been chosen.
+	 */
+	private static class ItineraryVersionsTask implements Callable<List<RemyItinerary>> {
+		private final RemyItinerary itinerary;
+		private final RemyRecs recs;
+		private final String locale;
+
+		ItineraryVersionsTask(RemyItinerary itinerary, RemyRecs recs, String locale) {
+			this.itinerary = itinerary;
+			this.recs = recs;
+			this.locale = locale;
+		}
+
+		@Override
+		public List<RemyItinerary> call() {
+			// Generate itinerary version 1: hotel recommendations
+			long start = System.nanoTime();
+			RemyItinerary itin1 = RecEngineHotels.recommendHotels(itinerary, recs, locale);
+			itin1.setVersion(1);
+			stageTimer("recommend_hotels").stop(start);
+
+			// Generate itinerary version 2: choose hotel
+			start = System.nanoTime();
+			RemyItinerary itin2 = RecEngineHotels.chooseHotel(itin1, locale);
+			itin2.setVersion(2);
+			stageTimer("choose_hotel").stop(start);
+
+			// Generate itinerary version 3: bad weather with recommended alternatives
+			start = System.nanoTime();
+			RemyItinerary itin3 = RecEngineWeather.injectBadWeather(itin2);
+			itin3 = RecEngineWeather.recommendWeatherAlternatives(itin3, recs, locale);
+			itin3.setVersion(3);
+			stageTimer("recommend_weather_alternatives").stop(start);
+
+			// Generate itinerary version 4: alternative selected, transportation recommended
+			start = System.nanoTime();
+			RemyItinerary itin4 = RecEngineWeather.chooseWeatherAlternative(itin3);
+			itin4 = RecEngineTransportation.recommendTransportation(itin4, recs, locale);
+			itin4.setVersion(4);
+			stageTimer("recommend_transportation").stop(start);
+
+			// Generate itinerary version 5: transportation selected
+			start = System.nanoTime();
+			RemyItinerary itin5 = RecEngineTransportation.chooseTransportation(itin4);
+			itin5.setVersion(5);
+			stageTimer("choose_transportation").stop(start);
+			
+			List<RemyItinerary> generatedItins = new ArrayList<RemyItinerary>();
+			generatedItins.add(itin1);
+			generatedItins.add(itin2);
+			generatedItins.add(itin3);
+			generatedItins.add(itin4);
+			generatedItins.add(itin5);
+			return generatedItins;
 		}
-		logger.info("update timestamps from copy of cached data: " + Utilities.getTimeDifference(start, new Date().getTime()));
-		return copy;
 	}
 	
 	/**
@@ -231,21 +582,20 @@ public class ItineraryUtils {
 	 * @param data The data we pull from Cloudant. Mainly a list of Itineraries and their associated events.
 	 * @return A list of RemyItinery objects representing all the itineraries available in the data.
 	 */
-	@SuppressWarnings("unchecked")
-	private List<RemyItinerary> formatJoinedItineraryForClient(@SuppressWarnings("rawtypes") List<HashMap> data) {
+	private List<RemyItinerary> formatJoinedItineraryForClient(List<CloudantObject> data) {
 		logger.finest(mUtils.getMessage("MSG0008", "getAll"));
-		EventUtils eUtils = new EventUtils();
 		Map<String, RemyItinerary> itins = new HashMap<String, RemyItinerary>();
 		
 		// This code also assumes that Cloudant returns itineraries first, and by design it should.
 		String currentItinId = "";
-		for (HashMap<String, Object> itinItem: data) {
-			if (RemyEvent.ITINERARY.equals(itinItem.get(RemyEvent.TYPE_KEY))) {
-				RemyItinerary itin = new RemyItineraryImpl(itinItem);
+		for (CloudantObject itinItem: data) {
+			if (itinItem instanceof RemyItinerary) {
+				RemyItinerary itin = (RemyItinerary) itinItem;
 				currentItinId = itin.getId();
 				itins.put(itin.getId(), itin);
 			} else {
-				RemyEvent event = eUtils.createEventFromHashmap(itinItem, currentItinId);
+				RemyEventImpl event = (RemyEventImpl) itinItem;
+				event.setItineraryId(currentItinId);
 				RemyItinerary itin = itins.get(event.getItineraryId());
 				long normalizedDate = DateUtils.generalizeTime(new Date(event.getTime())).getTime();
 				RemyEventDate red = itin.getDate(normalizedDate);
@@ -0,0 +1,129 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.ra.remy.common.impl.RemyEventDateImpl;
+import com.ibm.ra.remy.common.impl.RemyItineraryImpl;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyEventDate;
+import com.ibm.ra.remy.common.model.RemyItinerary;
+
+/**
+ * A new version of an itinerary that shares everything it does not change with the version it was made from.
+ *
+ * The recommendation engines each turn one version of an itinerary into the next one, and they used to start by deep
+ * copying the whole itinerary. Most of a version is the same as the one before it though, so instead a version starts
+ * out as a copy of the itinerary that shares all of its dates, and a date (or event) is only copied the first time the
+ * new version changes it. Anything that was not copied must be treated as read only, since other versions use it too.
+ */
+public class ItineraryVersion {
+	private final RemyItinerary itinerary;
+	private final Map<RemyEventDate, RemyEventDate> copiedDates = new IdentityHashMap<RemyEventDate, RemyEventDate>();
+	private final Map<RemyEvent, RemyEvent> copiedEvents = new IdentityHashMap<RemyEvent, RemyEvent>();
+	private final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+	/**
+	 * Starts a new version of the given itinerary. The given itinerary is not modified.
+	 *
+	 * @param previous The version to start from.
+	 */
+	public ItineraryVersion(RemyItinerary previous) {
+		this.itinerary = new RemyItineraryImpl((RemyItineraryImpl) previous);
+	}
+
+	/**
+	 * @return The new version of the itinerary.
+	 */
+	public RemyItinerary getItinerary() {
+		return itinerary;
+	}
+
+	/**
+	 * Returns a date of the new version that may be changed. The first time a date is asked for it is copied, and the
+	 * copy replaces it in the new version. After that the same copy is returned.
+	 *
+	 * @param date A date of the new version, or the date it was copied from.
+	 * @return The copy of the date that belongs to the new version.
+	 */
+	public RemyEventDate editDate(RemyEventDate date) {
+		if (owned.contains(date)) {
+			return date;
+		}
+		RemyEventDate copy = copiedDates.get(date);
+		if (copy == null) {
+			List<RemyEventDate> dates = itinerary.getAllDates();
+			int index = indexOf(dates, date);
+			if (index < 0) {
+				throw new IllegalArgumentException("The date is not part of this itinerary: " + date.getDate());
+			}
+			copy = new RemyEventDateImpl(date);
+			dates.set(index, copy);
+			copiedDates.put(date, copy);
+			owned.add(copy);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns an event of the new version that may be changed. The date that holds the event is copied as well, see
+	 * {@link #editDate(RemyEventDate) editDate}.
+	 *
+	 * @param date The date that holds the event.
+	 * @param event An event of the new version, or the event it was copied from.
+	 * @return The copy of the event that belongs to the new version.
+	 */
+	public RemyEvent editEvent(RemyEventDate date, RemyEvent event) {
+		if (owned.contains(event)) {
+			return event;
+		}
+		RemyEvent copy = copiedEvents.get(event);
+		if (copy == null) {
+			List<RemyEvent> events = editDate(date).getEvents();
+			int index = indexOf(events, event);
+			if (index < 0) {
+				throw new IllegalArgumentException("The event is not part of this date: " + event.getId());
+			}
+			copy = event.copy();
+			events.set(index, copy);
+			copiedEvents.put(event, copy);
+			owned.add(copy);
+		}
+		return copy;
+	}
+
+	/**
+	 * Sorts the events of the dates that were changed in this version. The other dates are shared with the previous
+	 * version, whose events are already sorted.
+	 */
+	public void sortChangedDates() {
+		for (RemyEventDate date : copiedDates.values()) {
+			date.sortEvents();
+		}
+	}
+
+	/**
+	 * Finds an object in a list by identity rather than by equals.
+	 */
+	private static int indexOf(List<?> list, Object item) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == item) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
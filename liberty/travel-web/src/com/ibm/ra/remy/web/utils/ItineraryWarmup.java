@@ -0,0 +1,178 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Singleton that builds the itinerary data of some locales in the background when the application starts, so the
+ * first request after a restart does not have to wait for the connection to Cloudant, every view query and the calls
+ * to Watson and Business Rules. It is started by {@link com.ibm.ra.remy.web.ItineraryWarmupListener}.
+ *
+ * The snapshots saved to disk by the last run of the server (see {@link ItinerarySnapshotStore}) are published first,
+ * before the application takes any requests, and each of them is refreshed in the background so it is brought up to
+ * date with Cloudant while it is being served. A locale that was restored this way counts as built.
+ *
+ * The locales are built one after the other, in the order they are listed. A locale whose build fails is tried again
+ * after a growing delay until it succeeds, so the application becomes ready on its own once the services it needs are
+ * up. Until every locale has been built once the application reports that it is not ready (see {@link #isReady()}),
+ * so a load balancer can hold traffic back until then.
+ *
+ * The locales are configured in app.properties:
+ *
+ *     ITINERARY_WARMUP_LOCALES    Comma separated locales to build at startup, empty for none (default en).
+ */
+public class ItineraryWarmup {
+	private static final ItineraryWarmup instance = new ItineraryWarmup();
+	private static final String LOCALES_KEY = "ITINERARY_WARMUP_LOCALES";
+	private static final String DEFAULT_LOCALES = "en";
+	private static final long MIN_RETRY_MILLIS = 1000;
+	private static final long MAX_RETRY_MILLIS = 60000;
+
+	private final Logger logger = Logger.getLogger(ItineraryWarmup.class.getName());
+	private final MessageUtils mUtils = MessageUtils.getInstance();
+	private final List<String> locales = new ArrayList<String>();
+	private final Set<String> warm = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private ExecutorService executor;
+	private boolean started;
+
+	/**
+	 * Private constructor. Reads the locales to build from app.properties.
+	 */
+	private ItineraryWarmup() {
+		String value = PropertiesReader.getInstance().getStringProperty(LOCALES_KEY);
+		for (String locale : (value == null ? DEFAULT_LOCALES : value).split(",")) {
+			if (!locale.trim().isEmpty() && !locales.contains(locale.trim())) {
+				locales.add(locale.trim());
+			}
+		}
+	}
+
+	/**
+	 * Gets the singleton instance for the warm-up.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static ItineraryWarmup getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Publishes the saved snapshots and starts building the configured locales in the background. Does nothing if the
+	 * warm-up has already been started.
+	 */
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		restore();
+		if (locales.isEmpty()) {
+			return;
+		}
+		logger.info(mUtils.getMessage("MSG0024", new Object[]{locales}));
+		executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("itinerary-warmup"));
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (String locale : locales) {
+					if (!warmUp(locale)) {
+						return;
+					}
+				}
+			}
+		});
+		executor.shutdown();
+	}
+
+	/**
+	 * Stops the warm-up if it is still running.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Whether every configured locale has been built, so requests for them will be answered from the cache.
+	 *
+	 * @return True if the warm-up has finished, or if there is nothing to warm up.
+	 */
+	public boolean isReady() {
+		return warm.containsAll(locales);
+	}
+
+	/**
+	 * Reports for every configured locale whether it has been built yet.
+	 *
+	 * @return A Map from each locale, in the order they are built, to true if it has been built.
+	 */
+	public Map<String, Boolean> getStatus() {
+		Map<String, Boolean> status = new LinkedHashMap<String, Boolean>();
+		for (String locale : locales) {
+			status.put(locale, warm.contains(locale));
+		}
+		return status;
+	}
+
+	/**
+	 * Publishes the snapshots saved by the last run of the server, unless their locale is already cached, and starts a
+	 * background refresh of each of them.
+	 */
+	private void restore() {
+		for (ItinerarySnapshot snapshot : ItinerarySnapshotStore.getInstance().loadAll()) {
+			if (ItineraryCache.getInstance().restore(snapshot.getLocale(), snapshot)) {
+				warm.add(snapshot.getLocale());
+				ItineraryRefresher.getInstance().refresh(snapshot.getLocale());
+			}
+		}
+	}
+
+	/**
+	 * Builds a locale, trying again until the build succeeds.
+	 *
+	 * @return True once the locale is built, false if the warm-up was stopped first.
+	 */
+	private boolean warmUp(String locale) {
+		long start = System.nanoTime();
+		long retryMillis = MIN_RETRY_MILLIS;
+		while (true) {
+			try {
+				new ItineraryUtils().getSnapshot(locale, false);
+				warm.add(locale);
+				logger.info(mUtils.getMessage("MSG0025", new Object[]{locale,
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)}));
+				return true;
+			} catch (InterruptedException ex) {
+				return false;
+			} catch (Exception ex) {
+				logger.severe(mUtils.getMessage("MSG0026", new Object[]{locale, retryMillis, ex.getMessage()}));
+			}
+			try {
+				Thread.sleep(retryMillis);
+			} catch (InterruptedException ex) {
+				return false;
+			}
+			retryMillis = Math.min(MAX_RETRY_MILLIS, retryMillis * 2);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+import com.ibm.ra.remy.common.impl.RemyLodgingEventDiscount;
+
+/**
+ * The lodging rules of the travel-businessrules project, run in the application instead of on the Business Rules
+ * service. They follow the hotels ruleflow, which runs two rules in turn:
+ *
+ *     applyPromotionalDiscount    If the booking has a promotional discount, 15% off the price.
+ *     applyLoyaltyDiscount        If the booking is a loyalty member, 10% off the price, after any promotional discount.
+ *
+ * Each rule sets the message, previous price and discounted price of its discount and lowers the price of the booking.
+ * The results are the same as those of the service, so the two can be swapped with BR_ENGINE in app.properties, see
+ * {@link BusinessRulesUtils#applyLodgingRules(java.util.List, String)}. Changes to the rules must be made in both places.
+ */
+public class LodgingRules {
+	static final String PROMOTIONAL_MESSAGE = "15% off";
+	static final double PROMOTIONAL_FACTOR = 0.85;
+	static final String LOYALTY_MESSAGE = "10% off";
+	static final double LOYALTY_FACTOR = 0.9;
+
+	private LodgingRules() {
+	}
+
+	/**
+	 * Applies the rules to a booking.
+	 *
+	 * @param booking The booking, which is not modified.
+	 * @return A copy of the booking with the rules applied. Like the service, the copy always has both discounts, even
+	 * when the booking has none and their rule does not apply.
+	 */
+	public static RemyLodgingEvent apply(RemyLodgingEvent booking) {
+		RemyLodgingEvent adjustedBooking = booking.copy();
+		if (adjustedBooking.getPromotionalDiscount() == null) {
+			adjustedBooking.setPromotionalDiscount(new RemyLodgingEventDiscount());
+		}
+		if (adjustedBooking.getLoyaltyDiscount() == null) {
+			adjustedBooking.setLoyaltyDiscount(new RemyLodgingEventDiscount());
+		}
+		if (adjustedBooking.getHasPromotionalDiscount()) {
+			applyDiscount(adjustedBooking, adjustedBooking.getPromotionalDiscount(), PROMOTIONAL_MESSAGE, PROMOTIONAL_FACTOR);
+		}
+		if (adjustedBooking.getIsLoyaltyMember()) {
+			applyDiscount(adjustedBooking, adjustedBooking.getLoyaltyDiscount(), LOYALTY_MESSAGE, LOYALTY_FACTOR);
+		}
+		return adjustedBooking;
+	}
+
+	/**
+	 * The action of both rules. The price is multiplied as a double and stored as a float, as the service does.
+	 */
+	private static void applyDiscount(RemyLodgingEvent booking, RemyLodgingEventDiscount discount, String message,
+			double factor) {
+		discount.setMessage(message);
+		discount.setPreviousPrice(booking.getPrice());
+		discount.setDiscountedPrice((float) (factor * booking.getPrice()));
+		booking.setPrice((float) (factor * booking.getPrice()));
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+import com.ibm.ra.remy.common.impl.RemyLodgingEventDiscount;
+
+/**
+ * Singleton holding the outcomes of the lodging rules run on the Business Rules service, so a booking the service has
+ * already seen is not sent again on the next build of the itinerary data. The rules only read the price, whether the
+ * booking has a promotional discount and whether it is a loyalty member, so the outcome is keyed by a SHA-256 hash of
+ * those, the loyalty program and BR_RULE_APP_PATH, which holds the version of the deployed rule app. Deploying a new
+ * version under a new path therefore never reuses an outcome of the old one.
+ *
+ * The cache is bounded, dropping the least recently used outcome when it is full, and outcomes expire after a time to
+ * live so that rules redeployed under the same path are picked up. It is also cleared by {@link #invalidate()}, which
+ * the /itinerary/refresh end point calls. The limits are read from app.properties:
+ *
+ *     BR_RULES_CACHE_MAX_ENTRIES    The maximum number of outcomes to keep, 0 to turn the cache off (default 1000).
+ *     BR_RULES_CACHE_TTL_MINUTES    Minutes an outcome is kept, 0 to keep it until evicted or invalidated (default 60).
+ *
+ * Lookups are counted as hits and misses in remy_lodging_rules_cache_total, and dropped outcomes in
+ * remy_lodging_rules_cache_evictions_total.
+ */
+public class LodgingRulesCache {
+	private static final LodgingRulesCache instance = new LodgingRulesCache();
+	private static final String MAX_ENTRIES_KEY = "BR_RULES_CACHE_MAX_ENTRIES";
+	private static final String TTL_MINUTES_KEY = "BR_RULES_CACHE_TTL_MINUTES";
+	private static final String RULE_APP_PATH_KEY = "BR_RULE_APP_PATH";
+	private static final int DEFAULT_MAX_ENTRIES = 1000;
+	private static final int DEFAULT_TTL_MINUTES = 60;
+
+	private final Map<String, Outcome> outcomes = new LinkedHashMap<String, Outcome>(16, 0.75f, true);
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final String ruleAppPath;
+
+	/**
+	 * The result of the rules for one key: the price they set, and the discounts of the rules that applied. A discount
+	 * whose rule did not apply is left as the booking has it, as the service does.
+	 */
+	private static class Outcome {
+		final float price;
+		final RemyLodgingEventDiscount promotionalDiscount;
+		final RemyLodgingEventDiscount loyaltyDiscount;
+		final long storedAt;
+
+		Outcome(RemyLodgingEvent adjustedBooking) {
+			this.price = adjustedBooking.getPrice();
+			this.promotionalDiscount = copyIf(adjustedBooking.getHasPromotionalDiscount(),
+					adjustedBooking.getPromotionalDiscount());
+			this.loyaltyDiscount = copyIf(adjustedBooking.getIsLoyaltyMember(), adjustedBooking.getLoyaltyDiscount());
+			this.storedAt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Private constructor. Reads the cache limits from app.properties.
+	 */
+	private LodgingRulesCache() {
+		PropertiesReader constants = PropertiesReader.getInstance();
+		maxEntries = Math.max(0, constants.getIntProperty(MAX_ENTRIES_KEY, DEFAULT_MAX_ENTRIES));
+		ttlMillis = constants.getIntProperty(TTL_MINUTES_KEY, DEFAULT_TTL_MINUTES) * 60000L;
+		ruleAppPath = constants.getStringProperty(RULE_APP_PATH_KEY);
+	}
+
+	/**
+	 * Gets the singleton instance for the cache.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static LodgingRulesCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Looks up the outcome of the rules for a booking and records the lookup as a hit or a miss.
+	 *
+	 * @param booking The booking, which is not modified.
+	 * @return A copy of the booking with the cached outcome applied, or null if there is none.
+	 */
+	public RemyLodgingEvent get(RemyLodgingEvent booking) {
+		if (maxEntries == 0) {
+			return null;
+		}
+		String key = getKey(booking);
+		Outcome outcome;
+		synchronized (outcomes) {
+			outcome = outcomes.get(key);
+			if (outcome != null && ttlMillis > 0 && System.currentTimeMillis() - outcome.storedAt > ttlMillis) {
+				outcomes.remove(key);
+				recordEvictions(1);
+				outcome = null;
+			}
+		}
+		recordLookup(outcome != null);
+		if (outcome == null) {
+			return null;
+		}
+		RemyLodgingEvent adjustedBooking = booking.copy();
+		adjustedBooking.setPrice(outcome.price);
+		if (outcome.promotionalDiscount != null) {
+			adjustedBooking.setPromotionalDiscount(new RemyLodgingEventDiscount(outcome.promotionalDiscount));
+		} else if (adjustedBooking.getPromotionalDiscount() == null) {
+			adjustedBooking.setPromotionalDiscount(new RemyLodgingEventDiscount());
+		}
+		if (outcome.loyaltyDiscount != null) {
+			adjustedBooking.setLoyaltyDiscount(new RemyLodgingEventDiscount(outcome.loyaltyDiscount));
+		} else if (adjustedBooking.getLoyaltyDiscount() == null) {
+			adjustedBooking.setLoyaltyDiscount(new RemyLodgingEventDiscount());
+		}
+		return adjustedBooking;
+	}
+
+	/**
+	 * Stores the outcome of the rules for a booking, dropping the least recently used outcome if the cache is full.
+	 *
+	 * @param booking The booking as it was sent to the service.
+	 * @param adjustedBooking The booking as the service returned it.
+	 */
+	public void put(RemyLodgingEvent booking, RemyLodgingEvent adjustedBooking) {
+		if (maxEntries == 0) {
+			return;
+		}
+		String key = getKey(booking);
+		Outcome outcome = new Outcome(adjustedBooking);
+		int evicted = 0;
+		synchronized (outcomes) {
+			outcomes.put(key, outcome);
+			Iterator<Outcome> eldest = outcomes.values().iterator();
+			while (outcomes.size() > maxEntries) {
+				eldest.next();
+				eldest.remove();
+				evicted++;
+			}
+		}
+		recordEvictions(evicted);
+	}
+
+	/**
+	 * Removes every cached outcome, for when the rules have been redeployed.
+	 */
+	public void invalidate() {
+		synchronized (outcomes) {
+			outcomes.clear();
+		}
+	}
+
+	/**
+	 * The number of outcomes currently cached.
+	 *
+	 * @return The number of cached outcomes.
+	 */
+	public int size() {
+		synchronized (outcomes) {
+			return outcomes.size();
+		}
+	}
+
+	/**
+	 * Hashes the fields the rules read, with the path of the rule app.
+	 */
+	String getKey(RemyLodgingEvent booking) {
+		StringBuilder fields = new StringBuilder();
+		fields.append(ruleAppPath).append('\n');
+		fields.append(Float.floatToIntBits(booking.getPrice())).append('\n');
+		fields.append(booking.getHasPromotionalDiscount()).append('\n');
+		fields.append(booking.getIsLoyaltyMember()).append('\n');
+		fields.append(booking.getLoyaltyProgramName());
+		return Utilities.sha256Hex(fields.toString());
+	}
+
+	private static RemyLodgingEventDiscount copyIf(boolean applied, RemyLodgingEventDiscount discount) {
+		return applied && discount != null ? new RemyLodgingEventDiscount(discount) : null;
+	}
+
+	private static void recordLookup(boolean hit) {
+		Metrics.getInstance().counter("remy_lodging_rules_cache_total",
+				"Number of lookups in the cache of lodging rule outcomes, by whether they were hits or misses.",
+				"result", hit ? "hit" : "miss").inc();
+	}
+
+	private static void recordEvictions(int evicted) {
+		if (evicted > 0) {
+			Metrics.getInstance().counter("remy_lodging_rules_cache_evictions_total",
+					"Number of lodging rule outcomes dropped from the cache because it was full or they expired.")
+					.inc(evicted);
+		}
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.ibm.ra.remy.common.impl.CloudantDocumentReader;
+import com.ibm.ra.remy.common.impl.CloudantObject;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyWeather;
+
+/**
+ * The travel data store that answers the queries from documents held in memory, read from a file in the format of
+ * remy_dev_db.json and remy_prod_db.json ({"docs": [...]}). It needs no connection to anything, so the itinerary data
+ * can be built offline, and by tests and benchmarks, at the speed of memory.
+ *
+ * When the documents are loaded each view is built the way Cloudant builds it, by emitting the same rows as the map
+ * functions of the remy_design design document:
+ *
+ *     itineraryJsonView      Sorted by [itineraryStartDate, version, locale, 0 for the itinerary or 1 for its events].
+ *     allRecsView            Sorted by [locale, 0 for the recommendations or 1 for their events].
+ *     weatherViewFiltered    Hashed on [city, country, locale].
+ *
+ * The sorted views follow the collation of Cloudant (null, false, true, numbers, strings, arrays, objects), rows with
+ * the same key are ordered by the id of the document that emitted them, and range queries include both keys, so a
+ * query returns the same documents in the same order as it would from Cloudant. Strings are compared by character
+ * rather than with the Unicode collation Cloudant uses, which only matters for keys that differ in case or accents.
+ *
+ * The pipeline reads the recommendations from updatedRecsView, which is not part of the design document in the data
+ * files. Its documents are the recommendations documents of the files in their updated form, so while they are loaded
+ * those are converted: the subtype moves to rec_type, the subtype becomes recommendations, and alert, start_time and
+ * end_time default to false and 0. The isPreferred and loyaltyPoints members that only some of the events in the
+ * files have default to false and 0 as well.
+ */
+public class MemoryTravelDataStore implements TravelDataStore {
+	private static final Logger logger = Logger.getLogger(MemoryTravelDataStore.class.getName());
+	private static final String DESIGN_PREFIX = "_design/";
+
+	// The documents as JSON text, which each query decodes with the streaming reader as Cloudant's responses are.
+	private final Map<String, String> docs = new HashMap<String, String>();
+	private final List<Row> itineraryView = new ArrayList<Row>();
+	private final List<Row> recommendationsView = new ArrayList<Row>();
+	private final Map<List<Object>, List<Row>> weatherView = new HashMap<List<Object>, List<Row>>();
+
+	/**
+	 * Loads the documents of a data file and builds the views.
+	 *
+	 * @param reader The data file. It is read to the end but not closed.
+	 */
+	public MemoryTravelDataStore(Reader reader) {
+		JsonObject root = new JsonParser().parse(reader).getAsJsonObject();
+		Map<String, JsonObject> loaded = new HashMap<String, JsonObject>();
+		for (JsonElement element : root.getAsJsonArray("docs")) {
+			JsonObject doc = element.getAsJsonObject();
+			String id = getString(doc, "_id");
+			if (id != null && !id.startsWith(DESIGN_PREFIX)) {
+				normalize(doc);
+				loaded.put(id, doc);
+			}
+		}
+		for (Map.Entry<String, JsonObject> doc : loaded.entrySet()) {
+			emit(doc.getKey(), doc.getValue());
+			docs.put(doc.getKey(), doc.getValue().toString());
+		}
+		Collections.sort(itineraryView, ROW_ORDER);
+		Collections.sort(recommendationsView, ROW_ORDER);
+	}
+
+	/**
+	 * Loads a data file from the classpath, or from the file system if it is not on the classpath.
+	 *
+	 * @param name The name of the data file, such as resources/remy_dev_db.json.
+	 * @return The store with the documents of the file.
+	 * @throws IOException If the file cannot be found or read.
+	 */
+	public static MemoryTravelDataStore load(String name) throws IOException {
+		long start = System.nanoTime();
+		InputStream in = MemoryTravelDataStore.class.getClassLoader().getResourceAsStream(name);
+		if (in == null) {
+			File file = new File(name);
+			if (!file.isFile()) {
+				throw new FileNotFoundException(name);
+			}
+			in = new FileInputStream(file);
+		}
+		MemoryTravelDataStore store;
+		try {
+			store = new MemoryTravelDataStore(new InputStreamReader(in, MessageUtils.ENCODING));
+		} finally {
+			in.close();
+		}
+		logger.info(MessageUtils.getInstance().getMessage("MSG0030", new Object[]{store.docs.size(), name,
+				(System.nanoTime() - start) / 1000000}));
+		return store;
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getItineraries(java.lang.String)
+	 */
+	@Override
+	public List<CloudantObject> getItineraries(String locale) {
+		return getDocs(range(itineraryView, Arrays.<Object>asList(0, 0, locale, 0),
+				Arrays.<Object>asList(Long.MAX_VALUE, Integer.MAX_VALUE, locale, 1)), CloudantObject.class);
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getWeather(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public List<RemyWeather> getWeather(String city, String country, String locale) {
+		List<Row> rows = weatherView.get(Arrays.<Object>asList(city, country, locale));
+		return getDocs(rows == null ? Collections.<Row>emptyList() : rows, RemyWeather.class);
+	}
+
+	/**
+	 * Runs the query straight away, since it does not have to wait on anything.
+	 *
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getWeatherAsync(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public Future<List<RemyWeather>> getWeatherAsync(String city, String country, String locale) {
+		return completed(getWeather(city, country, locale));
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getRecommendations(java.lang.String)
+	 */
+	@Override
+	public List<RemyEvent> getRecommendations(String locale) {
+		return getDocs(range(recommendationsView, Arrays.<Object>asList(locale, 0), Arrays.<Object>asList(locale, 1)),
+				RemyEvent.class);
+	}
+
+	/**
+	 * Runs the query straight away, since it does not have to wait on anything.
+	 *
+	 * @see com.ibm.ra.remy.web.utils.TravelDataStore#getRecommendationsAsync(java.lang.String)
+	 */
+	@Override
+	public Future<List<RemyEvent>> getRecommendationsAsync(String locale) {
+		return completed(getRecommendations(locale));
+	}
+
+	/**
+	 * Adds the rows the map functions of the views emit for a document.
+	 */
+	private void emit(String id, JsonObject doc) {
+		String type = getString(doc, "type");
+		if (RemyEvent.ITINERARY.equals(type)) {
+			Object startDate = getKey(doc.get("itineraryStartDate"));
+			Object version = getKey(doc.get("version"));
+			Object locale = getKey(doc.get("locale"));
+			itineraryView.add(new Row(Arrays.asList(startDate, version, locale, 0d), id, id));
+			for (String event : getIds(doc.get("events"))) {
+				itineraryView.add(new Row(Arrays.asList(startDate, version, locale, 1d), id, event));
+			}
+		} else if ("recs".equals(type)) {
+			Object locale = getKey(doc.get("locale"));
+			recommendationsView.add(new Row(Arrays.asList(locale, 0d), id, id));
+			for (String event : getIds(doc.get("events"))) {
+				recommendationsView.add(new Row(Arrays.asList(locale, 1d), id, event));
+			}
+		} else if ("weather".equals(type) && doc.get("location") != null && doc.get("location").isJsonObject()) {
+			JsonObject location = doc.getAsJsonObject("location");
+			List<Object> key = Arrays.asList(getKey(location.get("city")), getKey(location.get("country")),
+					getKey(doc.get("locale")));
+			List<Row> rows = weatherView.get(key);
+			if (rows == null) {
+				rows = new ArrayList<Row>();
+				weatherView.put(key, rows);
+			}
+			rows.add(new Row(key, id, id));
+		}
+	}
+
+	/**
+	 * Converts the recommendations documents to their updated form and fills in the members some events are missing.
+	 */
+	private static void normalize(JsonObject doc) {
+		String type = getString(doc, "type");
+		String subtype = getString(doc, RemyEvent.SUBTYPE_KEY);
+		if ("recs".equals(type) && !RemyEvent.RECOMMENDATIONS.equals(subtype)) {
+			doc.addProperty(RemyEvent.RECTYPE_KEY, subtype);
+			doc.addProperty(RemyEvent.SUBTYPE_KEY, RemyEvent.RECOMMENDATIONS);
+			setDefault(doc, "alert", new JsonPrimitive(false));
+			setDefault(doc, "start_time", new JsonPrimitive(0));
+			setDefault(doc, "end_time", new JsonPrimitive(0));
+		} else if ("event".equals(type)) {
+			if (RemyEvent.LODGING.equals(subtype) || RemyEvent.TRANSIT.equals(subtype)
+					|| RemyEvent.RESTAURANT.equals(subtype)) {
+				setDefault(doc, "isPreferred", new JsonPrimitive(false));
+			}
+			if (RemyEvent.LODGING.equals(subtype)) {
+				setDefault(doc, "loyaltyPoints", new JsonPrimitive(0));
+			}
+		}
+	}
+
+	private static void setDefault(JsonObject doc, String member, JsonElement value) {
+		if (doc.get(member) == null || doc.get(member).isJsonNull()) {
+			doc.add(member, value);
+		}
+	}
+
+	/**
+	 * Decodes the document of each row into a new model object, the way the Cloudant store does for include_docs.
+	 * Rows whose document does not exist are left out, as are documents that are not of the given class.
+	 */
+	private <T> List<T> getDocs(List<Row> rows, Class<T> docClass) {
+		List<T> result = new ArrayList<T>(rows.size());
+		for (Row row : rows) {
+			String doc = docs.get(row.docId);
+			if (doc != null) {
+				CloudantObject decoded;
+				try {
+					decoded = CloudantDocumentReader.read(new JsonReader(new StringReader(doc)));
+				} catch (IOException ex) {
+					throw new IllegalStateException(ex);
+				}
+				T checked = ViewRowReader.checkDocument(decoded, docClass, row.docId);
+				if (checked != null) {
+					result.add(checked);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the rows of a sorted view from the start key to the end key, both included.
+	 */
+	private static List<Row> range(List<Row> view, List<Object> startKey, List<Object> endKey) {
+		int low = 0;
+		int high = view.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (collate(view.get(middle).key, startKey) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int end = low;
+		while (end < view.size() && collate(view.get(end).key, endKey) <= 0) {
+			end++;
+		}
+		return view.subList(low, end);
+	}
+
+	/**
+	 * Compares two keys the way Cloudant sorts them.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static int collate(Object a, Object b) {
+		int rank = rank(a) - rank(b);
+		if (rank != 0) {
+			return rank;
+		}
+		if (a instanceof Boolean) {
+			return ((Boolean) a).compareTo((Boolean) b);
+		} else if (a instanceof Number) {
+			return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+		} else if (a instanceof String) {
+			return ((String) a).compareTo((String) b);
+		} else if (a instanceof List) {
+			List listA = (List) a;
+			List listB = (List) b;
+			for (int i = 0; i < listA.size() && i < listB.size(); i++) {
+				int result = collate(listA.get(i), listB.get(i));
+				if (result != 0) {
+					return result;
+				}
+			}
+			return listA.size() - listB.size();
+		}
+		return 0;
+	}
+
+	private static int rank(Object key) {
+		if (key == null) {
+			return 0;
+		} else if (key instanceof Boolean) {
+			return 1;
+		} else if (key instanceof Number) {
+			return 2;
+		} else if (key instanceof String) {
+			return 3;
+		} else if (key instanceof List) {
+			return 4;
+		}
+		return 5;
+	}
+
+	/**
+	 * Converts a member of a document to the value it has in a view key.
+	 */
+	private static Object getKey(JsonElement element) {
+		if (element == null || !element.isJsonPrimitive()) {
+			return element == null || element.isJsonNull() ? null : element.toString();
+		}
+		JsonPrimitive primitive = element.getAsJsonPrimitive();
+		if (primitive.isBoolean()) {
+			return primitive.getAsBoolean();
+		} else if (primitive.isNumber()) {
+			return primitive.getAsDouble();
+		}
+		return primitive.getAsString();
+	}
+
+	private static List<String> getIds(JsonElement element) {
+		List<String> ids = new ArrayList<String>();
+		if (element != null && element.isJsonArray()) {
+			for (JsonElement id : (JsonArray) element) {
+				if (id.isJsonPrimitive()) {
+					ids.add(id.getAsString());
+				}
+			}
+		}
+		return ids;
+	}
+
+	private static String getString(JsonObject doc, String member) {
+		JsonElement element = doc.get(member);
+		return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+	}
+
+	private static <T> Future<T> completed(T value) {
+		FutureTask<T> task = new FutureTask<T>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, value);
+		task.run();
+		return task;
+	}
+
+	/**
+	 * Orders the rows of a view by their key, then by the id of the document that emitted them. Sorting is stable, so
+	 * the rows a document emits with the same key stay in the order they were emitted.
+	 */
+	private static final Comparator<Row> ROW_ORDER = new Comparator<Row>() {
+		@Override
+		public int compare(Row a, Row b) {
+			int result = collate(a.key, b.key);
+			return result != 0 ? result : a.id.compareTo(b.id);
+		}
+	};
+
+	/**
+	 * A row of a view: its key, the document that emitted it and the document include_docs returns for it.
+	 */
+	private static class Row {
+		final List<Object> key;
+		final String id;
+		final String docId;
+
+		Row(List<Object> key, String id, String docId) {
+			this.key = key;
+			this.id = id;
+			this.docId = docId;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timers for the steps of building the itinerary data and for the calls we make to other services.
+ *
+ * Recording a value only updates a few atomic counters, so the metrics can be left on all the time. Nothing is
+ * formatted until somebody reads the metrics, which is done by {@link #write(Writer) write} in the Prometheus text
+ * format (version 0.0.4).
+ *
+ * A timer keeps a histogram of the times it records. The buckets grow with the times they hold, four buckets for
+ * every power of two from 16 microseconds up to about 67 seconds, so every bucket is at most a quarter wider than
+ * the one before it and any time can be placed in its bucket without searching.
+ *
+ * Metrics are looked up by name and labels, for example
+ * <pre>
+ *     Metrics.getInstance().timer("remy_cloudant_query_seconds", "Time taken by Cloudant view queries.", "view", viewName)
+ * </pre>
+ * The help text is only used the first time a metric with that name is asked for. Labels are given as name, value
+ * pairs.
+ */
+public class Metrics {
+	private static final Metrics instance = new Metrics();
+	private static final String COUNTER = "counter";
+	private static final String HISTOGRAM = "histogram";
+
+	private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<String, Family>();
+
+	public static Metrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Private constructor, use {@link #getInstance()}.
+	 */
+	private Metrics() {
+	}
+
+	/**
+	 * Returns the counter with the given name and labels, creating it if needed.
+	 *
+	 * @param name The name of the counter, which should end in _total.
+	 * @param help A description of what is counted.
+	 * @param labels Label names and values, in pairs.
+	 * @return The counter.
+	 */
+	public Counter counter(String name, String help, String... labels) {
+		return (Counter) getFamily(name, help, COUNTER).get(labels);
+	}
+
+	/**
+	 * Returns the timer with the given name and labels, creating it if needed.
+	 *
+	 * @param name The name of the timer, which should end in _seconds.
+	 * @param help A description of what is timed.
+	 * @param labels Label names and values, in pairs.
+	 * @return The timer.
+	 */
+	public Timer timer(String name, String help, String... labels) {
+		return (Timer) getFamily(name, help, HISTOGRAM).get(labels);
+	}
+
+	/**
+	 * Returns the timer for the calls made to another service, such as Business Rules or one of the Watson services.
+	 *
+	 * @param service The name of the service.
+	 * @return The timer for calls to the service.
+	 */
+	public Timer serviceTimer(String service) {
+		return timer("remy_service_call_seconds", "Time taken by calls to other services.", "service", service);
+	}
+
+	/**
+	 * Returns the counter of the calls made to another service that failed.
+	 *
+	 * @param service The name of the service.
+	 * @return The counter of failed calls to the service.
+	 */
+	public Counter serviceErrors(String service) {
+		return counter("remy_service_call_errors_total", "Number of calls to other services that failed.", "service", service);
+	}
+
+	/**
+	 * Makes a call to another service, timing it with {@link #serviceTimer(String)} and counting it in
+	 * {@link #serviceErrors(String)} if it throws.
+	 *
+	 * @param service The name of the service.
+	 * @param call The call to make.
+	 * @return The result of the call.
+	 * @throws E If the call throws it.
+	 */
+	public <T, E extends Exception> T time(String service, Call<T, E> call) throws E {
+		return time(serviceTimer(service), serviceErrors(service), call);
+	}
+
+	/**
+	 * Makes a call, timing it with the given timer and counting it in the given counter if it throws.
+	 *
+	 * @param timer The timer for the call, which records the time whether or not the call succeeds.
+	 * @param errors The counter of failed calls.
+	 * @param call The call to make.
+	 * @return The result of the call.
+	 * @throws E If the call throws it.
+	 */
+	public <T, E extends Exception> T time(Timer timer, Counter errors, Call<T, E> call) throws E {
+		long start = System.nanoTime();
+		try {
+			return call.call();
+		} catch (Exception ex) {
+			errors.inc();
+			throw ex;
+		} finally {
+			timer.stop(start);
+		}
+	}
+
+	/**
+	 * Writes every metric in the Prometheus text format. Metrics are written in order of name and labels.
+	 *
+	 * @param out Where to write the metrics.
+	 * @throws IOException If the metrics could not be written to the given Writer.
+	 */
+	public void write(Writer out) throws IOException {
+		for (Family family : new TreeMap<String, Family>(families).values()) {
+			family.write(out);
+		}
+		out.flush();
+	}
+
+	private Family getFamily(String name, String help, String type) {
+		Family family = families.get(name);
+		if (family == null) {
+			Family created = new Family(name, help, type);
+			family = families.putIfAbsent(name, created);
+			if (family == null) {
+				family = created;
+			}
+		}
+		if (!family.type.equals(type)) {
+			throw new IllegalArgumentException(name + " is a " + family.type);
+		}
+		return family;
+	}
+
+	/**
+	 * A call timed by {@link Metrics#time(String, Call) time}. Unlike a Callable it only throws the checked exception it
+	 * declares, so a call that throws none can be made without a catch block, for example
+	 * <pre>
+	 *     new Metrics.Call&lt;String, RuntimeException&gt;() { ... }
+	 * </pre>
+	 */
+	public interface Call<T, E extends Exception> {
+		T call() throws E;
+	}
+
+	/**
+	 * All the metrics with the same name, one for each set of labels.
+	 */
+	private static class Family {
+		private final String name;
+		private final String help;
+		private final String type;
+		private final ConcurrentMap<String, Object> children = new ConcurrentHashMap<String, Object>();
+
+		Family(String name, String help, String type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+		}
+
+		Object get(String[] labels) {
+			String key = formatLabels(labels);
+			Object child = children.get(key);
+			if (child == null) {
+				Object created = COUNTER.equals(type) ? new Counter() : new Timer();
+				child = children.putIfAbsent(key, created);
+				if (child == null) {
+					child = created;
+				}
+			}
+			return child;
+		}
+
+		void write(Writer out) throws IOException {
+			out.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+			out.write("# TYPE " + name + " " + type + "\n");
+			for (Map.Entry<String, Object> child : new TreeMap<String, Object>(children).entrySet()) {
+				if (child.getValue() instanceof Counter) {
+					out.write(name + braces(child.getKey()) + " " + ((Counter) child.getValue()).get() + "\n");
+				} else {
+					((Timer) child.getValue()).write(name, child.getKey(), out);
+				}
+			}
+		}
+
+		private static String formatLabels(String[] labels) {
+			if (labels.length % 2 != 0) {
+				throw new IllegalArgumentException("Labels must be given as name, value pairs");
+			}
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < labels.length; i += 2) {
+				if (i > 0) {
+					text.append(',');
+				}
+				String value = labels[i + 1] == null ? "" : labels[i + 1];
+				text.append(labels[i]).append("=\"")
+					.append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+			}
+			return text.toString();
+		}
+	}
+
+	private static String braces(String labels) {
+		return labels.isEmpty() ? "" : "{" + labels + "}";
+	}
+
+	/**
+	 * A count that only goes up.
+	 */
+	public static class Counter {
+		private final AtomicLong count = new AtomicLong();
+
+		private Counter() {
+		}
+
+		public void inc() {
+			count.incrementAndGet();
+		}
+
+		public void inc(long amount) {
+			count.addAndGet(amount);
+		}
+
+		public long get() {
+			return count.get();
+		}
+	}
+
+	/**
+	 * A histogram of how long something took. Usage:
+	 * <pre>
+	 *     long start = System.nanoTime();
+	 *     ...
+	 *     timer.stop(start);
+	 * </pre>
+	 */
+	public static class Timer {
+		// Times up to 2^MIN_EXPONENT microseconds go in the first bucket, then there are SUB_BUCKETS buckets for each
+		// power of two up to 2^MAX_EXPONENT microseconds, and a last bucket for anything longer.
+		private static final int MIN_EXPONENT = 4;
+		private static final int MAX_EXPONENT = 26;
+		private static final int SUB_BUCKET_BITS = 2;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKETS = 2 + (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong sumNanos = new AtomicLong();
+
+		private Timer() {
+		}
+
+		/**
+		 * Records the time since the given start.
+		 *
+		 * @param startNanos The value of {@link System#nanoTime()} when the timed work started.
+		 * @return The time that was recorded, in nanoseconds.
+		 */
+		public long stop(long startNanos) {
+			long nanos = System.nanoTime() - startNanos;
+			record(nanos);
+			return nanos;
+		}
+
+		/**
+		 * Records a time.
+		 *
+		 * @param nanos The time in nanoseconds.
+		 */
+		public void record(long nanos) {
+			nanos = Math.max(0, nanos);
+			buckets.incrementAndGet(bucketOf((nanos + 999) / 1000));
+			sumNanos.addAndGet(nanos);
+		}
+
+		/**
+		 * @return The number of times recorded so far.
+		 */
+		public long getCount() {
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += buckets.get(i);
+			}
+			return count;
+		}
+
+		/**
+		 * Finds the bucket for a time. Bucket i holds the times greater than the upper bound of bucket i - 1 and no
+		 * greater than its own upper bound.
+		 */
+		private static int bucketOf(long micros) {
+			long x = micros - 1;
+			if (x < (1L << MIN_EXPONENT)) {
+				return 0;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(x);
+			if (exponent >= MAX_EXPONENT) {
+				return BUCKETS - 1;
+			}
+			int sub = (int) (x >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+			return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+		}
+
+		/**
+		 * The largest time held by a bucket, in microseconds. Not defined for the last bucket.
+		 */
+		private static long upperBound(int bucket) {
+			if (bucket == 0) {
+				return 1L << MIN_EXPONENT;
+			}
+			int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKETS;
+			int sub = (bucket - 1) % SUB_BUCKETS;
+			return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS);
+		}
+
+		void write(String name, String labels, Writer out) throws IOException {
+			String prefix = labels.isEmpty() ? "" : labels + ",";
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += buckets.get(i);
+				String le = i == BUCKETS - 1 ? "+Inf" : BigDecimal.valueOf(upperBound(i), 6).stripTrailingZeros().toPlainString();
+				out.write(name + "_bucket{" + prefix + "le=\"" + le + "\"} " + count + "\n");
+			}
+			out.write(name + "_sum" + braces(labels) + " " + BigDecimal.valueOf(sumNanos.get(), 9).toPlainString() + "\n");
+			out.write(name + "_count" + braces(labels) + " " + count + "\n");
+		}
+	}
+}
@@ -11,7 +11,6 @@
 package com.ibm.ra.remy.web.utils;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -27,15 +26,21 @@ import com.ibm.watson.developer_cloud.personality_insights.v2.model.Trait;
  * vector of personality trait features).
  *
  * Example Use:
- * 1. Instantiate a PersonalityProfile with text from a user.
- * 2. Instantiate PersonalityProfiles with text from POIs.
+ * 1. Get a PersonalityProfile for text from a user.
+ * 2. Get PersonalityProfiles for text from POIs.
  * 3. Call kNearestNeighbors() to find the k POIs with personalities
  *        closest to the user.
+ *
+ * A profile only keeps the trait vector it is compared by. Use
+ * {@link #getProfile(String, String, String) getProfile} to get the
+ * profile of a text, which only calls Personality Insights for a text
+ * it has not analyzed before (see {@link PersonalityProfileCache}).
  */
 
 public class PersonalityProfile {
 
-	private Profile piProfile;
+	private static final String SERVICE_NAME = "personality_insights";
+	private final double[] features;
 	private PersonalityProfile piProfileUser; // for comparator only
 
 	/**
@@ -46,10 +51,54 @@ public class PersonalityProfile {
 	 * @param password The password for Personality Insights.
 	 * @param text The string to analyze.
 	 */
-	public PersonalityProfile(String username, String password, String text) {
-		PersonalityInsights service = new PersonalityInsights();
+	public PersonalityProfile(String username, String password, final String text) {
+		final PersonalityInsights service = new PersonalityInsights();
 		service.setUsernameAndPassword(username, password);
-		piProfile = service.getProfile(text);
+		features = extractFeatures(Metrics.getInstance().time(SERVICE_NAME, new Metrics.Call<Profile, RuntimeException>() {
+			@Override
+			public Profile call() {
+				return service.getProfile(text);
+			}
+		}));
+	}
+
+	/**
+	 * Construct a profile from a trait vector that was extracted before.
+	 *
+	 * @param features The trait vector, see {@link #getFeatures()}.
+	 */
+	PersonalityProfile(double[] features) {
+		this.features = features.clone();
+	}
+
+	/**
+	 * Get the profile of the given text, analyzing it with Personality
+	 * Insights only if its profile is not cached.
+	 *
+	 * @param username The username for Personality Insights.
+	 * @param password The password for Personality Insights.
+	 * @param text The string to analyze.
+	 * @return The profile of the text.
+	 */
+	public static PersonalityProfile getProfile(String username, String password, String text) {
+		PersonalityProfileCache cache = PersonalityProfileCache.getInstance();
+		PersonalityProfile profile = cache.get(text);
+		if (profile == null) {
+			profile = new PersonalityProfile(username, password, text);
+			cache.put(text, profile);
+		}
+		return profile;
+	}
+
+	/**
+	 * The trait vector of this profile: adventurousness, artistic
+	 * interests, intellect, excitement seeking and outgoingness, as
+	 * percentages.
+	 *
+	 * @return A copy of the trait vector.
+	 */
+	double[] getFeatures() {
+		return features.clone();
 	}
 
 	/**
@@ -96,9 +145,10 @@ public class PersonalityProfile {
 	 * Extract traits pertinent to POI matching: adventurousness,
 	 * artistic interests, intellect, excitement seeking, and outgoingness.
 	 *
-	 * @return A list of trait objects.
+	 * @param piProfile The profile returned by Personality Insights.
+	 * @return The percentages of the traits.
 	 */
-	private List<Trait> extractFeatures() {
+	private static double[] extractFeatures(Profile piProfile) {
 		List<Trait> big5 = piProfile.getTree().getChildren().get(0).getChildren().get(0).getChildren();
         Trait adventurousness = big5.get(0).getChildren().get(0);
         Trait artisticInterests = big5.get(0).getChildren().get(1);
@@ -106,7 +156,11 @@ public class PersonalityProfile {
         Trait excitementSeeking = big5.get(2).getChildren().get(3);
         Trait outgoing = big5.get(2).getChildren().get(4);
         Trait[] traits = {adventurousness, artisticInterests, intellect, excitementSeeking, outgoing};
-        return Arrays.asList(traits);
+        double[] features = new double[traits.length];
+        for (int i = 0; i < traits.length; i++) {
+            features[i] = traits[i].getPercentage();
+        }
+        return features;
 	}
 
 	/**
@@ -117,15 +171,15 @@ public class PersonalityProfile {
 	 * @return The distance between this profile and the other profile.
 	 */
 	public double distance(PersonalityProfile other) {
-		List<Trait> traits1 = this.extractFeatures();
-        List<Trait> traits2 = other.extractFeatures();
-        if (traits1.size() != traits2.size()) {
+		double[] traits1 = this.features;
+        double[] traits2 = other.features;
+        if (traits1.length != traits2.length) {
             return Double.POSITIVE_INFINITY;
         }
         double squaredDistance = 0.0;
-        for (int i = 0; i < traits1.size(); i++) {
-            double trait1 = traits1.get(i).getPercentage();
-            double trait2 = traits2.get(i).getPercentage();
+        for (int i = 0; i < traits1.length; i++) {
+            double trait1 = traits1[i];
+            double trait2 = traits2[i];
             squaredDistance += (trait1 - trait2) * (trait1 - trait2);
         }
         double distance = Math.sqrt(squaredDistance);
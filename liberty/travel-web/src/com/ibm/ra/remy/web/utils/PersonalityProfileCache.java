@@ -0,0 +1,223 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Singleton holding the trait vectors of the texts analyzed by Personality Insights, so a text is only sent to the
+ * service once. The texts the weather recommendations are ranked by are fixed in app.properties, so after the first
+ * build the ranking costs no calls at all.
+ *
+ * A trait vector is keyed by a SHA-256 hash of the text together with the version of the service and of the traits
+ * picked from its profile (see {@link PersonalityProfile}). Changing a text, moving to another version of the service or
+ * picking other traits therefore never reuses a vector, and the text itself is never written to disk.
+ *
+ * The vectors are also saved to a properties file, one hash=comma separated percentages entry per text, so they
+ * survive a restart. The file is read the first time a profile is looked up, and written by {@link #save()} once the
+ * profiles of a build have all been had, under a temporary name that is then moved over the old file, if a text was
+ * added since it was last written. A file that cannot be read is ignored. The cache is configured in app.properties:
+ *
+ *     PI_PROFILE_CACHE_PERSIST    1 to save the trait vectors to disk, 0 to only keep them in memory (default 1).
+ *     PI_PROFILE_CACHE_FILE       The file for the trait vectors, empty for remy-snapshots/personality-profiles.properties
+ *                                 in java.io.tmpdir.
+ *
+ * Lookups are counted as hits and misses in remy_personality_profile_cache_total.
+ */
+public class PersonalityProfileCache {
+	private static final PersonalityProfileCache instance = new PersonalityProfileCache();
+	private static final String ENABLED_KEY = "PI_PROFILE_CACHE_PERSIST";
+	private static final String FILE_KEY = "PI_PROFILE_CACHE_FILE";
+	private static final String DEFAULT_FILE = "remy-snapshots/personality-profiles.properties";
+	// The Personality Insights API the profiles come from and the version of the traits picked from them.
+	private static final String PROFILE_VERSION = "personality_insights/v2;features/1";
+
+	private final Logger logger = Logger.getLogger(PersonalityProfileCache.class.getName());
+	private final ConcurrentHashMap<String, double[]> features = new ConcurrentHashMap<String, double[]>();
+	private final boolean enabled;
+	private final File file;
+	private final Object saveLock = new Object();
+	private volatile boolean loaded;
+	private volatile boolean dirty;
+
+	/**
+	 * Private constructor. Reads the location of the file from app.properties.
+	 */
+	private PersonalityProfileCache() {
+		PropertiesReader constants = PropertiesReader.getInstance();
+		enabled = constants.getIntProperty(ENABLED_KEY, 1) > 0;
+		String path = constants.getStringProperty(FILE_KEY);
+		file = path == null || path.trim().isEmpty() ? new File(System.getProperty("java.io.tmpdir"), DEFAULT_FILE)
+				: new File(path.trim());
+	}
+
+	/**
+	 * Gets the singleton instance for the cache.
+	 *
+	 * @return The singleton instance for this class.
+	 */
+	public static PersonalityProfileCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Looks up the profile of a text and records the lookup as a hit or a miss.
+	 *
+	 * @param text The text.
+	 * @return The profile of the text, or null if it has not been analyzed.
+	 */
+	public PersonalityProfile get(String text) {
+		load();
+		double[] vector = features.get(getKey(text));
+		Metrics.getInstance().counter("remy_personality_profile_cache_total",
+				"Number of lookups in the cache of Personality Insights profiles, by whether they were hits or misses.",
+				"result", vector != null ? "hit" : "miss").inc();
+		return vector == null ? null : new PersonalityProfile(vector);
+	}
+
+	/**
+	 * Stores the profile of a text. It is written to disk by the next {@link #save()}.
+	 *
+	 * @param text The text.
+	 * @param profile The profile Personality Insights gave for the text.
+	 */
+	public void put(String text, PersonalityProfile profile) {
+		load();
+		features.put(getKey(text), profile.getFeatures());
+		dirty = true;
+	}
+
+	/**
+	 * The number of texts whose profile is cached.
+	 *
+	 * @return The number of cached profiles.
+	 */
+	public int size() {
+		load();
+		return features.size();
+	}
+
+	/**
+	 * Reads the saved trait vectors the first time the cache is used. Entries that are already in memory are kept.
+	 */
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		synchronized (this) {
+			if (!loaded) {
+				read();
+				loaded = true;
+			}
+		}
+	}
+
+	private void read() {
+		if (!enabled || !file.isFile()) {
+			return;
+		}
+		try {
+			Properties saved = new Properties();
+			InputStream in = new FileInputStream(file);
+			try {
+				saved.load(in);
+			} finally {
+				in.close();
+			}
+			for (String key : saved.stringPropertyNames()) {
+				String[] values = saved.getProperty(key).split(",");
+				double[] vector = new double[values.length];
+				for (int i = 0; i < values.length; i++) {
+					vector[i] = Double.parseDouble(values[i]);
+				}
+				features.putIfAbsent(key, vector);
+			}
+		} catch (IOException | RuntimeException ex) {
+			logger.warning(MessageUtils.getInstance().getMessage("MSG0034", new Object[]{file, ex.getMessage()}));
+		}
+	}
+
+	/**
+	 * Writes every cached trait vector to the file if a profile has been added since it was last written. Lookups are
+	 * not held up while the file is written.
+	 */
+	public void save() {
+		if (!enabled || !dirty) {
+			return;
+		}
+		synchronized (saveLock) {
+			if (!dirty) {
+				return;
+			}
+			// A profile added while the file is written marks the cache dirty again, for the next save.
+			dirty = false;
+			if (!write(new HashMap<String, double[]>(features))) {
+				dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Writes the given trait vectors to the file.
+	 */
+	private boolean write(Map<String, double[]> vectors) {
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			Properties saved = new Properties();
+			for (Map.Entry<String, double[]> entry : vectors.entrySet()) {
+				StringBuilder values = new StringBuilder();
+				for (double value : entry.getValue()) {
+					if (values.length() > 0) {
+						values.append(',');
+					}
+					values.append(value);
+				}
+				saved.setProperty(entry.getKey(), values.toString());
+			}
+			File dir = file.getAbsoluteFile().getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException(dir.toString());
+			}
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				saved.store(out, PROFILE_VERSION);
+			} finally {
+				out.close();
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException ex) {
+			logger.warning(MessageUtils.getInstance().getMessage("MSG0033", new Object[]{file, ex.getMessage()}));
+			if (!temp.delete()) {
+				temp.deleteOnExit();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Hashes a text with the version of its profile.
+	 */
+	private static String getKey(String text) {
+		return Utilities.sha256Hex(PROFILE_VERSION + "\n" + String.valueOf(text));
+	}
+}
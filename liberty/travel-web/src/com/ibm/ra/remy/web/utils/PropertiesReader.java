@@ -84,4 +84,25 @@ public final class PropertiesReader {
 	public int getIntProperty(String property) {
 		return Integer.parseInt(properties.getProperty(property));
 	}
+
+	/**
+	 * Convenience method for reading an optional integer property. If the property is missing from the file or does
+	 * not contain an integer then the given default value is returned instead.
+	 * 
+	 * @param property The name of the property to get
+	 * @param defaultValue The value to return if the property is not set or is not an integer
+	 * @return The integer value for the given property, or the default value
+	 */
+	public int getIntProperty(String property, int defaultValue) {
+		String value = properties.getProperty(property);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException ex) {
+			LOGGER.warning(ex.getMessage());
+			return defaultValue;
+		}
+	}
 }
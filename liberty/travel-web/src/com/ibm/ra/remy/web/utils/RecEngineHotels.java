@@ -12,10 +12,7 @@ package com.ibm.ra.remy.web.utils;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Logger;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
 import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
 import com.ibm.ra.remy.common.model.RemyEvent;
@@ -52,19 +49,16 @@ public class RecEngineHotels {
 	 * event injected at the end of the booking's first day.
 	 */
 	public static RemyItinerary recommendHotels(RemyItinerary itinerary, RemyRecs options, String locale) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
 		long[] bookingDates = recommendBookingDates(updatedItinerary);
 		if (bookingDates.length == 2) {
 			long checkIn = bookingDates[0];
 			long checkOut = bookingDates[1];
 			List<RemyLodgingEvent> bookings = lookupBookings(options, checkIn, checkOut);
-			List<RemyLodgingEvent> adjustedBookings = new ArrayList<RemyLodgingEvent>();
-			for (RemyLodgingEvent booking : bookings) {
-				RemyLodgingEvent adjustedBooking = applyLoyaltyDiscounts(updatedItinerary.getUser(), booking, locale);
-				adjustedBookings.add(adjustedBooking);
-			}
+			List<RemyLodgingEvent> adjustedBookings = applyLoyaltyDiscounts(updatedItinerary.getUser(), bookings, locale);
 			List<RemyLodgingEvent> sortedBookings = sortBookings(adjustedBookings);
-			injectHotelRecommendations(updatedItinerary, options.getLodgingRecs(), sortedBookings);
+			injectHotelRecommendations(version, options.getLodgingRecs(), sortedBookings);
 		}
 		return updatedItinerary;
 	}
@@ -80,7 +74,8 @@ public class RecEngineHotels {
 	 * recommendations are removed from the itinerary).
 	 */
 	public static RemyItinerary chooseHotel(RemyItinerary itinerary, String locale) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
 		
 		// We'll grab the injected hotel recommendation object first.
 		RemyEventDate recDate = null;
@@ -97,7 +92,7 @@ public class RecEngineHotels {
 		}
 		RemyLodgingEvent recommendedHotel = (RemyLodgingEvent) recList.getRecommendationList().get(0);
 		// Now we can remove the recommendation list from the itinerary.
-		recDate.removeEvent(recList);
+		version.editDate(recDate).removeEvent(recList);
 		
 		// Now we take the recommended hotel and propagate it through the itinerary,
 		// adding a variety of events as needed.
@@ -107,32 +102,32 @@ public class RecEngineHotels {
 		for (RemyEventDate d : updatedItinerary.getAllDates()) {
 			// In this scenario, we add a checkin event.
 			if (d.getDate() <= checkin && (d.getDate() + lengthOfDay) < checkout) {
-				RemyLodgingEvent checkinEvent = (RemyLodgingEvent) DeepCopy.copy(recommendedHotel);
+				RemyLodgingEvent checkinEvent = new RemyLodgingEvent(recommendedHotel);
 				checkinEvent.setStart_time(checkin);
 				checkinEvent.setEnd_time(checkin);
 				checkinEvent.setDisplayType(RemyEvent.HOTEL_CHECKIN);
-				d.addEvent(checkinEvent);
+				version.editDate(d).addEvent(checkinEvent);
 			}
 			// In this scenario, we add a stay event.
 			else if (checkin < d.getDate() && (d.getDate() + lengthOfDay) < checkout) {
-				RemyLodgingEvent stayEvent = (RemyLodgingEvent) DeepCopy.copy(recommendedHotel);
+				RemyLodgingEvent stayEvent = new RemyLodgingEvent(recommendedHotel);
 				// We set the time to this so the hotel is always the last thing to appear.
 				stayEvent.setStart_time(d.getDate() + lengthOfDay - 1);
 				stayEvent.setEnd_time(d.getDate() + lengthOfDay - 1);
 				stayEvent.setDisplayType(RemyEvent.HOTEL_STAY);
-				d.addEvent(stayEvent);
+				version.editDate(d).addEvent(stayEvent);
 			}
 			// In this scenario, we add a checkout event.
 			else if (checkin < d.getDate() && checkout < (d.getDate() + lengthOfDay)) {
-				RemyLodgingEvent checkoutEvent = (RemyLodgingEvent) DeepCopy.copy(recommendedHotel);
+				RemyLodgingEvent checkoutEvent = new RemyLodgingEvent(recommendedHotel);
 				checkoutEvent.setStart_time(checkout);
 				checkoutEvent.setEnd_time(checkout);
 				checkoutEvent.setDisplayType(RemyEvent.HOTEL_CHECKOUT);
-				d.addEvent(checkoutEvent);
+				version.editDate(d).addEvent(checkoutEvent);
 			}
 		}
 		
-		updatedItinerary.sortAllEvents();
+		version.sortChangedDates();
 		return updatedItinerary;
 	}
 	
@@ -200,25 +195,17 @@ public class RecEngineHotels {
 	 * and loyalty programs. In the future, however, the user object can
 	 * be expanded in order to support dynamic loyalty discounts.
 	 * 
+	 * The bookings are sent to Business Rules together, or the rules are
+	 * run in the application, see
+	 * {@link BusinessRulesUtils#applyLodgingRules(List, String)}.
+	 * 
 	 * @param user A string representing the user searching for hotel bookings.
-	 * @param hotel A representation of the hotel booking to which any
-	 * loyalty discounts should be applied.
+	 * @param bookings The hotel bookings to which any loyalty discounts
+	 * should be applied.
+	 * @return The bookings with the discounts applied, in the same order.
 	 */
-	private static RemyLodgingEvent applyLoyaltyDiscounts(String user, RemyLodgingEvent booking, String locale) {
-		String bookingJson = "{\"lodgingEvent\": " + new Gson().toJson(booking) + "}";
-		RemyLodgingEvent adjustedBooking = booking;
-		try {
-			String adjustedBookingWrapperJson = BusinessRulesUtils.invokeRulesService(bookingJson);
-			JsonObject adjustedBookingWrapperMap = new Gson().fromJson(adjustedBookingWrapperJson, JsonObject.class);
-			String adjustedBookingJson = adjustedBookingWrapperMap.get("lodgingEvent").toString();
-			adjustedBooking = new Gson().fromJson(adjustedBookingJson, RemyLodgingEvent.class);
-		} catch (Exception e) {
-			Logger logger = Logger.getLogger(RecommendationUtils.class.getName());
-			MessageUtils mUtils = MessageUtils.getInstance();
-			logger.warning(mUtils.getMessage("MSG0012", locale));
-			logger.warning(e.getLocalizedMessage());
-		}
-		return adjustedBooking;
+	private static List<RemyLodgingEvent> applyLoyaltyDiscounts(String user, List<RemyLodgingEvent> bookings, String locale) {
+		return BusinessRulesUtils.applyLodgingRules(bookings, locale);
 	}
 
 	
@@ -276,15 +263,15 @@ public class RecEngineHotels {
 	 * 
 	 * We assume that the events for each itinerary day are already sorted.
 	 * 
-	 * The given itinerary is modified to include recommendations for hotels
-	 * at the end of the first day on which a hotel booking is needed.
+	 * The given itinerary version is modified to include recommendations for
+	 * hotels at the end of the first day on which a hotel booking is needed.
 	 * 
-	 * @param itinerary The itinerary for injecting recommendations.
+	 * @param version The itinerary version for injecting recommendations.
 	 * @param message The message that will be displayed to the user,
 	 * representing this recommendations object within the itinerary view.
 	 * @param bookings A sorted list of bookings to inject.
 	 */
-	private static void injectHotelRecommendations(RemyItinerary itinerary, RemyRecommendationsEvent hotelRecommendations, List<RemyLodgingEvent> bookings) {
+	private static void injectHotelRecommendations(ItineraryVersion version, RemyRecommendationsEvent hotelRecommendations, List<RemyLodgingEvent> bookings) {
 		// convert RemyLodgingEvent objects to RemyEvent objects
 		List<RemyEvent> recommendations = new ArrayList<RemyEvent>();
 		for (RemyLodgingEvent recommendation : bookings) {
@@ -292,12 +279,13 @@ public class RecEngineHotels {
 		}
 		
 		// get first day events
+		RemyItinerary itinerary = version.getItinerary();
 		List<RemyEvent> firstDayEvents = null;
-		if (itinerary != null && itinerary.getAllDates() != null) {
+		if (itinerary.getAllDates() != null) {
 			if (!itinerary.getAllDates().isEmpty()) {
 				RemyEventDate firstDay = itinerary.getAllDates().get(0);
 				if (firstDay != null && firstDay.getEvents() != null) {
-					firstDayEvents = firstDay.getEvents();
+					firstDayEvents = version.editDate(firstDay).getEvents();
 				}
 			}
 		}
@@ -313,8 +301,6 @@ public class RecEngineHotels {
 		}
 		
 		// sort itinerary to ensure proper ordering of events
-		if (itinerary != null) {
-			itinerary.sortAllEvents();
-		}
+		version.sortChangedDates();
 	}
 }
@@ -50,6 +50,7 @@ public class RecEngineTransportation {
 	
 	private static final String USERNAME_KEY="TA_USERNAME";
 	private static final String PASSWORD_KEY="TA_PASSWORD";
+	private static final String SERVICE_NAME="tradeoff_analytics";
 
 	/**
 	 * Process an itinerary by injecting transportation recommendations
@@ -61,7 +62,8 @@ public class RecEngineTransportation {
 	 * @return A copied itinerary with weather recommendations injected.
 	 */
 	public static RemyItinerary recommendTransportation(RemyItinerary itinerary, RemyRecs options, String locale) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
 		List<Pair> farAwayEventsList = identifyFarAwayEvents(updatedItinerary);
 		for (Pair farAwayEvents : farAwayEventsList) {
 			List<RemyTransitEvent> transportation = lookupTransit(farAwayEvents, options);
@@ -71,7 +73,7 @@ public class RecEngineTransportation {
 			} catch (Exception e) {
 				sortedTransportation = transportation;
 			}
-			injectTransportationRecommendations(updatedItinerary, farAwayEvents, options.getTransitRecs(), sortedTransportation);
+			injectTransportationRecommendations(version, farAwayEvents, options.getTransitRecs(), sortedTransportation);
 		}
 		return updatedItinerary;
 	}
@@ -87,7 +89,8 @@ public class RecEngineTransportation {
 	 * itinerary).
 	 */
 	public static RemyItinerary chooseTransportation(RemyItinerary itinerary) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
 		
 		// We'll grab the injected transit recommendation object first.
 		RemyEventDate recDate = null;
@@ -104,13 +107,14 @@ public class RecEngineTransportation {
 		}
 		RemyTransitEvent recommendedTransit = (RemyTransitEvent) recList.getRecommendationList().get(0);
 		// Now we can remove the recommendation list from the itinerary.
+		recDate = version.editDate(recDate);
 		recDate.removeEvent(recList);
 		
 		// Now we take the recommended transit and add it to the itinerary.
 		recDate.addEvent(recommendedTransit);
 		
 		// Then sort the events and return.
-		updatedItinerary.sortAllEvents();
+		version.sortChangedDates();
 		return updatedItinerary;
 	}
 
@@ -265,9 +269,9 @@ public class RecEngineTransportation {
 		String password = constants.getStringProperty(PASSWORD_KEY);
 		
 		// initialize Tradeoff Analytics service
-		TradeoffAnalytics tradeoffAnalytics = new TradeoffAnalytics();
+		final TradeoffAnalytics tradeoffAnalytics = new TradeoffAnalytics();
 		tradeoffAnalytics.setUsernameAndPassword(username, password);
-		Problem problem = new Problem("transportation");
+		final Problem problem = new Problem("transportation");
 		 		
 		// define objective keys
 		String price = "price";
@@ -306,7 +310,12 @@ public class RecEngineTransportation {
 		// call the service and get the solution
 		List<RemyTransitEvent> sortedTransportation = transportation;
 		try {
-			Dilemma dilemma = tradeoffAnalytics.dilemmas(problem);
+			Dilemma dilemma = Metrics.getInstance().time(SERVICE_NAME, new Metrics.Call<Dilemma, RuntimeException>() {
+				@Override
+				public Dilemma call() {
+					return tradeoffAnalytics.dilemmas(problem);
+				}
+			});
 			sortedTransportation = new ArrayList<RemyTransitEvent>();
 			
 			// define solution keys
@@ -363,14 +372,14 @@ public class RecEngineTransportation {
 	 * insert the RemyRecommendationsEvent object between the specified pair
 	 * of events.
 	 *
-	 * @param itinerary The itinerary for injecting recommendations.
+	 * @param version The itinerary version for injecting recommendations.
 	 * @param events The pair of events between which transportation is being
 	 * recommended.
 	 * @param transitRecommendations A RemyRecommendationsEvent containing an
 	 * appropriate message for the front-end user.
 	 * @param transportation A list of recommended transportation.
 	 */
-	private static void injectTransportationRecommendations(RemyItinerary itinerary, Pair events, RemyRecommendationsEvent transitRecommendations, List<RemyTransitEvent> transportation) {
+	private static void injectTransportationRecommendations(ItineraryVersion version, Pair events, RemyRecommendationsEvent transitRecommendations, List<RemyTransitEvent> transportation) {
 		// convert RemyRestaurantEvent objects to RemyEvent objects
 		List<RemyEvent> recommendations = new ArrayList<RemyEvent>();
 		for (RemyTransitEvent transitOptions : transportation) {
@@ -379,7 +388,7 @@ public class RecEngineTransportation {
 
 		// get day of given event - we'll use the first one
 		RemyEventDate eventDate = null;
-		for (RemyEventDate dateCandidate : itinerary.getAllDates()) {
+		for (RemyEventDate dateCandidate : version.getItinerary().getAllDates()) {
 			for (RemyEvent eventCandidate : dateCandidate.getEvents()) {
 				if (events.firstEvent.getId().equals(eventCandidate.getId())) {
 					eventDate = dateCandidate;
@@ -393,9 +402,9 @@ public class RecEngineTransportation {
 		}
 		
 		// Inject it into the date we found.
-		eventDate.addEvent(transitRecommendations);
+		version.editDate(eventDate).addEvent(transitRecommendations);
 		
 		// Now sort all the events.
-		itinerary.sortAllEvents();
+		version.sortChangedDates();
 	}
 }
@@ -11,8 +11,19 @@
 package com.ibm.ra.remy.web.utils;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 
 import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
 import com.ibm.ra.remy.common.impl.RemyRestaurantEvent;
@@ -45,6 +56,19 @@ public class RecEngineWeather {
 	private static final String RESTAURANT3_TEXT_KEY="RESTAURANT3_TEXT";
 	private static final String RESTAURANT4_TEXT_KEY="RESTAURANT4_TEXT";
 	private static final String RESTAURANT5_TEXT_KEY="RESTAURANT5_TEXT";
+	private static final String PROFILE_THREADS_KEY="PI_PROFILE_THREADS";
+	private static final String PROFILE_TIMEOUT_KEY="PI_PROFILE_TIMEOUT_SECONDS";
+	private static final int DEFAULT_PROFILE_THREADS = 6;
+	private static final int DEFAULT_PROFILE_TIMEOUT = 10;
+	private static final Logger logger = Logger.getLogger(RecEngineWeather.class.getName());
+	// Analyzes the texts of the user and the alternatives at the same time. The itineraries of several users are built
+	// at once, so this pool is separate from theirs and a build never waits on a thread held by another build.
+	private static final ExecutorService profileExecutor = Executors.newFixedThreadPool(
+			Math.max(1, PropertiesReader.getInstance().getIntProperty(PROFILE_THREADS_KEY, DEFAULT_PROFILE_THREADS)),
+			new DaemonThreadFactory("personality-profile"));
+	private static final long profileTimeoutMillis = 1000L * Math.max(0, PropertiesReader.getInstance().getIntProperty(PROFILE_TIMEOUT_KEY, DEFAULT_PROFILE_TIMEOUT));
+	// The texts being analyzed, so the builds of several users that need the same text share one call.
+	private static final ConcurrentHashMap<String, Future<PersonalityProfile>> pendingProfiles = new ConcurrentHashMap<String, Future<PersonalityProfile>>();
 
 	/**
 	 * Inject bad weather into the given itinerary, according to the user's
@@ -55,8 +79,9 @@ public class RecEngineWeather {
 	 * user's story.
 	 */
 	public static RemyItinerary injectBadWeather(RemyItinerary itinerary) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
-		RemyEventDate thirdDay = updatedItinerary.getAllDates().get(2);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
+		RemyEventDate thirdDay = version.editDate(updatedItinerary.getAllDates().get(2));
 		thirdDay.setCondition("Rain");
 		return updatedItinerary;
 	}
@@ -74,8 +99,9 @@ public class RecEngineWeather {
 	 * @return A copied itinerary with weather recommendations injected.
 	 */
 	public static RemyItinerary recommendWeatherAlternatives(RemyItinerary itinerary, RemyRecs options, String locale) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
-		List<RemyEvent> affectedEvents = identifyEventsAffectedByWeather(updatedItinerary);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
+		List<RemyEvent> affectedEvents = identifyEventsAffectedByWeather(version);
 		for (RemyEvent affectedEvent : affectedEvents) {
 			List<RemyRestaurantEvent> alternatives = lookupAlternatives(options);
 			List<RemyRestaurantEvent> sortedAlternatives = null;
@@ -102,7 +128,8 @@ public class RecEngineWeather {
 	 * recommendations are removed.)
 	 */
 	public static RemyItinerary chooseWeatherAlternative(RemyItinerary itinerary) {
-		RemyItinerary updatedItinerary = (RemyItinerary) DeepCopy.copy(itinerary);
+		ItineraryVersion version = new ItineraryVersion(itinerary);
+		RemyItinerary updatedItinerary = version.getItinerary();
 		
 		// We'll grab the restaurant event that needs to be replaced. It's the only one with
 		// a recommendation event buried in it.
@@ -121,13 +148,14 @@ public class RecEngineWeather {
 			}
 		}
 		// Now remove it from the itinerary.
+		recDate = version.editDate(recDate);
 		recDate.removeEvent(restaurantEvent);
 		
 		// We can now add the restaurant event we chose, and sort the events.
 		RemyRestaurantEvent recommendedRestaurant = (RemyRestaurantEvent) recList.getRecommendationList().get(0);
 		recDate.addEvent(recommendedRestaurant);
 		
-		updatedItinerary.sortAllEvents();
+		version.sortChangedDates();
 		return updatedItinerary;
 	}
 	
@@ -138,17 +166,19 @@ public class RecEngineWeather {
 	/**
 	 * This function tags all events in an itinerary that may be affected
 	 * by weather. For each event, the affectedByWeather instance variable
-	 * is set to either true or false, accordingly.
+	 * is set to either true or false, accordingly. The affected events are
+	 * copied into the given version before they are tagged.
 	 *
-	 * @param itinerary An itinerary.
+	 * @param version An itinerary version.
 	 */
-	private static List<RemyEvent> identifyEventsAffectedByWeather(RemyItinerary itinerary) {
+	private static List<RemyEvent> identifyEventsAffectedByWeather(ItineraryVersion version) {
 		List<RemyEvent> affectedEvents = new ArrayList<RemyEvent>();
-		for (RemyEventDate date : itinerary.getAllDates()) {
-			for (RemyEvent event : date.getEvents()) {
+		for (RemyEventDate date : new ArrayList<RemyEventDate>(version.getItinerary().getAllDates())) {
+			for (RemyEvent event : new ArrayList<RemyEvent>(date.getEvents())) {
 				if (event.isOutdoor() && date.getCondition().equals("Rain")) {
-					event.setAffectedByWeather(true);
-					affectedEvents.add(event);
+					RemyEvent affectedEvent = version.editEvent(date, event);
+					affectedEvent.setAffectedByWeather(true);
+					affectedEvents.add(affectedEvent);
 				}
 			}
 		}
@@ -192,12 +222,17 @@ public class RecEngineWeather {
 	 * Insights. Representative text of the user and of each alternative event
 	 * is analyzed by Watson Personality Insights to compute a personality.
 	 * Alternative events are then sorted according to their similarity of their
-	 * personality to the user's personality.
+	 * personality to the user's personality. The texts rarely change, so their
+	 * profiles are usually cached and Personality Insights is not called.
+	 * The texts that do need analyzing are analyzed at the same time.
 	 *
 	 * @param alternatives A list of alternatives to recommend, which will be
 	 * sorted according to their similarity to the user's personality.
+	 * @throws Exception If the profiles could not all be had within
+	 * PI_PROFILE_TIMEOUT_SECONDS, or Personality Insights failed, in which
+	 * case the alternatives are recommended unsorted.
 	 */
-	private static List<RemyRestaurantEvent> sortAlternatives(List<RemyRestaurantEvent> alternatives) {
+	private static List<RemyRestaurantEvent> sortAlternatives(List<RemyRestaurantEvent> alternatives) throws Exception {
 		// get credentials for Personality Insights
 		PropertiesReader constants = PropertiesReader.getInstance();
 		String username = constants.getStringProperty(USERNAME_KEY);
@@ -215,12 +250,14 @@ public class RecEngineWeather {
 		String alternative5Text = constants.getStringProperty(RESTAURANT5_TEXT_KEY);
 
 		// analyze personality of user and each alternative
-		PersonalityProfile userProfile = new PersonalityProfile(username, password, userText);
-		PersonalityProfile alternative1Profile = new PersonalityProfile(username, password, alternative1Text);
-		PersonalityProfile alternative2Profile = new PersonalityProfile(username, password, alternative2Text);
-		PersonalityProfile alternative3Profile = new PersonalityProfile(username, password, alternative3Text);
-		PersonalityProfile alternative4Profile = new PersonalityProfile(username, password, alternative4Text);
-		PersonalityProfile alternative5Profile = new PersonalityProfile(username, password, alternative5Text);
+		List<PersonalityProfile> profiles = getProfiles(username, password, userText, alternative1Text,
+				alternative2Text, alternative3Text, alternative4Text, alternative5Text);
+		PersonalityProfile userProfile = profiles.get(0);
+		PersonalityProfile alternative1Profile = profiles.get(1);
+		PersonalityProfile alternative2Profile = profiles.get(2);
+		PersonalityProfile alternative3Profile = profiles.get(3);
+		PersonalityProfile alternative4Profile = profiles.get(4);
+		PersonalityProfile alternative5Profile = profiles.get(5);
 
 		// construct collection of profiles
 		List<PersonalityProfile> alternativeProfiles = new ArrayList<PersonalityProfile>();
@@ -253,6 +290,76 @@ public class RecEngineWeather {
 		// return alternatives;
 	}
 
+	/**
+	 * Get the profiles of the given texts, analyzing the ones that are not
+	 * cached with Personality Insights all at the same time. Getting them
+	 * takes as long as the slowest text rather than as long as all of them.
+	 *
+	 * @param username The username for Personality Insights.
+	 * @param password The password for Personality Insights.
+	 * @param texts The strings to analyze.
+	 * @return The profiles, in the order of the texts.
+	 * @throws TimeoutException If the profiles are not all had within
+	 * PI_PROFILE_TIMEOUT_SECONDS. The texts still being analyzed are left to
+	 * finish, so their profiles are cached for the next itinerary.
+	 * @throws Exception The exception Personality Insights failed with.
+	 */
+	private static List<PersonalityProfile> getProfiles(String username, String password, String... texts) throws Exception {
+		List<Future<PersonalityProfile>> futures = new ArrayList<Future<PersonalityProfile>>();
+		for (String text : texts) {
+			futures.add(getProfileAsync(username, password, text));
+		}
+		long deadline = new Date().getTime() + profileTimeoutMillis;
+		List<PersonalityProfile> profiles = new ArrayList<PersonalityProfile>();
+		for (Future<PersonalityProfile> future : futures) {
+			if (profileTimeoutMillis == 0) {
+				profiles.add(Utilities.getResult(future));
+				continue;
+			}
+			try {
+				long remaining = Math.max(0, deadline - new Date().getTime());
+				profiles.add(future.get(remaining, TimeUnit.MILLISECONDS));
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				throw cause instanceof Exception ? (Exception) cause : ex;
+			} catch (TimeoutException ex) {
+				Metrics.getInstance().counter("remy_personality_profile_timeouts_total",
+						"Number of times the Personality Insights profiles were not had in time to sort the alternatives.").inc();
+				logger.warning(MessageUtils.getInstance().getMessage("MSG0035", new Object[]{profileTimeoutMillis}));
+				throw ex;
+			}
+		}
+		return profiles;
+	}
+
+	/**
+	 * Start getting the profile of a text on the profile pool, or join the
+	 * call that is already getting it.
+	 */
+	private static Future<PersonalityProfile> getProfileAsync(final String username, final String password, final String text) {
+		Future<PersonalityProfile> pending = pendingProfiles.get(text);
+		if (pending != null) {
+			return pending;
+		}
+		FutureTask<PersonalityProfile> task = new FutureTask<PersonalityProfile>(new Callable<PersonalityProfile>() {
+			@Override
+			public PersonalityProfile call() {
+				return PersonalityProfile.getProfile(username, password, text);
+			}
+		}) {
+			@Override
+			protected void done() {
+				pendingProfiles.remove(text, this);
+			}
+		};
+		pending = pendingProfiles.putIfAbsent(text, task);
+		if (pending != null) {
+			return pending;
+		}
+		profileExecutor.execute(task);
+		return task;
+	}
+
 	/**
 	 * Inject recommended alternatives for the specified event into the
 	 * itinerary. We assume that the event may be affected by inclement
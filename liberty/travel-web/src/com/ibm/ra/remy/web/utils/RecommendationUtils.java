@@ -13,18 +13,16 @@ package com.ibm.ra.remy.web.utils;
 import java.util.HashMap;
 import java.util.List;
 
-import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+import com.ibm.ra.remy.common.impl.RemyEventImpl;
 import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
 import com.ibm.ra.remy.common.impl.RemyRecsImpl;
-import com.ibm.ra.remy.common.impl.RemyRestaurantEvent;
-import com.ibm.ra.remy.common.impl.RemyTransitEvent;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.model.RemyRecs;
 
 public class RecommendationUtils {	
 	
 	/**
-	 * This function takes raw reommendation data from Cloudant and formats it into a series
+	 * This function takes the recommendation data from Cloudant and formats it into a series
 	 * of RemyRecs objects, one for each user. Each RemyRecs object contains a list of 
 	 * transit recommendations, lodging recommendations, and restaurant recommendations. The
 	 * key in the returned HashMap is a String representing a username.
@@ -32,20 +30,20 @@ public class RecommendationUtils {
 	 * This function assumes that the actual recommended events come after the three events
 	 * that collect the recommendations together.
 	 * 
-	 * @param recDataMap The raw recommendation data from Cloudant.
+	 * @param recData The recommendations events and recommended events from Cloudant.
 	 * @return The formatted RemyRecs objects for each user.
 	 */
-	@SuppressWarnings("unchecked")
-	public static HashMap<String, RemyRecs> formatRecs(@SuppressWarnings("rawtypes") List<HashMap> recDataMap) {
+	public static HashMap<String, RemyRecs> formatRecs(List<RemyEvent> recData) {
 		HashMap<String, RemyRecs> returnRecs = new HashMap<String, RemyRecs>();
 		
 		RemyRecs currentRecs = null;
-		for (HashMap<String, Object> d : recDataMap) {
+		for (RemyEvent d : recData) {
+			((RemyEventImpl) d).setItineraryId("0");
 			// Is this a recs object?
-			if (RemyEvent.RECOMMENDATIONS.equals(d.get(RemyEvent.SUBTYPE_KEY))) {
-				RemyRecommendationsEvent newRecEvent = new RemyRecommendationsEvent(d, "0");
+			if (d instanceof RemyRecommendationsEvent) {
+				RemyRecommendationsEvent newRecEvent = (RemyRecommendationsEvent) d;
 				// Is this a different user from before?
-				String user = (String) d.get("user");
+				String user = newRecEvent.getUser();
 				if (currentRecs == null || !user.equals(currentRecs.getUser())) {
 					// Do we need to retrieve a user from the map or create a new object?
 					RemyRecs userRec = returnRecs.get(user);
@@ -67,15 +65,7 @@ public class RecommendationUtils {
 			}
 			// Is this an event?
 			else {
-				RemyEvent newRec = null;
-				if (RemyEvent.LODGING.equals(d.get(RemyEvent.SUBTYPE_KEY))) {
-					newRec = new RemyLodgingEvent(d, "0");
-				} else if (RemyEvent.TRANSIT.equals(d.get(RemyEvent.SUBTYPE_KEY))) {
-					newRec = new RemyTransitEvent(d, "0");
-				} else if (RemyEvent.RESTAURANT.equals(d.get(RemyEvent.SUBTYPE_KEY))) {
-					newRec = new RemyRestaurantEvent(d, "0");
-				}
-				currentRecs.addRec(newRec);
+				currentRecs.addRec(d);
 			}
 		}
 		
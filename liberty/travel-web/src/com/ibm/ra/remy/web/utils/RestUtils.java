@@ -10,8 +10,19 @@
 
 package com.ibm.ra.remy.web.utils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.codec.binary.Base64;
 
@@ -21,6 +32,9 @@ import com.google.gson.Gson;
  * Utilities class used to keep the methods related to processing REST requests.
  */
 public class RestUtils {
+	private static final Gson gson = new Gson();
+	private static final String GZIP = "gzip";
+	private static final int GZIP_BUFFER_SIZE = 8 * 1024;
 	
 	/**
 	 * Method to determine that the user sent us an actual value for the user name.
@@ -52,16 +66,181 @@ public class RestUtils {
 	}
 	
 	/**
-	 * Convenience method for creating a Response object from some content an a response type.
+	 * Convenience method for creating a Response object from some content an a response type. The content is converted
+	 * to JSON as the response is written, straight to the response stream, so the JSON is never held in memory as a
+	 * whole.
 	 * 
 	 * @param content The content to embed in the Response object.
 	 * @param responseType The type of Response to generate
 	 * @return The generated Response object.
 	 */
-	public Response getResponse(Object content, Response.Status responseType) {
+	public Response getResponse(final Object content, Response.Status responseType) {
+		ResponseBuilder rb =  Response.status(responseType);
+		rb.entity(new StreamingOutput() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				Writer writer = new OutputStreamWriter(out, MessageUtils.ENCODING);
+				gson.toJson(content, writer);
+				writer.flush();
+			}
+		});
+		
+		return rb.build();
+	}
+	
+	/**
+	 * Convenience method for creating a Response object from a pre-serialized itinerary payload. The gzip form of the
+	 * payload is used when the client accepts it, and the bytes are handed to the container as they are.
+	 * 
+	 * @param payload The payload to embed in the Response object.
+	 * @param acceptEncoding The value of the client's Accept-Encoding header, may be null.
+	 * @param responseType The type of Response to generate
+	 * @return The generated Response object.
+	 */
+	public Response getPayloadResponse(ItineraryPayload payload, String acceptEncoding, Response.Status responseType) {
+		ResponseBuilder rb =  Response.status(responseType);
+		byte[] body;
+		if (acceptsGzip(acceptEncoding)) {
+			body = payload.getGzip();
+			rb.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+		} else {
+			body = payload.getRaw();
+		}
+		rb.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		rb.header(HttpHeaders.CONTENT_LENGTH, body.length);
+		rb.entity(body);
+		
+		return rb.build();
+	}
+	
+	/**
+	 * Convenience method for creating a Response object whose body is written straight to the response stream as it is
+	 * generated. When the client accepts gzip the body is compressed on the way out.
+	 * 
+	 * @param body Writes the body of the response.
+	 * @param acceptEncoding The value of the client's Accept-Encoding header, may be null.
+	 * @param responseType The type of Response to generate
+	 * @return The generated Response object.
+	 */
+	public Response getStreamingResponse(final StreamingOutput body, String acceptEncoding, Response.Status responseType) {
 		ResponseBuilder rb =  Response.status(responseType);
-		rb.entity(new Gson().toJson(content));
+		if (acceptsGzip(acceptEncoding)) {
+			rb.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+			rb.entity(new StreamingOutput() {
+				@Override
+				public void write(OutputStream out) throws IOException {
+					GZIPOutputStream gzipStream = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+					body.write(gzipStream);
+					gzipStream.finish();
+					gzipStream.flush();
+				}
+			});
+		} else {
+			rb.entity(body);
+		}
+		rb.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		
+		return rb.build();
+	}
+	
+	/**
+	 * Convenience method for adding the headers a client needs to cache a response and ask later whether it changed:
+	 * an ETag, a Last-Modified date and a Cache-Control header that keeps the response private to the client and
+	 * makes it check with us once the given number of seconds has passed.
+	 * 
+	 * @param response The response to add the headers to.
+	 * @param etag The entity tag of the response, without quotes.
+	 * @param lastModified The time the content of the response last changed, in milliseconds since the Epoch.
+	 * @param maxAgeSeconds The number of seconds the client may use the response without asking again.
+	 * @return The Response object with the headers added.
+	 */
+	public Response getCacheableResponse(Response response, String etag, long lastModified, int maxAgeSeconds) {
+		ResponseBuilder rb = Response.fromResponse(response);
+		addValidators(rb, etag, lastModified, maxAgeSeconds);
+		
+		return rb.build();
+	}
+	
+	/**
+	 * Convenience method for creating a 304 Not Modified response, for a client that already has the current version
+	 * of a response. The response has no body, only the headers the full response would have had for caching it.
+	 * 
+	 * @param etag The entity tag of the response, without quotes.
+	 * @param lastModified The time the content of the response last changed, in milliseconds since the Epoch.
+	 * @param maxAgeSeconds The number of seconds the client may use the response without asking again.
+	 * @return The generated Response object.
+	 */
+	public Response getNotModifiedResponse(String etag, long lastModified, int maxAgeSeconds) {
+		ResponseBuilder rb = Response.notModified();
+		addValidators(rb, etag, lastModified, maxAgeSeconds);
+		rb.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
 		
 		return rb.build();
 	}
+	
+	private void addValidators(ResponseBuilder rb, String etag, long lastModified, int maxAgeSeconds) {
+		CacheControl cacheControl = new CacheControl();
+		cacheControl.setPrivate(true);
+		cacheControl.setMaxAge(maxAgeSeconds);
+		cacheControl.setMustRevalidate(true);
+		rb.tag(new EntityTag(etag));
+		rb.lastModified(new Date(lastModified));
+		rb.cacheControl(cacheControl);
+	}
+	
+	/**
+	 * Method to determine whether a client already has a response, from the If-None-Match header it sent. Weak tags
+	 * are compared as if they were strong, as the header requires.
+	 * 
+	 * @param ifNoneMatch The value of the client's If-None-Match header, may be null.
+	 * @param etag The entity tag of the current response, without quotes.
+	 * @return True if the header lists the tag or is *, false otherwise.
+	 */
+	public boolean matchesEntityTag(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		if ("*".equals(ifNoneMatch.trim())) {
+			return true;
+		}
+		// Tags are quoted and may contain commas, so the header is read quote by quote rather than split on commas.
+		int start = ifNoneMatch.indexOf('"');
+		while (start >= 0) {
+			int end = ifNoneMatch.indexOf('"', start + 1);
+			if (end < 0) {
+				break;
+			}
+			if (ifNoneMatch.substring(start + 1, end).equals(etag)) {
+				return true;
+			}
+			start = ifNoneMatch.indexOf('"', end + 1);
+		}
+		return false;
+	}
+	
+	/**
+	 * Method to determine whether the client will accept a gzip encoded response.
+	 * 
+	 * @param acceptEncoding The value of the client's Accept-Encoding header, may be null.
+	 * @return True if gzip is listed and not refused with a quality of zero, false otherwise.
+	 */
+	public boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.trim().split(";");
+			String name = parts[0].trim();
+			if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+				for (int i = 1; i < parts.length; i++) {
+					String param = parts[i].replace(" ", "");
+					if (param.matches("q=0(\\.0*)?")) {
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
 }
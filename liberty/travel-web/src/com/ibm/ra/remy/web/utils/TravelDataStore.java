@@ -0,0 +1,79 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.ibm.ra.remy.common.impl.CloudantObject;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyWeather;
+
+/**
+ * The queries the itinerary data is built from (see {@link ItineraryUtils}). Each query returns the documents of the
+ * rows of a view of the remy_design design document, in the order of the view, decoded into their model objects by
+ * {@link com.ibm.ra.remy.common.impl.CloudantDocumentReader CloudantDocumentReader}. Events are returned without their
+ * itinerary id, which the caller sets.
+ *
+ * The store the application uses is chosen in app.properties, see {@link TravelDataStores}. The Cloudant store queries
+ * the database, the in-memory store answers the same queries from one of the remy_*_db.json files, so the itinerary
+ * data can be built without a connection to Cloudant.
+ */
+public interface TravelDataStore {
+
+	/**
+	 * Returns the itineraries joined with their events, as the itineraryJsonView view does. Each itinerary is followed by
+	 * the events it lists, and the itineraries are ordered by their start date and version.
+	 *
+	 * @param locale The locale of the itineraries.
+	 * @return The itineraries and events, or a zero sized list if there are no itineraries.
+	 */
+	public List<CloudantObject> getItineraries(String locale);
+
+	/**
+	 * Returns the weather for a place, as the weatherViewFiltered view does.
+	 *
+	 * @param city The city of the place.
+	 * @param country The country of the place.
+	 * @param locale The locale of the weather.
+	 * @return The weather, or a zero sized list if there is no weather for the place.
+	 */
+	public List<RemyWeather> getWeather(String city, String country, String locale);
+
+	/**
+	 * Starts the same query as {@link #getWeather(String, String, String) getWeather} and returns without waiting for
+	 * it, if the store can run queries in the background.
+	 *
+	 * @param city The city of the place.
+	 * @param country The country of the place.
+	 * @param locale The locale of the weather.
+	 * @return A Future that completes with the weather.
+	 */
+	public Future<List<RemyWeather>> getWeatherAsync(String city, String country, String locale);
+
+	/**
+	 * Returns the recommendations of every user, as the updatedRecsView view does. The recommendations documents are
+	 * followed by the events they recommend.
+	 *
+	 * @param locale The locale of the recommendations.
+	 * @return The recommendations and events, or a zero sized list if there are no recommendations.
+	 */
+	public List<RemyEvent> getRecommendations(String locale);
+
+	/**
+	 * Starts the same query as {@link #getRecommendations(String) getRecommendations} and returns without waiting for
+	 * it, if the store can run queries in the background.
+	 *
+	 * @param locale The locale of the recommendations.
+	 * @return A Future that completes with the recommendations and events.
+	 */
+	public Future<List<RemyEvent>> getRecommendationsAsync(String locale);
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.IOException;
+
+/**
+ * Holds the travel data store the itinerary data is built from. The store is configured in app.properties:
+ *
+ *     TRAVEL_DATA_STORE    cloudant to query the Cloudant database, memory to load a data file into memory (default
+ *                          cloudant).
+ *     TRAVEL_DATA_FILE     The data file of the memory store, on the classpath or the file system (default
+ *                          resources/remy_dev_db.json).
+ *
+ * The store is created the first time it is asked for. If the data file of the memory store cannot be loaded, the
+ * error is thrown to the caller and loading it is tried again the next time.
+ */
+public class TravelDataStores {
+	public static final String CLOUDANT = "cloudant";
+	public static final String MEMORY = "memory";
+	private static final String STORE_KEY = "TRAVEL_DATA_STORE";
+	private static final String FILE_KEY = "TRAVEL_DATA_FILE";
+	private static final String DEFAULT_FILE = "resources/remy_dev_db.json";
+	private static TravelDataStore store;
+
+	private TravelDataStores() {
+	}
+
+	/**
+	 * Gets the travel data store, creating the configured one if there is none yet.
+	 *
+	 * @return The travel data store.
+	 * @throws IllegalStateException If the data file of the memory store cannot be loaded.
+	 */
+	public static synchronized TravelDataStore getStore() {
+		if (store == null) {
+			if (isCloudant()) {
+				store = new CloudantTravelDataStore();
+			} else {
+				String file = PropertiesReader.getInstance().getStringProperty(FILE_KEY);
+				file = file == null || file.trim().isEmpty() ? DEFAULT_FILE : file.trim();
+				try {
+					store = MemoryTravelDataStore.load(file);
+				} catch (IOException ex) {
+					throw new IllegalStateException(MessageUtils.getInstance().getMessage("MSG0031",
+							new Object[]{file, ex.getMessage()}), ex);
+				}
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Replaces the travel data store, for tests and benchmarks that build the itinerary data from data of their own.
+	 *
+	 * @param newStore The store to use from now on, or null to go back to the configured one.
+	 */
+	public static synchronized void setStore(TravelDataStore newStore) {
+		store = newStore;
+	}
+
+	/**
+	 * Whether the configured store is Cloudant, which is the only one with a changes feed to follow.
+	 *
+	 * @return True unless TRAVEL_DATA_STORE is memory.
+	 */
+	public static boolean isCloudant() {
+		String value = PropertiesReader.getInstance().getStringProperty(STORE_KEY);
+		return value == null || !MEMORY.equalsIgnoreCase(value.trim());
+	}
+}
@@ -10,6 +10,11 @@
 
 package com.ibm.ra.remy.web.utils;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
@@ -22,6 +27,7 @@ public class Utilities {
 	private final PropertiesReader constants = PropertiesReader.getInstance();
 	private final Gson parser = new Gson();
 	public static final String DEFAULT_LOCALE = "en";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
 	
 	public static long convertTime(long difference) {
 		return (System.currentTimeMillis() + difference);
@@ -39,6 +45,52 @@ public class Utilities {
 		return mUtils.getMessage("GET_TIME_STRING", new Object[]{min, sec, millis});
 	}
 	
+	/**
+	 * Waits for a task that was handed to an executor and returns its result. If the task failed, the exception it
+	 * failed with is thrown instead of the ExecutionException wrapping it, so the caller sees the same error it would
+	 * have seen had it run the task itself.
+	 * 
+	 * @param future The task to wait for.
+	 * @return The result of the task.
+	 * @throws Exception The exception the task failed with, or InterruptedException if the wait was interrupted.
+	 */
+	public static <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Hashes a text with SHA-256, for use as a cache key.
+	 * 
+	 * @param text The text to hash, encoded as UTF-8.
+	 * @return The hash as 64 lowercase hex digits.
+	 */
+	public static String sha256Hex(String text) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(MessageUtils.ENCODING));
+			char[] hex = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++) {
+				hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+				hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException ex) {
+			// Every Java runtime has SHA-256.
+			throw new IllegalStateException(ex);
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
 	/**
 	 * Convenience method for calling {@link #isSanitary(String, String) isSanitary(boolean)} without a locale parameter.
 	 * 
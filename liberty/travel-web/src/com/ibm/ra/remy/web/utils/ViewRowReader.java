@@ -0,0 +1,94 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.web.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.google.gson.stream.JsonReader;
+import com.ibm.ra.remy.common.impl.CloudantDocumentReader;
+import com.ibm.ra.remy.common.impl.CloudantObject;
+
+/**
+ * Reads the response of a view query made with include_docs, {"total_rows": n, "offset": n, "rows": [{"id": ...,
+ * "key": ..., "value": ..., "doc": {...}}]}, as it streams in. The document of each row is decoded straight into its
+ * model object by {@link CloudantDocumentReader}, so neither the response nor a Map of each document is built first.
+ */
+public class ViewRowReader {
+	private static final Logger logger = Logger.getLogger(ViewRowReader.class.getName());
+
+	private ViewRowReader() {
+	}
+
+	/**
+	 * Reads the documents of the rows of a view response, in the order of the rows.
+	 *
+	 * @param reader The view response. It is read to the end but not closed.
+	 * @param docClass The class the documents must be. Rows whose document is missing, of an unknown type or not of
+	 * this class are logged and left out.
+	 * @return The documents.
+	 * @throws IOException If the response cannot be read.
+	 */
+	public static <T> List<T> readRows(Reader reader, Class<T> docClass) throws IOException {
+		List<T> docs = new ArrayList<T>();
+		JsonReader in = new JsonReader(reader);
+		in.beginObject();
+		while (in.hasNext()) {
+			if (!"rows".equals(in.nextName())) {
+				in.skipValue();
+				continue;
+			}
+			in.beginArray();
+			while (in.hasNext()) {
+				String id = null;
+				CloudantObject doc = null;
+				in.beginObject();
+				while (in.hasNext()) {
+					String name = in.nextName();
+					if ("doc".equals(name)) {
+						doc = CloudantDocumentReader.read(in);
+					} else if ("id".equals(name)) {
+						id = in.nextString();
+					} else {
+						in.skipValue();
+					}
+				}
+				in.endObject();
+				T checked = checkDocument(doc, docClass, id);
+				if (checked != null) {
+					docs.add(checked);
+				}
+			}
+			in.endArray();
+		}
+		in.endObject();
+		return docs;
+	}
+
+	/**
+	 * Checks that a decoded document is of the given class.
+	 *
+	 * @param doc The document, as returned by {@link CloudantDocumentReader#read(JsonReader)}.
+	 * @param docClass The class the document must be.
+	 * @param id The id of the document, to log if it is left out.
+	 * @return The document, or null if it is missing, of an unknown type or not of the class.
+	 */
+	static <T> T checkDocument(CloudantObject doc, Class<T> docClass, String id) {
+		if (docClass.isInstance(doc)) {
+			return docClass.cast(doc);
+		}
+		logger.warning(MessageUtils.getInstance().getMessage("MSG0013", id));
+		return null;
+	}
+}
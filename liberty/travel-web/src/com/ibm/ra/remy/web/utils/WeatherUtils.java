@@ -12,10 +12,8 @@ package com.ibm.ra.remy.web.utils;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 
-import com.ibm.ra.remy.common.impl.RemyWeatherImpl;
 import com.ibm.ra.remy.common.model.RemyWeather;
 
 /**
@@ -24,18 +22,13 @@ import com.ibm.ra.remy.common.model.RemyWeather;
  */
 public class WeatherUtils {
 	/**
-	 * This function takes in raw weather data from Cloudant and formats it into a sorted list
+	 * This function takes in the weather from Cloudant and formats it into a sorted list
 	 * of RemyWeather objects.
-	 * @param weatherData The unformatted Cloudant data.
+	 * @param weatherData The weather, in the order Cloudant returned it.
 	 * @return A formatted, sorted list of RemyWeather objects.
 	 */
-	@SuppressWarnings("unchecked")
-	public List<RemyWeather> formatWeatherForItinerary(@SuppressWarnings("rawtypes") List<HashMap> weatherData) {
-		List<RemyWeather> weatherList = new ArrayList<RemyWeather>();
-		for (HashMap<String, Object> weatherItem : weatherData) {
-			RemyWeather newWeather = new RemyWeatherImpl(weatherItem);
-			weatherList.add(newWeather);
-		}
+	public List<RemyWeather> formatWeatherForItinerary(List<RemyWeather> weatherData) {
+		List<RemyWeather> weatherList = new ArrayList<RemyWeather>(weatherData);
 		Collections.sort(weatherList, new WeatherComparator());
 		return weatherList;
 	}
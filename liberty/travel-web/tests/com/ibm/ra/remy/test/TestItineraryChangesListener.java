@@ -0,0 +1,180 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.ibm.ra.remy.common.impl.RemyEventDateImpl;
+import com.ibm.ra.remy.common.impl.RemyItineraryImpl;
+import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
+import com.ibm.ra.remy.common.impl.RemyTravelDataImpl;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyEventDate;
+import com.ibm.ra.remy.common.model.RemyItinerary;
+import com.ibm.ra.remy.common.model.RemyTravelData;
+import com.ibm.ra.remy.web.utils.ItineraryCache;
+import com.ibm.ra.remy.web.utils.ItineraryChangesListener;
+import com.ibm.ra.remy.web.utils.ItinerarySnapshot;
+
+public class TestItineraryChangesListener {
+	// Locales no other test caches. Alice and Bob use the first, Carol the second.
+	private static final String LOCALE = "test-changes-1";
+	private static final String OTHER_LOCALE = "test-changes-2";
+	private static final String UNCACHED_LOCALE = "test-changes-3";
+	private static final long DAY = 1433116800000L;
+	private static ItineraryChangesListener listener;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		Map<String, RemyTravelData> data = new HashMap<String, RemyTravelData>();
+		data.put("alice", createTravelData("alice", "itinerary-alice", "event-alice", "Berlin", "Germany"));
+		data.put("bob", createTravelData("bob", "itinerary-bob", "event-bob", "Paris", "France"));
+		ItineraryCache.getInstance().put(LOCALE, new ItinerarySnapshot(LOCALE, data), 0);
+
+		Map<String, RemyTravelData> otherData = new HashMap<String, RemyTravelData>();
+		otherData.put("carol", createTravelData("carol", "itinerary-carol", "event-carol", "Berlin", "Germany"));
+		ItineraryCache.getInstance().put(OTHER_LOCALE, new ItinerarySnapshot(OTHER_LOCALE, otherData), 0);
+
+		listener = ItineraryChangesListener.getInstance();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		ItineraryCache.getInstance().put(LOCALE, null, 0);
+		ItineraryCache.getInstance().put(OTHER_LOCALE, null, 0);
+	}
+
+	/**
+	 * An itinerary or recommendations document names its user and locale. Locales that are not cached are left alone.
+	 */
+	@Test
+	public void testItineraryAndRecs() {
+		assertAffected(listener.getAffected("itinerary-new", createDoc("itinerary", LOCALE, "bob")), LOCALE, "bob");
+		assertAffected(listener.getAffected("recs-1", createDoc("recs", OTHER_LOCALE, "carol")), OTHER_LOCALE, "carol");
+		Assert.assertTrue(listener.getAffected("itinerary-new", createDoc("itinerary", UNCACHED_LOCALE, "bob")).isEmpty());
+	}
+
+	/**
+	 * An event of a cached itinerary affects the owner of the itinerary, any other event every user of its locale.
+	 */
+	@Test
+	public void testEvent() {
+		JsonObject event = createDoc("event", LOCALE, null);
+		event.addProperty("itineraryId", "itinerary-alice");
+		assertAffected(listener.getAffected("event-new", event), LOCALE, "alice");
+
+		JsonObject recommendation = createDoc("event", LOCALE, null);
+		Map<String, Set<String>> affected = listener.getAffected("event-recommended", recommendation);
+		Assert.assertEquals(1, affected.size());
+		Assert.assertTrue(affected.containsKey(LOCALE));
+		Assert.assertNull(affected.get(LOCALE));
+	}
+
+	/**
+	 * Weather affects the users of its locale travelling to its place, and no one else.
+	 */
+	@Test
+	public void testWeather() {
+		assertAffected(listener.getAffected("weather-1", createWeather(LOCALE, "Berlin", "Germany")), LOCALE, "alice");
+		assertAffected(listener.getAffected("weather-2", createWeather(OTHER_LOCALE, "Berlin", "Germany")), OTHER_LOCALE,
+				"carol");
+		Assert.assertTrue(listener.getAffected("weather-3", createWeather(LOCALE, "Rome", "Italy")).isEmpty());
+	}
+
+	/**
+	 * A deleted itinerary or event is traced to its user through the cached data. Anything else that is deleted, and
+	 * any change to the design document, refreshes every cached locale.
+	 */
+	@Test
+	public void testDeletedAndDesignDocuments() {
+		assertAffected(listener.getAffected("itinerary-bob", null), LOCALE, "bob");
+		assertAffected(listener.getAffected("event-carol", null), OTHER_LOCALE, "carol");
+		assertAll(listener.getAffected("weather-unknown", null));
+		assertAll(listener.getAffected("_design/remy_design", createDoc(null, null, null)));
+	}
+
+	/**
+	 * Documents of other types, such as users, affect no one.
+	 */
+	@Test
+	public void testOtherDocuments() {
+		Assert.assertTrue(listener.getAffected("user-1", createDoc("user", LOCALE, "alice")).isEmpty());
+	}
+
+	private static void assertAffected(Map<String, Set<String>> affected, String locale, String... users) {
+		Assert.assertEquals(1, affected.size());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList(users)), affected.get(locale));
+	}
+
+	private static void assertAll(Map<String, Set<String>> affected) {
+		for (String locale : new String[] { LOCALE, OTHER_LOCALE }) {
+			Assert.assertTrue(affected.containsKey(locale));
+			Assert.assertNull(affected.get(locale));
+		}
+		Assert.assertFalse(affected.containsKey(UNCACHED_LOCALE));
+	}
+
+	private static JsonObject createDoc(String type, String locale, String user) {
+		JsonObject doc = new JsonObject();
+		doc.addProperty("type", type);
+		doc.addProperty("locale", locale);
+		doc.addProperty("user", user);
+		return doc;
+	}
+
+	private static JsonObject createWeather(String locale, String city, String country) {
+		JsonObject location = new JsonObject();
+		location.addProperty("city", city);
+		location.addProperty("country", country);
+		JsonObject doc = createDoc("weather", locale, null);
+		doc.add("location", location);
+		return doc;
+	}
+
+	/**
+	 * Builds the data of a user with one itinerary to the given place, holding one event.
+	 */
+	private static RemyTravelData createTravelData(String user, String itineraryId, String eventId, String city,
+			String country) {
+		Map<String, Object> location = new HashMap<String, Object>();
+		location.put("city", city);
+		location.put("country", country);
+		HashMap<String, Object> doc = new HashMap<String, Object>();
+		doc.put("_id", itineraryId);
+		doc.put("type", "itinerary");
+		doc.put("user", user);
+		doc.put("version", 1d);
+		doc.put("initialLocation", location);
+		RemyItinerary itinerary = new RemyItineraryImpl(doc);
+
+		RemyRecommendationsEvent event = new RemyRecommendationsEvent(itineraryId, DAY, DAY, RemyEvent.RESTAURANT,
+				RemyEvent.RESTAURANT, false, new ArrayList<RemyEvent>());
+		event.setId(eventId);
+		RemyEventDate date = new RemyEventDateImpl("", "", DAY, "");
+		date.addEvent(event);
+		itinerary.addDate(date);
+
+		RemyTravelData data = new RemyTravelDataImpl();
+		data.addItinerary(itinerary);
+		return data;
+	}
+}
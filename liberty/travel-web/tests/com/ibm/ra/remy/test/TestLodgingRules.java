@@ -0,0 +1,128 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+import com.ibm.ra.remy.common.impl.RemyLodgingEventDiscount;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.web.utils.BusinessRulesUtils;
+import com.ibm.ra.remy.web.utils.LodgingRules;
+import com.ibm.ra.remy.web.utils.LodgingRulesCache;
+import com.ibm.ra.remy.web.utils.MemoryTravelDataStore;
+import com.ibm.ra.remy.web.utils.PropertiesReader;
+
+public class TestLodgingRules {
+	private static final float DELTA = 0.01f;
+
+	/**
+	 * The promotional discount is applied first, and the loyalty discount to the promotional price.
+	 */
+	@Test
+	public void testPromotionalThenLoyaltyDiscount() {
+		RemyLodgingEvent booking = LodgingRules.apply(createBooking(100f, true, true));
+		Assert.assertEquals(76.5f, booking.getPrice(), DELTA);
+		Assert.assertEquals(100f, booking.getOriginal_price(), DELTA);
+		assertDiscount(booking.getPromotionalDiscount(), "15% off", 100f, 85f);
+		assertDiscount(booking.getLoyaltyDiscount(), "10% off", 85f, 76.5f);
+	}
+
+	/**
+	 * A booking with neither discount keeps its price, and gets empty discounts as it does from the service.
+	 */
+	@Test
+	public void testNoDiscount() {
+		RemyLodgingEvent booking = createBooking(100f, false, false);
+		booking.setPromotionalDiscount(null);
+		booking.setLoyaltyDiscount(null);
+		RemyLodgingEvent adjustedBooking = LodgingRules.apply(booking);
+		Assert.assertEquals(100f, adjustedBooking.getPrice(), DELTA);
+		assertDiscount(adjustedBooking.getPromotionalDiscount(), null, 0f, 0f);
+		assertDiscount(adjustedBooking.getLoyaltyDiscount(), null, 0f, 0f);
+	}
+
+	/**
+	 * The booking given to the rules is cached data and must not change.
+	 */
+	@Test
+	public void testBookingIsNotModified() {
+		RemyLodgingEvent booking = createBooking(100f, true, true);
+		Assert.assertNotSame(booking, LodgingRules.apply(booking));
+		Assert.assertEquals(100f, booking.getPrice(), DELTA);
+		assertDiscount(booking.getLoyaltyDiscount(), null, 0f, 0f);
+	}
+
+	/**
+	 * The rules must give the same results as the Business Rules service for the hotels of the development data. This
+	 * test needs the Business Rules credentials in app.properties, and is skipped when they are not set. The cached
+	 * outcomes are cleared first, so every booking is sent to the service.
+	 */
+	@Test
+	public void testConformsToRemoteRules() throws Exception {
+		Assume.assumeTrue(isConfigured("BR_USERNAME") && isConfigured("BR_PASSWORD")
+				&& isConfigured("BR_EXECUTION_REST_URL") && isConfigured("BR_RULE_APP_PATH"));
+
+		List<RemyLodgingEvent> bookings = new ArrayList<RemyLodgingEvent>();
+		for (RemyEvent event : MemoryTravelDataStore.load("resources/remy_dev_db.json").getRecommendations("en")) {
+			if (event instanceof RemyLodgingEvent) {
+				bookings.add((RemyLodgingEvent) event);
+			}
+		}
+		Assert.assertFalse(bookings.isEmpty());
+
+		LodgingRulesCache.getInstance().invalidate();
+		List<RemyLodgingEvent> remoteBookings = BusinessRulesUtils.applyRemoteLodgingRules(bookings, "en");
+		Assert.assertEquals(bookings.size(), remoteBookings.size());
+		for (int i = 0; i < bookings.size(); i++) {
+			RemyLodgingEvent remote = remoteBookings.get(i);
+			RemyLodgingEvent local = LodgingRules.apply(bookings.get(i));
+			// A booking the service did not answer for is returned as it was given.
+			Assert.assertNotSame(bookings.get(i), remote);
+			Assert.assertEquals(remote.getId(), local.getId());
+			Assert.assertEquals(remote.getPrice(), local.getPrice(), DELTA);
+			assertDiscount(local.getPromotionalDiscount(), remote.getPromotionalDiscount().getMessage(),
+					remote.getPromotionalDiscount().getPreviousPrice(), remote.getPromotionalDiscount().getDiscountedPrice());
+			assertDiscount(local.getLoyaltyDiscount(), remote.getLoyaltyDiscount().getMessage(),
+					remote.getLoyaltyDiscount().getPreviousPrice(), remote.getLoyaltyDiscount().getDiscountedPrice());
+		}
+	}
+
+	/**
+	 * Whether a property is set to something other than the placeholder app.properties ships with.
+	 */
+	private static boolean isConfigured(String key) {
+		String value = PropertiesReader.getInstance().getStringProperty(key);
+		return value != null && !value.trim().isEmpty() && !value.startsWith("<");
+	}
+
+	private static RemyLodgingEvent createBooking(float price, boolean promotional, boolean loyalty) {
+		RemyLodgingEvent booking = new RemyLodgingEvent();
+		booking.setPrice(price);
+		booking.setOriginal_price(price);
+		booking.setHasPromotionalDiscount(promotional);
+		booking.setIsLoyaltyMember(loyalty);
+		return booking;
+	}
+
+	private static void assertDiscount(RemyLodgingEventDiscount discount, String message, float previousPrice,
+			float discountedPrice) {
+		Assert.assertNotNull(discount);
+		Assert.assertEquals(message, discount.getMessage());
+		Assert.assertEquals(previousPrice, discount.getPreviousPrice(), DELTA);
+		Assert.assertEquals(discountedPrice, discount.getDiscountedPrice(), DELTA);
+	}
+}
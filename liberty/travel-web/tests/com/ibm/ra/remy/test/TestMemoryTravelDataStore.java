@@ -0,0 +1,99 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.ra.remy.common.impl.CloudantObject;
+import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyItinerary;
+import com.ibm.ra.remy.common.model.RemyWeather;
+import com.ibm.ra.remy.web.utils.MemoryTravelDataStore;
+
+public class TestMemoryTravelDataStore {
+	private static MemoryTravelDataStore store;
+	private static final String LOCALE = "en";
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		store = MemoryTravelDataStore.load("resources/remy_dev_db.json");
+	}
+
+	/**
+	 * The itineraries must come out the way itineraryJsonView returns them: ordered by version, each one followed by
+	 * the events it lists.
+	 */
+	@Test
+	public void testItinerariesAreJoinedWithTheirEvents() {
+		List<CloudantObject> docs = store.getItineraries(LOCALE);
+		Assert.assertFalse(docs.isEmpty());
+		Assert.assertTrue(docs.get(0) instanceof RemyItinerary);
+
+		int version = 0;
+		int itineraries = 0;
+		for (CloudantObject doc : docs) {
+			if (doc instanceof RemyItinerary) {
+				RemyItinerary itinerary = (RemyItinerary) doc;
+				Assert.assertTrue(itinerary.getVersion() >= version);
+				Assert.assertNotNull(itinerary.getInitialLocation());
+				version = itinerary.getVersion();
+				itineraries++;
+			} else {
+				Assert.assertEquals("event", doc.getType());
+				Assert.assertTrue(doc instanceof RemyEvent);
+				Assert.assertNotNull(((RemyEvent) doc).getSubtype());
+			}
+		}
+		Assert.assertTrue(itineraries < docs.size());
+	}
+
+	/**
+	 * Weather is looked up by city, country and locale.
+	 */
+	@Test
+	public void testWeatherForPlace() {
+		List<RemyWeather> weather = store.getWeather("Berlin", "Germany", LOCALE);
+		Assert.assertFalse(weather.isEmpty());
+		for (RemyWeather doc : weather) {
+			Assert.assertNotNull(doc.getCondition());
+			Assert.assertNotNull(doc.getTemperature(true));
+		}
+		Assert.assertTrue(store.getWeather("Berlin", "Germany", "xx").isEmpty());
+	}
+
+	/**
+	 * The recommendations come first, in the form the pipeline reads them in, followed by the events they recommend.
+	 */
+	@Test
+	public void testRecommendationsComeBeforeTheirEvents() {
+		List<RemyEvent> docs = store.getRecommendations(LOCALE);
+		Assert.assertFalse(docs.isEmpty());
+		boolean events = false;
+		for (RemyEvent doc : docs) {
+			if (doc instanceof RemyRecommendationsEvent) {
+				RemyRecommendationsEvent recs = (RemyRecommendationsEvent) doc;
+				Assert.assertFalse(events);
+				Assert.assertEquals(RemyEvent.RECOMMENDATIONS, recs.getSubtype());
+				Assert.assertNotNull(recs.getRecType());
+				Assert.assertNotNull(recs.getUser());
+			} else {
+				events = true;
+				Assert.assertEquals("event", ((CloudantObject) doc).getType());
+			}
+		}
+		Assert.assertTrue(events);
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.ibm.ra.remy.common.impl.RemyEventDateImpl;
+import com.ibm.ra.remy.common.impl.RemyEventImpl;
+import com.ibm.ra.remy.common.impl.RemyFlightEvent;
+import com.ibm.ra.remy.common.impl.RemyItineraryImpl;
+import com.ibm.ra.remy.common.impl.RemyLodgingEvent;
+import com.ibm.ra.remy.common.impl.RemyLodgingEventDiscount;
+import com.ibm.ra.remy.common.impl.RemyMeetingEvent;
+import com.ibm.ra.remy.common.impl.RemyRecommendationsEvent;
+import com.ibm.ra.remy.common.impl.RemyRestaurantEvent;
+import com.ibm.ra.remy.common.impl.RemyTransitEvent;
+import com.ibm.ra.remy.common.impl.RemyTransitStep;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.model.RemyEventDate;
+import com.ibm.ra.remy.common.model.RemyItinerary;
+import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.web.utils.EventUtils;
+
+public class TestModelCopy {
+	private static final String SEED_DATA = "resources/remy_dev_db.json";
+	private static final String CHANGED = "changed";
+	// Every subclass of RemyEventImpl. A subclass that does not override copy() fails when it is copied.
+	private static final Class<?>[] EVENT_CLASSES = { RemyFlightEvent.class, RemyLodgingEvent.class,
+			RemyMeetingEvent.class, RemyRecommendationsEvent.class, RemyRestaurantEvent.class, RemyTransitEvent.class };
+	private static final Gson gson = new Gson();
+	private static List<RemyItinerary> itineraries;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		itineraries = loadSeedItineraries();
+	}
+
+	/**
+	 * A copy must hold the same data as its original, in objects of the same classes.
+	 */
+	@Test
+	public void testCopyIsEqualToOriginal() {
+		for (RemyItinerary itinerary : itineraries) {
+			RemyItinerary copy = itinerary.copy();
+			Assert.assertNotSame(itinerary, copy);
+			Assert.assertEquals(gson.toJson(itinerary), gson.toJson(copy));
+			for (int i = 0; i < itinerary.getAllDates().size(); i++) {
+				List<RemyEvent> events = itinerary.getAllDates().get(i).getEvents();
+				List<RemyEvent> copiedEvents = copy.getAllDates().get(i).getEvents();
+				for (int j = 0; j < events.size(); j++) {
+					Assert.assertNotSame(events.get(j), copiedEvents.get(j));
+					Assert.assertSame(events.get(j).getClass(), copiedEvents.get(j).getClass());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Changing anything in a copy, down to the transit steps, lodging discounts and recommendation lists of its
+	 * events, must leave the original as it was.
+	 */
+	@Test
+	public void testChangingCopyLeavesOriginalUnchanged() {
+		for (RemyItinerary itinerary : itineraries) {
+			String original = gson.toJson(itinerary);
+			RemyItinerary copy = itinerary.copy();
+			change(copy);
+			Assert.assertFalse(original.equals(gson.toJson(copy)));
+			Assert.assertEquals(original, gson.toJson(itinerary));
+		}
+	}
+
+	/**
+	 * Every event class must override copy(), and the seed data must not hold events of any other class.
+	 */
+	@Test
+	public void testEveryEventClassOverridesCopy() throws Exception {
+		Set<Class<?>> eventClasses = new HashSet<Class<?>>();
+		for (Class<?> eventClass : EVENT_CLASSES) {
+			Assert.assertEquals(eventClass, eventClass.getMethod("copy").getDeclaringClass());
+			eventClasses.add(eventClass);
+		}
+		Set<Class<?>> seedClasses = new HashSet<Class<?>>();
+		for (RemyItinerary itinerary : itineraries) {
+			for (RemyEventDate date : itinerary.getAllDates()) {
+				collectClasses(date.getEvents(), seedClasses);
+			}
+		}
+		Assert.assertTrue(eventClasses.containsAll(seedClasses));
+		Assert.assertTrue(seedClasses.size() > 1);
+	}
+
+	private static void collectClasses(List<RemyEvent> events, Set<Class<?>> classes) {
+		for (RemyEvent event : events) {
+			Assert.assertTrue(event instanceof RemyEventImpl);
+			classes.add(event.getClass());
+			if (event instanceof RemyRecommendationsEvent) {
+				collectClasses(((RemyRecommendationsEvent) event).getRecommendationList(), classes);
+			}
+		}
+	}
+
+	private static void change(RemyItinerary itinerary) {
+		itinerary.fixTime();
+		itinerary.setVersion(itinerary.getVersion() + 1);
+		itinerary.getInitialLocation().setCity(CHANGED);
+		for (RemyEventDate date : itinerary.getAllDates()) {
+			date.setCondition(CHANGED);
+			for (RemyEvent event : date.getEvents()) {
+				change(event);
+			}
+			if (!date.getEvents().isEmpty()) {
+				date.removeEvent(date.getEvents().get(0));
+			}
+		}
+		itinerary.addDate(new RemyEventDateImpl("", "", 0, CHANGED));
+	}
+
+	private static void change(RemyEvent event) {
+		event.setAffectedByWeather(!event.getAffectedByWeather());
+		if (event instanceof RemyLodgingEvent) {
+			RemyLodgingEvent lodging = (RemyLodgingEvent) event;
+			lodging.setPrice(lodging.getPrice() + 1);
+			lodging.getPromotionalDiscount().setMessage(CHANGED);
+			lodging.getLoyaltyDiscount().setDiscountedPrice(-1);
+			if (lodging.getGeometry() != null) {
+				lodging.getGeometry().setCity(CHANGED);
+			}
+		} else if (event instanceof RemyMeetingEvent && ((RemyMeetingEvent) event).getGeometry() != null) {
+			((RemyMeetingEvent) event).getGeometry().setCity(CHANGED);
+		} else if (event instanceof RemyRestaurantEvent) {
+			RemyRestaurantEvent restaurant = (RemyRestaurantEvent) event;
+			if (restaurant.getGeometry() != null) {
+				restaurant.getGeometry().setCity(CHANGED);
+			}
+			if (restaurant.getRecommendedReplacements() != null) {
+				change(restaurant.getRecommendedReplacements());
+			}
+		} else if (event instanceof RemyRecommendationsEvent) {
+			List<RemyEvent> recommendations = ((RemyRecommendationsEvent) event).getRecommendationList();
+			for (RemyEvent recommendation : recommendations) {
+				change(recommendation);
+			}
+			recommendations.remove(0);
+		} else if (event instanceof RemyTransitEvent) {
+			List<RemyTransitStep> steps = ((RemyTransitEvent) event).getTransitSteps();
+			for (RemyTransitStep step : steps) {
+				step.setStartTime(-1L);
+			}
+			steps.remove(0);
+		}
+	}
+
+	/**
+	 * Builds every itinerary of the seed data with its events, and adds the recommendations of the seed data to each of
+	 * them so the copies include nested events as well. Each lodging event is given both discounts, and each restaurant
+	 * some recommended replacements, since the seed data has neither.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<RemyItinerary> loadSeedItineraries() throws Exception {
+		Reader reader = new InputStreamReader(TestModelCopy.class.getClassLoader().getResourceAsStream(SEED_DATA),
+				"UTF-8");
+		Map<String, Object> seed;
+		try {
+			seed = gson.fromJson(reader, HashMap.class);
+		} finally {
+			reader.close();
+		}
+		Map<String, Map<String, Object>> docs = new HashMap<String, Map<String, Object>>();
+		for (Map<String, Object> doc : (List<Map<String, Object>>) seed.get("docs")) {
+			if (doc.get("_id") != null) {
+				docs.put((String) doc.get("_id"), doc);
+			}
+		}
+
+		EventUtils eUtils = new EventUtils();
+		List<RemyItinerary> itineraries = new ArrayList<RemyItinerary>();
+		for (Map<String, Object> doc : docs.values()) {
+			if (!"itinerary".equals(doc.get("type"))) {
+				continue;
+			}
+			RemyItinerary itinerary = new RemyItineraryImpl(new HashMap<String, Object>(doc));
+			for (Object eventId : (List<Object>) doc.get("events")) {
+				addEvent(itinerary, createEvent(eUtils, docs.get(eventId), itinerary.getId()));
+			}
+			for (Map<String, Object> recs : docs.values()) {
+				if ("recs".equals(recs.get("type"))) {
+					List<RemyEvent> recommendations = new ArrayList<RemyEvent>();
+					for (Object eventId : (List<Object>) recs.get("events")) {
+						recommendations.add(createEvent(eUtils, docs.get(eventId), itinerary.getId()));
+					}
+					String type = (String) recs.get(RemyEvent.SUBTYPE_KEY);
+					addEvent(itinerary, new RemyRecommendationsEvent(itinerary.getId(), recommendations.get(0).getTime(),
+							recommendations.get(0).getTime(), type, type, false, recommendations));
+				}
+			}
+			itinerary.sortAllEvents();
+			itineraries.add(itinerary);
+		}
+		Assert.assertFalse(itineraries.isEmpty());
+		return itineraries;
+	}
+
+	private static RemyEvent createEvent(EventUtils eUtils, Map<String, Object> doc, String itineraryId) {
+		HashMap<String, Object> data = new HashMap<String, Object>(doc);
+		// Values that are only set on some of the seed events.
+		if (!data.containsKey("isPreferred")) {
+			data.put("isPreferred", Boolean.FALSE);
+		}
+		if (!data.containsKey("loyaltyPoints")) {
+			data.put("loyaltyPoints", 0d);
+		}
+		RemyEvent event = eUtils.createEventFromHashmap(data, itineraryId);
+		if (event instanceof RemyLodgingEvent) {
+			RemyLodgingEvent lodging = (RemyLodgingEvent) event;
+			lodging.setPromotionalDiscount(new RemyLodgingEventDiscount("15% off", 100f, 85f));
+			lodging.setLoyaltyDiscount(new RemyLodgingEventDiscount("10% off", 85f, 76.5f));
+		} else if (event instanceof RemyRestaurantEvent) {
+			List<RemyEvent> replacements = new ArrayList<RemyEvent>();
+			replacements.add(eUtils.createEventFromHashmap(new HashMap<String, Object>(data), itineraryId));
+			((RemyRestaurantEvent) event).setRecommendedReplacements(new RemyRecommendationsEvent(itineraryId,
+					event.getTime(), event.getTime(), RemyEvent.RESTAURANT, RemyEvent.RESTAURANT, false, replacements));
+		}
+		return event;
+	}
+
+	private static void addEvent(RemyItinerary itinerary, RemyEvent event) {
+		long day = DateUtils.generalizeTime(new Date(event.getTime())).getTime();
+		RemyEventDate date = itinerary.getDate(day);
+		if (date == null) {
+			date = new RemyEventDateImpl("", "", day, "");
+			itinerary.addDate(date);
+		}
+		date.addEvent(event);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.common.impl;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.ibm.ra.remy.common.model.RemyEvent;
+import com.ibm.ra.remy.common.utils.JsonUtils;
+
+/**
+ * Reads Cloudant documents straight into the objects they describe, without building a Map of the document first. The
+ * members of a document are read with the same keys and give the same values as the Map constructors of the classes:
+ *
+ *     type         subtype            Class
+ *
+ *     itinerary                       {@link RemyItineraryImpl}
+ *     weather                         {@link RemyWeatherImpl}
+ *                  recommendations    {@link RemyRecommendationsEvent}
+ *                  lodging            {@link RemyLodgingEvent}
+ *                  flight             {@link RemyFlightEvent}
+ *                  transit            {@link RemyTransitEvent}
+ *                  meeting            {@link RemyMeetingEvent}
+ *                  restaurant         {@link RemyRestaurantEvent}
+ *
+ * Itineraries and weather are known by their type, events by their subtype, as in the Map based code. Cloudant keeps the
+ * members of a document in the order they were written, so these usually come first; any members before them are held
+ * until the object is created. Events are read without an itinerary, the caller sets it with
+ * {@link RemyEventImpl#setItineraryId(String)}.
+ */
+public class CloudantDocumentReader {
+	private static final String WEATHER = "weather";
+	private static final JsonParser PARSER = new JsonParser();
+
+	private CloudantDocumentReader() {
+	}
+
+	/**
+	 * Reads a document.
+	 *
+	 * @param in The reader, positioned on the document object.
+	 * @return The object the document describes, or null if the document is null or its type is not one of the above,
+	 * in which case it has been skipped.
+	 * @throws IOException If the document cannot be read.
+	 */
+	public static CloudantObject read(JsonReader in) throws IOException {
+		if (!JsonUtils.beginObject(in)) {
+			return null;
+		}
+		CloudantObject doc = null;
+		boolean known = false;
+		String type = null;
+		String subtype = null;
+		Map<String, JsonElement> held = new LinkedHashMap<String, JsonElement>();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (known) {
+				if (doc == null || !doc.readMember(name, in)) {
+					in.skipValue();
+				}
+				continue;
+			}
+			JsonElement value = PARSER.parse(in);
+			held.put(name, value);
+			if (RemyEvent.TYPE_KEY.equals(name)) {
+				type = getString(value);
+			} else if (RemyEvent.SUBTYPE_KEY.equals(name)) {
+				subtype = getString(value);
+			}
+			if (subtype != null || RemyEvent.ITINERARY.equals(type) || WEATHER.equals(type)) {
+				known = true;
+				doc = create(type, subtype);
+				if (doc != null) {
+					for (Map.Entry<String, JsonElement> member : held.entrySet()) {
+						doc.readMember(member.getKey(), replay(member.getValue()));
+					}
+				}
+			}
+		}
+		in.endObject();
+		if (doc != null) {
+			doc.finishRead();
+		}
+		return doc;
+	}
+
+	/**
+	 * Creates the empty object for a document of the given type and subtype.
+	 */
+	private static CloudantObject create(String type, String subtype) {
+		if (RemyEvent.ITINERARY.equals(type)) {
+			return new RemyItineraryImpl();
+		} else if (WEATHER.equals(type)) {
+			return new RemyWeatherImpl();
+		} else if (RemyEvent.RECOMMENDATIONS.equals(subtype)) {
+			return new RemyRecommendationsEvent();
+		} else if (RemyEvent.LODGING.equals(subtype)) {
+			// Unlike the default constructor, this one leaves the discounts null as the Map constructor does.
+			return new RemyLodgingEvent((String) null);
+		} else if (RemyEvent.FLIGHT.equals(subtype)) {
+			return new RemyFlightEvent();
+		} else if (RemyEvent.TRANSIT.equals(subtype)) {
+			return new RemyTransitEvent();
+		} else if (RemyEvent.MEETING.equals(subtype)) {
+			return new RemyMeetingEvent();
+		} else if (RemyEvent.RESTAURANT.equals(subtype)) {
+			return new RemyRestaurantEvent();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a reader positioned on a value that was read ahead of the type of its document. The reader is lenient so
+	 * that it accepts a value that is not an object or array on its own.
+	 */
+	private static JsonReader replay(JsonElement value) {
+		JsonReader reader = new JsonReader(new StringReader(value.toString()));
+		reader.setLenient(true);
+		return reader;
+	}
+
+	private static String getString(JsonElement value) {
+		return value.isJsonPrimitive() ? value.getAsString() : null;
+	}
+}
@@ -10,11 +10,14 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyLocation;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Class that represents a generic Location.  Currently this object contains properties for the city and country
@@ -62,6 +65,57 @@ public class CloudantLocation implements RemyLocation, Serializable {
 			
 		}
 	}
+	
+	/**
+	 * Constructor that reads the location from a Cloudant document, with the same keys as the Map constructor. Keys
+	 * it does not know about are skipped.
+	 * 
+	 * @param in The reader, positioned on the location object. If the value is null the location is left empty.
+	 * @throws IOException If the location cannot be read.
+	 */
+	CloudantLocation(JsonReader in) throws IOException {
+		if (JsonUtils.beginObject(in)) {
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "city":
+					city = JsonUtils.nextString(in);
+					break;
+				case "country":
+					country = JsonUtils.nextString(in);
+					break;
+				case "lat":
+					lat = JsonUtils.nextDouble(in, 0);
+					break;
+				case "lng":
+					lng = JsonUtils.nextDouble(in, 0);
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+		}
+	}
+	
+	/**
+	 * Copy constructor. The new location has the same values as the given one.
+	 * 
+	 * @param toCopy The location to copy.
+	 */
+	public CloudantLocation(CloudantLocation toCopy) {
+		this.city = toCopy.city;
+		this.country = toCopy.country;
+		this.lat = toCopy.lat;
+		this.lng = toCopy.lng;
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyLocation#copy()
+	 */
+	@Override
+	public CloudantLocation copy() {
+		return new CloudantLocation(this);
+	}
 
 	/**
 	 * Returns the city where this location is situated.  May return null if no city is associated with this location.
@@ -10,10 +10,13 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Pojo that will be the base for each type we are storing as Cloudant documents.
@@ -107,6 +110,39 @@ public class CloudantObject implements Serializable {
 	public void set_rev(String _rev) {
 		this._rev = _rev;
 	}
+	/**
+	 * Reads a member of the document this object is being decoded from, see {@link CloudantDocumentReader}. Each
+	 * subclass reads the members it knows about the same way its Map constructor does, and passes the others on to
+	 * its parent class.
+	 * 
+	 * @param name The name of the member.
+	 * @param in The reader, positioned on the value of the member.
+	 * @return True if the value was read, or false if the member is not known and its value has not been read.
+	 * @throws IOException If the value cannot be read.
+	 */
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "_id":
+			this._id = JsonUtils.nextString(in);
+			return true;
+		case "type":
+			this.type = JsonUtils.nextString(in);
+			return true;
+		case "_rev":
+			this._rev = JsonUtils.nextString(in);
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Called once every member of the document has been read, so the members the document did not have can be set
+	 * the way the Map constructor sets them.
+	 */
+	void finishRead() {
+	}
+	
 	/**
 	 * Converts the data object into a JSON object.
 	 * @return The JSON representation of this object, as a string.
@@ -10,11 +10,14 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyLocation;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Class that mimics the location that is returned from a Google Places API query.
@@ -67,6 +70,68 @@ public class GooglePlacesLocation implements RemyLocation, Serializable {
 			}
 		}
 	}
+	
+	/**
+	 * Constructor that reads the location from a Cloudant document, with the same keys as the Map constructor. Keys
+	 * it does not know about, such as the viewport, are skipped.
+	 * 
+	 * @param in The reader, positioned on the geometry object. If the value is null the location is left empty.
+	 * @throws IOException If the location cannot be read.
+	 */
+	GooglePlacesLocation(JsonReader in) throws IOException {
+		super();
+		if (JsonUtils.beginObject(in)) {
+			while (in.hasNext()) {
+				if (!"location".equals(in.nextName())) {
+					in.skipValue();
+				} else if (JsonUtils.beginObject(in)) {
+					this.location = new LatLong();
+					while (in.hasNext()) {
+						switch (in.nextName()) {
+						case "lat":
+							this.location.setLat(in.nextDouble());
+							break;
+						case "lng":
+							this.location.setLng(in.nextDouble());
+							break;
+						case "city":
+							this.city = JsonUtils.nextString(in);
+							break;
+						case "country":
+							this.country = JsonUtils.nextString(in);
+							break;
+						default:
+							in.skipValue();
+						}
+					}
+					in.endObject();
+				}
+			}
+			in.endObject();
+		}
+	}
+	
+	/**
+	 * Copy constructor. The new location has its own latitude and longitude, with the same values as the given one.
+	 * 
+	 * @param toCopy The location to copy.
+	 */
+	public GooglePlacesLocation(GooglePlacesLocation toCopy) {
+		super();
+		if (toCopy.location != null) {
+			this.location = new LatLong(toCopy.location.getLat(), toCopy.location.getLng());
+		}
+		this.city = toCopy.city;
+		this.country = toCopy.country;
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyLocation#copy()
+	 */
+	@Override
+	public GooglePlacesLocation copy() {
+		return new GooglePlacesLocation(this);
+	}
 
 //  These functions removed for compatibility with Business Rules.
 //
@@ -51,6 +51,32 @@ public class RemyEventDateImpl implements RemyEventDate, Serializable {
 		this.condition = condition;
 	}
 	
+	/**
+	 * Copy constructor. The new date has its own list of events, so events can be added, removed or sorted without
+	 * changing the original, but the events themselves are shared with the original.
+	 * 
+	 * @param toCopy The date to copy.
+	 */
+	public RemyEventDateImpl(RemyEventDate toCopy) {
+		this.date = toCopy.getDate();
+		this.temperatureHigh = toCopy.getHighTemperature();
+		this.temperatureLow = toCopy.getLowTemperature();
+		this.condition = toCopy.getCondition();
+		this.events = new ArrayList<RemyEvent>(toCopy.getEvents());
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEventDate#copy()
+	 */
+	@Override
+	public RemyEventDateImpl copy() {
+		RemyEventDateImpl copy = new RemyEventDateImpl(this);
+		for (int i = 0; i < copy.events.size(); i++) {
+			copy.events.set(i, copy.events.get(i).copy());
+		}
+		return copy;
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.model.RemyEventDate#getEvents()
 	 */
@@ -9,6 +9,7 @@
  */
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -18,8 +19,10 @@ import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Class to represent the most generic event type we can support in the app.  This really doesn't contain anything other
@@ -96,6 +99,52 @@ public class RemyEventImpl extends CloudantObject implements RemyEvent, Serializ
 		this.set_rev("");
 	}
 
+	/**
+	 * Copy constructor. The new event has the same values as the given one, so it can be changed without changing the
+	 * original. Subclasses with members that can be changed must copy those themselves, see {@link #copy()}.
+	 * 
+	 * @param toCopy The event to copy.
+	 */
+	public RemyEventImpl(RemyEventImpl toCopy) {
+		super(toCopy);
+		this.itineraryId = toCopy.itineraryId;
+		this.subType = toCopy.subType;
+		this.start_time = toCopy.start_time;
+		this.end_time = toCopy.end_time;
+		this.affectedByWeather = toCopy.affectedByWeather;
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyEventImpl copy() {
+		if (getClass() != RemyEventImpl.class) {
+			throw new UnsupportedOperationException(getClass().getName() + " does not override copy()");
+		}
+		return new RemyEventImpl(this);
+	}
+
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "subtype":
+			this.subType = JsonUtils.nextString(in);
+			return true;
+		case "start_time":
+			this.start_time = JsonUtils.nextLong(in);
+			return true;
+		case "end_time":
+			this.end_time = JsonUtils.nextLong(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.model.RemyEvent#fixTime()
 	 */
@@ -147,10 +196,11 @@ public class RemyEventImpl extends CloudantObject implements RemyEvent, Serializ
 	}
 	
 	/**
-	 * Setter method needed by the Bluemix Business Rules service.
+	 * Setter method needed by the Bluemix Business Rules service, and to place an event read from a Cloudant document
+	 * in its itinerary.
 	 * @param itineraryId The id of the parent itinerary.
 	 */
-	protected void setItineraryId(String itineraryId) {
+	public void setItineraryId(String itineraryId) {
 		this.itineraryId = itineraryId;
 	}
 	
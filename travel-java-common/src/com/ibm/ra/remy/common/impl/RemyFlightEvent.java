@@ -9,14 +9,17 @@
  */
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.model.RemyLocation;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Class representing Flight events. This is usually like a flight reservation you would see in an email notification
@@ -38,6 +41,13 @@ public class RemyFlightEvent extends RemyEventImpl implements RemyEvent, Seriali
 	private String gate;
 	private String terminal;
 	
+	/**
+	 * Constructor for {@link CloudantDocumentReader}, which sets the members as it reads the document.
+	 */
+	RemyFlightEvent() {
+		super();
+	}
+	
 	/**
 	 * Default constructor which creates a Flight object from a map of data. The Map needs to contain the following
 	 * keys in order to fully create the object.
@@ -90,6 +100,89 @@ public class RemyFlightEvent extends RemyEventImpl implements RemyEvent, Seriali
 		this.terminal = (String)data.get("terminal");
 	}
 	
+	/**
+	 * Copy constructor. The new event has its own copies of the locations, so it can be changed
+	 * without changing the original.
+	 * 
+	 * @param toCopy The flight event to copy.
+	 */
+	public RemyFlightEvent(RemyFlightEvent toCopy) {
+		super(toCopy);
+		this.boardingTime = toCopy.boardingTime;
+		this.departureTime = toCopy.departureTime;
+		this.arrivalTime = toCopy.arrivalTime;
+		this.departureAirportCode = toCopy.departureAirportCode;
+		this.arrivalAirportCode = toCopy.arrivalAirportCode;
+		this.gate = toCopy.gate;
+		this.terminal = toCopy.terminal;
+		if (toCopy.arrivalLocation != null) {
+			this.arrivalLocation = toCopy.arrivalLocation.copy();
+		}
+		if (toCopy.departureLocation != null) {
+			this.departureLocation = toCopy.departureLocation.copy();
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyFlightEvent copy() {
+		return new RemyFlightEvent(this);
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "boardingTime":
+			this.boardingTime = JsonUtils.nextLong(in);
+			return true;
+		case "departureTime":
+			this.departureTime = JsonUtils.nextLong(in);
+			return true;
+		case "arrivalTime":
+			this.arrivalTime = JsonUtils.nextLong(in);
+			return true;
+		case "departureAirportCode":
+			this.departureAirportCode = JsonUtils.nextString(in);
+			return true;
+		case "arrivalLocation":
+			this.arrivalLocation = new CloudantLocation(in);
+			return true;
+		case "departureLocation":
+			this.departureLocation = new CloudantLocation(in);
+			return true;
+		case "arrivalAirportCode":
+			this.arrivalAirportCode = JsonUtils.nextString(in);
+			return true;
+		case "gate":
+			this.gate = JsonUtils.nextString(in);
+			return true;
+		case "terminal":
+			this.terminal = JsonUtils.nextString(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#finishRead()
+	 */
+	@Override
+	void finishRead() {
+		super.finishRead();
+		if (arrivalLocation == null) {
+			arrivalLocation = new CloudantLocation();
+		}
+		if (departureLocation == null) {
+			departureLocation = new CloudantLocation();
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.model.RemyEvent#fixTime()
 	 */
@@ -9,6 +9,7 @@
  */
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -16,10 +17,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEventDate;
 import com.ibm.ra.remy.common.model.RemyItinerary;
 import com.ibm.ra.remy.common.model.RemyLocation;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Simple class representing the Itinerary that will be displayed on the client side.
@@ -82,14 +85,98 @@ public class RemyItineraryImpl extends CloudantObject implements RemyItinerary,
 				itineraryEndDate = ((Double)contents).longValue();
 			}
 			initialLocation = new CloudantLocation((Map<String, Object>) data.get("initialLocation"));
-			long start = DateUtils.generalizeTime(new Date(itineraryStartDate)).getTime();
-			long end = DateUtils.generalizeTime(new Date(itineraryEndDate)).getTime();
-			dates = new ArrayList<RemyEventDate>();
-			while (start < end) {
-				dates.add(new RemyEventDateImpl("","",start,""));
-				start = DateUtils.addHours(new Date(start), 24).getTime();
+			createDates();
+		}
+	}
+	
+	/**
+	 * Copy constructor. The new itinerary has its own list of dates, so dates can be replaced without changing the
+	 * original, but the dates themselves are shared with the original.
+	 * 
+	 * @param toCopy The itinerary to copy.
+	 */
+	public RemyItineraryImpl(RemyItineraryImpl toCopy) {
+		super(toCopy);
+		this.title = toCopy.title;
+		this.user = toCopy.user;
+		this.version = toCopy.version;
+		this.itineraryStartDate = toCopy.itineraryStartDate;
+		this.itineraryEndDate = toCopy.itineraryEndDate;
+		this.initialLocation = toCopy.initialLocation;
+		if (toCopy.dates != null) {
+			this.dates = new ArrayList<RemyEventDate>(toCopy.dates);
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyItinerary#copy()
+	 */
+	@Override
+	public RemyItineraryImpl copy() {
+		RemyItineraryImpl copy = new RemyItineraryImpl(this);
+		if (initialLocation != null) {
+			copy.initialLocation = initialLocation.copy();
+		}
+		if (copy.dates != null) {
+			for (int i = 0; i < copy.dates.size(); i++) {
+				copy.dates.set(i, copy.dates.get(i).copy());
 			}
 		}
+		return copy;
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "title":
+			title = JsonUtils.nextString(in);
+			return true;
+		case "user":
+			user = JsonUtils.nextString(in);
+			return true;
+		case "version":
+			version = (int) JsonUtils.nextDouble(in, 0);
+			return true;
+		case "itineraryStartDate":
+			itineraryStartDate = JsonUtils.nextLong(in, 0);
+			return true;
+		case "itineraryEndDate":
+			itineraryEndDate = JsonUtils.nextLong(in, 0);
+			return true;
+		case "initialLocation":
+			initialLocation = new CloudantLocation(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#finishRead()
+	 */
+	@Override
+	void finishRead() {
+		super.finishRead();
+		if (initialLocation == null) {
+			initialLocation = new CloudantLocation();
+		}
+		createDates();
+	}
+	
+	/**
+	 * Creates a date for each day from the start date of the itinerary up to its end date.
+	 */
+	private void createDates() {
+		long start = DateUtils.generalizeTime(new Date(itineraryStartDate)).getTime();
+		long end = DateUtils.generalizeTime(new Date(itineraryEndDate)).getTime();
+		dates = new ArrayList<RemyEventDate>();
+		while (start < end) {
+			dates.add(new RemyEventDateImpl("","",start,""));
+			start = DateUtils.addHours(new Date(start), 24).getTime();
+		}
 	}
 	
 	/**
@@ -10,14 +10,17 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Simple class to contain the data for a Lodging event. Basically this contains data you would want to see
@@ -168,6 +171,142 @@ public class RemyLodgingEvent extends RemyEventImpl implements RemyEvent, Serial
 		this.imageUrl = (String) data.get("imageUrl");
 	}
 	
+	/**
+	 * Copy constructor. The new event has the same values as the given one, so its times and display type can be
+	 * changed without changing the original. The location and discounts are shared with the original, use {@link #copy()}
+	 * for a copy that shares nothing.
+	 * 
+	 * @param toCopy The lodging event to copy.
+	 */
+	public RemyLodgingEvent(RemyLodgingEvent toCopy) {
+		super(toCopy);
+		this.meetingName = toCopy.meetingName;
+		this.name = toCopy.name;
+		this.room = toCopy.room;
+		this.geometry = toCopy.geometry;
+		this.confirmation = toCopy.confirmation;
+		this.checkin = toCopy.checkin;
+		this.checkout = toCopy.checkout;
+		this.price = toCopy.price;
+		this.original_price = toCopy.original_price;
+		this.isPreferred = toCopy.isPreferred;
+		this.hasPromotionalDiscount = toCopy.hasPromotionalDiscount;
+		this.promotionalDiscount = toCopy.promotionalDiscount;
+		this.isLoyaltyMember = toCopy.isLoyaltyMember;
+		this.loyaltyDiscount = toCopy.loyaltyDiscount;
+		this.rationale = toCopy.rationale;
+		this.rating = toCopy.rating;
+		this.description = toCopy.description;
+		this.location = toCopy.location;
+		this.reviewHighlight = toCopy.reviewHighlight;
+		this.reviewer = toCopy.reviewer;
+		this.reviewTime = toCopy.reviewTime;
+		this.vicinity = toCopy.vicinity;
+		this.loyaltyProgramName = toCopy.loyaltyProgramName;
+		this.loyaltyPoints = toCopy.loyaltyPoints;
+		this.displayType = toCopy.displayType;
+		this.imageUrl = toCopy.imageUrl;
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyLodgingEvent copy() {
+		RemyLodgingEvent copy = new RemyLodgingEvent(this);
+		if (geometry != null) {
+			copy.geometry = geometry.copy();
+		}
+		if (promotionalDiscount != null) {
+			copy.promotionalDiscount = new RemyLodgingEventDiscount(promotionalDiscount);
+		}
+		if (loyaltyDiscount != null) {
+			copy.loyaltyDiscount = new RemyLodgingEventDiscount(loyaltyDiscount);
+		}
+		return copy;
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "meetingName":
+			this.meetingName = JsonUtils.nextString(in);
+			return true;
+		case "name":
+			this.name = JsonUtils.nextString(in);
+			return true;
+		case "room":
+			this.room = JsonUtils.nextString(in);
+			return true;
+		case "confirmation":
+			this.confirmation = JsonUtils.nextString(in);
+			return true;
+		case "checkin":
+			this.checkin = JsonUtils.nextLong(in, 0);
+			return true;
+		case "checkout":
+			this.checkout = JsonUtils.nextLong(in, 0);
+			return true;
+		case "price":
+			this.price = (float) JsonUtils.nextDouble(in, 0);
+			this.original_price = this.price;
+			return true;
+		case "hasPromotionalDiscount":
+			this.hasPromotionalDiscount = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "isLoyaltyMember":
+			this.isLoyaltyMember = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "isPreferred":
+			this.isPreferred = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "rationale":
+			this.rationale = JsonUtils.nextString(in);
+			return true;
+		case "rating":
+			this.rating = JsonUtils.nextLong(in, 0);
+			return true;
+		case "description":
+			this.description = JsonUtils.nextString(in);
+			return true;
+		case "location":
+			this.location = JsonUtils.nextString(in);
+			return true;
+		case "reviewHighlight":
+			this.reviewHighlight = JsonUtils.nextString(in);
+			return true;
+		case "reviewer":
+			this.reviewer = JsonUtils.nextString(in);
+			return true;
+		case "reviewTime":
+			this.reviewTime = JsonUtils.nextString(in);
+			return true;
+		case "vicinity":
+			this.vicinity = JsonUtils.nextString(in);
+			return true;
+		case "loyaltyProgramName":
+			this.loyaltyProgramName = JsonUtils.nextString(in);
+			return true;
+		case "loyaltyPoints":
+			this.loyaltyPoints = JsonUtils.nextLong(in, 0);
+			return true;
+		case "geometry":
+			this.geometry = new GooglePlacesLocation(in);
+			return true;
+		case "displayType":
+			this.displayType = JsonUtils.nextString(in);
+			return true;
+		case "imageUrl":
+			this.imageUrl = JsonUtils.nextString(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.model.RemyEvent#fixTime()
 	 */
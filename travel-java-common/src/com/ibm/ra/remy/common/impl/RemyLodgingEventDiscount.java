@@ -45,6 +45,18 @@ public class RemyLodgingEventDiscount implements Serializable {
 		this.discountedPrice = discountedPrice;
 	}
 	
+	/**
+	 * Copy constructor. The new discount has the same values as the given one.
+	 * 
+	 * @param toCopy The discount to copy.
+	 */
+	public RemyLodgingEventDiscount(RemyLodgingEventDiscount toCopy) {
+		super();
+		this.message = toCopy.message;
+		this.previousPrice = toCopy.previousPrice;
+		this.discountedPrice = toCopy.discountedPrice;
+	}
+	
 	/**
 	 * Getter for the message property of this object. Required by the Business Rules service.
 	 * @return The message associated with this discount.
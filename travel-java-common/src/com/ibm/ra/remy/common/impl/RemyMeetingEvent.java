@@ -10,14 +10,17 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Class to represent an event meeting in our data model. 
@@ -35,6 +38,13 @@ public class RemyMeetingEvent extends RemyEventImpl implements RemyEvent, Serial
 	private Long time;
 	private String imageUrl;
 	
+	/**
+	 * Constructor for {@link CloudantDocumentReader}, which sets the members as it reads the document.
+	 */
+	RemyMeetingEvent() {
+		super();
+	}
+	
 	/**
 	 * Constructor that will generate a RemyMeetingEvent object with the given data.  To fully create the object, the Map
 	 * provided should contain the following keys:
@@ -83,6 +93,61 @@ public class RemyMeetingEvent extends RemyEventImpl implements RemyEvent, Serial
 		this.imageUrl = (String) data.get("imageUrl");
 	}
 	
+	/**
+	 * Copy constructor. The new event has its own copy of the location, so it can be changed without
+	 * changing the original.
+	 * 
+	 * @param toCopy The meeting event to copy.
+	 */
+	public RemyMeetingEvent(RemyMeetingEvent toCopy) {
+		super(toCopy);
+		this.meetingName = toCopy.meetingName;
+		this.vicinity = toCopy.vicinity;
+		this.isOutdoor = toCopy.isOutdoor;
+		this.time = toCopy.time;
+		this.imageUrl = toCopy.imageUrl;
+		if (toCopy.geometry != null) {
+			this.geometry = toCopy.geometry.copy();
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyMeetingEvent copy() {
+		return new RemyMeetingEvent(this);
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "meetingName":
+			this.meetingName = JsonUtils.nextString(in);
+			return true;
+		case "vicinity":
+			this.vicinity = JsonUtils.nextString(in);
+			return true;
+		case "isOutdoor":
+			this.isOutdoor = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "time":
+			this.time = JsonUtils.nextLong(in);
+			return true;
+		case "geometry":
+			this.geometry = new GooglePlacesLocation(in);
+			return true;
+		case "imageUrl":
+			this.imageUrl = JsonUtils.nextString(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.model.RemyEvent#fixTime()
 	 */
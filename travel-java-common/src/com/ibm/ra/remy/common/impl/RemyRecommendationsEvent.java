@@ -10,6 +10,7 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -18,8 +19,10 @@ import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Class used to contain a Recommendation Event that is displayed on the front end. This class contains both the
@@ -41,6 +44,8 @@ public class RemyRecommendationsEvent extends RemyEventImpl implements RemyEvent
 	private String toLocation;
 	// Hotel recommendations have this location item.
 	private String lodgingLocation;
+	// The user the recommendations are for. Only needed to sort the recommendations by user, so not sent to the client.
+	private transient String user;
 	
 	/**
 	 * Default constructor.  Sets all members to their default values.
@@ -117,8 +122,82 @@ public class RemyRecommendationsEvent extends RemyEventImpl implements RemyEvent
 		this.fromLocation = (String) data.get("fromLocation");
 		this.toLocation = (String) data.get("toLocation");
 		this.lodgingLocation = (String) data.get("lodgingLocation");
+		this.user = (String) data.get("user");
+	}
+	
+	/**
+	 * Copy constructor. The new event has its own copies of the recommendations, so it can be changed
+	 * without changing the original.
+	 * 
+	 * @param toCopy The recommendations event to copy.
+	 */
+	public RemyRecommendationsEvent(RemyRecommendationsEvent toCopy) {
+		super(toCopy);
+		this.rec_type = toCopy.rec_type;
+		this.message = toCopy.message;
+		this.alert = toCopy.alert;
+		this.associatedEventId = toCopy.associatedEventId;
+		this.fromLocation = toCopy.fromLocation;
+		this.toLocation = toCopy.toLocation;
+		this.lodgingLocation = toCopy.lodgingLocation;
+		this.user = toCopy.user;
+		if (toCopy.recommendationList != null) {
+			this.recommendationList = new ArrayList<RemyEvent>(toCopy.recommendationList.size());
+			for (RemyEvent recommendation : toCopy.recommendationList) {
+				this.recommendationList.add(recommendation == null ? null : recommendation.copy());
+			}
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyRecommendationsEvent copy() {
+		return new RemyRecommendationsEvent(this);
 	}
 
+	/**
+	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "rec_type":
+			this.rec_type = JsonUtils.nextString(in);
+			return true;
+		case "message":
+			this.message = JsonUtils.nextString(in);
+			return true;
+		case "alert":
+			this.alert = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "fromLocation":
+			this.fromLocation = JsonUtils.nextString(in);
+			return true;
+		case "toLocation":
+			this.toLocation = JsonUtils.nextString(in);
+			return true;
+		case "lodgingLocation":
+			this.lodgingLocation = JsonUtils.nextString(in);
+			return true;
+		case "user":
+			this.user = JsonUtils.nextString(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#finishRead()
+	 */
+	@Override
+	void finishRead() {
+		super.finishRead();
+		this.recommendationList = new ArrayList<RemyEvent>();
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#fixTime()
 	 */
@@ -222,5 +301,13 @@ public class RemyRecommendationsEvent extends RemyEventImpl implements RemyEvent
 	public void setAssociatedEventId(String associatedEventId) {
 		this.associatedEventId = associatedEventId;
 	}
+	
+	/**
+	 * Gets the user the recommendations are for.
+	 * @return The username of the user.
+	 */
+	public String getUser() {
+		return user;
+	}
 
 }
@@ -10,14 +10,17 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Simple class used to represent a Restaurant card/event in the front end application. This contains all the data
@@ -50,6 +53,13 @@ public class RemyRestaurantEvent extends RemyEventImpl implements RemyEvent, Ser
 	// This is an embedded recommendations event, for the scenario where Cafe Pfau is rained out.
 	private RemyRecommendationsEvent recommendedReplacements;
 	
+	/**
+	 * Constructor for {@link CloudantDocumentReader}, which sets the members as it reads the document.
+	 */
+	RemyRestaurantEvent() {
+		super();
+	}
+	
 	/**
 	 * Constructor that will generate a RemyRestaurantEvent object with the given data.  To fully create the object, the Map
 	 * provided should contain the following keys:
@@ -117,7 +127,105 @@ public class RemyRestaurantEvent extends RemyEventImpl implements RemyEvent, Ser
 		this.geometry = new GooglePlacesLocation((LinkedTreeMap<String, Object>) data.get("geometry"));
 		this.imageUrl = (String) data.get("imageUrl");
 	}
+	
+	/**
+	 * Copy constructor. The new event has its own copies of the location and the recommended
+	 * replacements, so it can be changed without changing the original.
+	 * 
+	 * @param toCopy The restaurant event to copy.
+	 */
+	public RemyRestaurantEvent(RemyRestaurantEvent toCopy) {
+		super(toCopy);
+		this.meetingName = toCopy.meetingName;
+		this.name = toCopy.name;
+		this.price_level = toCopy.price_level;
+		this.rating = toCopy.rating;
+		this.cuisine = toCopy.cuisine;
+		this.distance = toCopy.distance;
+		this.location = toCopy.location;
+		this.reviewHighlight = toCopy.reviewHighlight;
+		this.reviewer = toCopy.reviewer;
+		this.reviewTime = toCopy.reviewTime;
+		this.isPreferred = toCopy.isPreferred;
+		this.vicinity = toCopy.vicinity;
+		this.isOutdoor = toCopy.isOutdoor;
+		this.time = toCopy.time;
+		this.imageUrl = toCopy.imageUrl;
+		if (toCopy.geometry != null) {
+			this.geometry = toCopy.geometry.copy();
+		}
+		if (toCopy.recommendedReplacements != null) {
+			this.recommendedReplacements = toCopy.recommendedReplacements.copy();
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyRestaurantEvent copy() {
+		return new RemyRestaurantEvent(this);
+	}
 
+	/**
+	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "meetingName":
+			this.meetingName = JsonUtils.nextString(in);
+			return true;
+		case "name":
+			this.name = JsonUtils.nextString(in);
+			return true;
+		case "price_level":
+			this.price_level = JsonUtils.nextDouble(in);
+			return true;
+		case "rating":
+			this.rating = JsonUtils.nextDouble(in);
+			return true;
+		case "cuisine":
+			this.cuisine = JsonUtils.nextString(in);
+			return true;
+		case "distance":
+			this.distance = JsonUtils.nextString(in);
+			return true;
+		case "location":
+			this.location = JsonUtils.nextString(in);
+			return true;
+		case "reviewHighlight":
+			this.reviewHighlight = JsonUtils.nextString(in);
+			return true;
+		case "reviewer":
+			this.reviewer = JsonUtils.nextString(in);
+			return true;
+		case "reviewTime":
+			this.reviewTime = JsonUtils.nextString(in);
+			return true;
+		case "isPreferred":
+			this.isPreferred = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "vicinity":
+			this.vicinity = JsonUtils.nextString(in);
+			return true;
+		case "isOutdoor":
+			this.isOutdoor = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "time":
+			this.time = JsonUtils.nextLong(in);
+			return true;
+		case "geometry":
+			this.geometry = new GooglePlacesLocation(in);
+			return true;
+		case "imageUrl":
+			this.imageUrl = JsonUtils.nextString(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#fixTime()
 	 */
@@ -10,6 +10,7 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -18,8 +19,10 @@ import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyEvent;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Simple class that represents a transit event, which is either a rail, walk, tram commute.  
@@ -38,6 +41,13 @@ public class RemyTransitEvent extends RemyEventImpl implements RemyEvent, Serial
 	private boolean isPreferred;
 	private List<RemyTransitStep> transit_steps;
 	
+	/**
+	 * Constructor for {@link CloudantDocumentReader}, which sets the members as it reads the document.
+	 */
+	RemyTransitEvent() {
+		super();
+	}
+	
 	/**
 	 * Default constructor which creates a Flight object from a map of data. The Map needs to contain the following
 	 * keys in order to fully create the object.
@@ -91,7 +101,86 @@ public class RemyTransitEvent extends RemyEventImpl implements RemyEvent, Serial
 			transit_steps.add(new RemyTransitStep(e));
 		}
 	}
+	
+	/**
+	 * Copy constructor. The new event has its own copies of the transit steps, so it can be changed
+	 * without changing the original.
+	 * 
+	 * @param toCopy The transit event to copy.
+	 */
+	public RemyTransitEvent(RemyTransitEvent toCopy) {
+		super(toCopy);
+		this.ios_transit_name = toCopy.ios_transit_name;
+		this.cost = toCopy.cost;
+		this.costDouble = toCopy.costDouble;
+		this.departureStreet = toCopy.departureStreet;
+		this.walkingDistance = toCopy.walkingDistance;
+		this.isPreferred = toCopy.isPreferred;
+		if (toCopy.transit_steps != null) {
+			this.transit_steps = new ArrayList<RemyTransitStep>(toCopy.transit_steps.size());
+			for (RemyTransitStep step : toCopy.transit_steps) {
+				this.transit_steps.add(step == null ? null : new RemyTransitStep(step));
+			}
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.model.RemyEvent#copy()
+	 */
+	@Override
+	public RemyTransitEvent copy() {
+		return new RemyTransitEvent(this);
+	}
 
+	/**
+	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "cost":
+			this.cost = JsonUtils.nextString(in);
+			return true;
+		case "costDouble":
+			this.costDouble = JsonUtils.nextDouble(in);
+			return true;
+		case "departureStreet":
+			this.departureStreet = JsonUtils.nextString(in);
+			return true;
+		case "ios_transit_name":
+			this.ios_transit_name = JsonUtils.nextString(in);
+			return true;
+		case "isPreferred":
+			this.isPreferred = JsonUtils.nextBoolean(in, false);
+			return true;
+		case "walkingDistance":
+			this.walkingDistance = JsonUtils.nextDouble(in);
+			return true;
+		case "transit_steps":
+			this.transit_steps = new ArrayList<RemyTransitStep>();
+			if (JsonUtils.beginArray(in)) {
+				while (in.hasNext()) {
+					transit_steps.add(new RemyTransitStep(in));
+				}
+				in.endArray();
+			}
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#finishRead()
+	 */
+	@Override
+	void finishRead() {
+		super.finishRead();
+		if (transit_steps == null) {
+			transit_steps = new ArrayList<RemyTransitStep>();
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.impl.RemyEventImpl#fixTime()
 	 */
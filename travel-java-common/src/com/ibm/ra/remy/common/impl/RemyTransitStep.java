@@ -10,12 +10,15 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Simple class that represents the "steps" that get you from one location to another and what changes you have to make
@@ -106,6 +109,105 @@ public class RemyTransitStep implements Serializable {
 		}
 	}
 	
+	/**
+	 * Constructor that reads the step from a Cloudant document, with the same keys as the Map constructor. As there,
+	 * only the members that belong to the type of the step are set.
+	 * 
+	 * @param in The reader, positioned on the step object.
+	 * @throws IOException If the step cannot be read.
+	 */
+	RemyTransitStep(JsonReader in) throws IOException {
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "type":
+				this.type = JsonUtils.nextString(in);
+				break;
+			case "start_time":
+				this.start_time = JsonUtils.nextLong(in);
+				break;
+			case "end_time":
+				this.end_time = JsonUtils.nextLong(in);
+				break;
+			case "details":
+				this.details = JsonUtils.nextString(in);
+				break;
+			case "departureArea":
+				this.departureArea = JsonUtils.nextString(in);
+				break;
+			case "arrivalArea":
+				this.arrivalArea = JsonUtils.nextString(in);
+				break;
+			case "transit_line":
+				this.transitLine = JsonUtils.nextString(in);
+				break;
+			case "stops":
+				this.stops = JsonUtils.nextLong(in);
+				break;
+			case "walk_time":
+				this.walkTime = JsonUtils.nextString(in);
+				break;
+			case "title":
+				this.title = JsonUtils.nextString(in);
+				break;
+			case "partnerName":
+				this.partnerName = JsonUtils.nextString(in);
+				break;
+			case "partnerPickupTime":
+				this.partnerPickupTime = JsonUtils.nextString(in);
+				break;
+			case "fareNotice":
+				this.fareNotice = JsonUtils.nextString(in);
+				break;
+			case "seatsRemaining":
+				this.seatsRemaining = JsonUtils.nextLong(in);
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		if (!RAIL.equals(type) && !BUS.equals(type)) {
+			this.transitLine = null;
+			this.stops = null;
+		}
+		if (!WALK.equals(type)) {
+			this.walkTime = null;
+		}
+		if (!CAR.equals(type)) {
+			this.title = null;
+		}
+		if (!PARTNER.equals(type)) {
+			this.partnerName = null;
+			this.partnerPickupTime = null;
+			this.fareNotice = null;
+			this.seatsRemaining = null;
+		}
+	}
+	
+	/**
+	 * Copy constructor. The new step has the same values as the given one.
+	 * 
+	 * @param toCopy The transit step to copy.
+	 */
+	public RemyTransitStep(RemyTransitStep toCopy) {
+		super();
+		this.type = toCopy.type;
+		this.start_time = toCopy.start_time;
+		this.end_time = toCopy.end_time;
+		this.walkTime = toCopy.walkTime;
+		this.transitLine = toCopy.transitLine;
+		this.title = toCopy.title;
+		this.departureArea = toCopy.departureArea;
+		this.arrivalArea = toCopy.arrivalArea;
+		this.details = toCopy.details;
+		this.stops = toCopy.stops;
+		this.partnerName = toCopy.partnerName;
+		this.partnerPickupTime = toCopy.partnerPickupTime;
+		this.fareNotice = toCopy.fareNotice;
+		this.seatsRemaining = toCopy.seatsRemaining;
+	}
+	
 	/**
 	 * Setter, the new start time of this step
 	 * @param newTime The start time in milliseconds
@@ -10,14 +10,17 @@
 
 package com.ibm.ra.remy.common.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.gson.stream.JsonReader;
 import com.ibm.ra.remy.common.model.RemyLocation;
 import com.ibm.ra.remy.common.model.RemyWeather;
 import com.ibm.ra.remy.common.utils.DateUtils;
+import com.ibm.ra.remy.common.utils.JsonUtils;
 
 /**
  * Simple class that 
@@ -70,6 +73,30 @@ public class RemyWeatherImpl extends CloudantObject implements RemyWeather, Seri
 			}
 		}
 		
+		/**
+		 * Constructor that reads the temperatures from a Cloudant document, with the same keys as the Map constructor.
+		 * 
+		 * @param in The reader, positioned on the temp object. If the value is null both temperatures are left null.
+		 * @throws IOException If the temperatures cannot be read.
+		 */
+		EnglishMetricObject(JsonReader in) throws IOException {
+			if (JsonUtils.beginObject(in)) {
+				while (in.hasNext()) {
+					switch (in.nextName()) {
+					case "english":
+						english = JsonUtils.nextString(in);
+						break;
+					case "metric":
+						metric = JsonUtils.nextString(in);
+						break;
+					default:
+						in.skipValue();
+					}
+				}
+				in.endObject();
+			}
+		}
+		
 		/**
 		 * Gets the Fahrenheit temperature for this day.
 		 * @return The temperature in Fahrenheit.
@@ -121,6 +148,40 @@ public class RemyWeatherImpl extends CloudantObject implements RemyWeather, Seri
 		}
 	}
 	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#readMember(java.lang.String, com.google.gson.stream.JsonReader)
+	 */
+	@Override
+	boolean readMember(String name, JsonReader in) throws IOException {
+		switch (name) {
+		case "date":
+			String value = JsonUtils.nextString(in);
+			if (value != null) {
+				date = Long.parseLong(value);
+			}
+			return true;
+		case "condition":
+			condition = JsonUtils.nextString(in);
+			return true;
+		case "temp":
+			temp = new EnglishMetricObject(in);
+			return true;
+		default:
+			return super.readMember(name, in);
+		}
+	}
+	
+	/**
+	 * @see com.ibm.ra.remy.common.impl.CloudantObject#finishRead()
+	 */
+	@Override
+	void finishRead() {
+		super.finishRead();
+		if (temp == null) {
+			temp = new EnglishMetricObject((Map<String, String>) null);
+		}
+	}
+	
 	/**
 	 * @see com.ibm.ra.remy.common.model.RemyWeather#getDate()
 	 */
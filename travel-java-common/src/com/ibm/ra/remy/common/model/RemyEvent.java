@@ -86,4 +86,11 @@ public interface RemyEvent {
 	 * is affected by weather.
 	 */
 	public void setAffectedByWeather(boolean affectedByWeather);
+
+	/**
+	 * Creates a deep copy of this event. Nothing is shared between the copy and this event, so either one can be
+	 * changed without changing the other.
+	 * @return The copy of this event.
+	 */
+	public RemyEvent copy();
 }
@@ -71,4 +71,10 @@ public interface RemyEventDate {
 	 * Converts the stored offset time to a real point in time.
 	 */
 	public void fixTime();
+
+	/**
+	 * Creates a deep copy of this date and its events. Nothing is shared between the copy and this date.
+	 * @return The copy of this date.
+	 */
+	public RemyEventDate copy();
 }
@@ -78,4 +78,11 @@ public interface RemyItinerary {
 	 * Converts the stored offset time to a real point in time.
 	 */
 	public void fixTime();
+
+	/**
+	 * Creates a deep copy of this itinerary, its dates and their events. Nothing is shared between the copy and this
+	 * itinerary.
+	 * @return The copy of this itinerary.
+	 */
+	public RemyItinerary copy();
 }
@@ -50,4 +50,10 @@ public interface RemyLocation {
 	 * @param country The country to set for this location
 	 */
 	public void setCountry(String country);
+
+	/**
+	 * Creates a copy of this location.
+	 * @return The copy of this location.
+	 */
+	public RemyLocation copy();
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed Materials - Property of IBM © Copyright IBM Corporation 2015. All
+ * Rights Reserved. This sample program is provided AS IS and may be used,
+ * executed, copied and modified without royalty payment by customer (a) for its
+ * own instruction and study, (b) in order to develop applications designed to
+ * run with an IBM product, either for customer's own internal use or for
+ * redistribution by customer, as part of such an application, in customer's own
+ * products.
+ */
+
+package com.ibm.ra.remy.common.utils;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Class that reads the values of Cloudant documents from a {@link com.google.gson.stream.JsonReader JsonReader}. Every
+ * method accepts a JSON null in place of the value, which Cloudant documents use for members that have no value.
+ */
+public class JsonUtils {
+
+	/**
+	 * Reads a string value.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @return The string, or null if the value is null.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static String nextString(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	/**
+	 * Reads a number value.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @return The number, or null if the value is null.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static Double nextDouble(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextDouble();
+	}
+
+	/**
+	 * Reads a number value.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @param defaultValue The value to return if the value is null.
+	 * @return The number, or the default value.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static double nextDouble(JsonReader in, double defaultValue) throws IOException {
+		Double value = nextDouble(in);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Reads a number value as a long. Numbers with a fraction are truncated, as Double.longValue() does.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @return The number, or null if the value is null.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static Long nextLong(JsonReader in) throws IOException {
+		Double value = nextDouble(in);
+		return value == null ? null : value.longValue();
+	}
+
+	/**
+	 * Reads a number value as a long.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @param defaultValue The value to return if the value is null.
+	 * @return The number, or the default value.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static long nextLong(JsonReader in, long defaultValue) throws IOException {
+		Long value = nextLong(in);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Reads a boolean value.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @param defaultValue The value to return if the value is null.
+	 * @return The boolean, or the default value.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static boolean nextBoolean(JsonReader in, boolean defaultValue) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return defaultValue;
+		}
+		return in.nextBoolean();
+	}
+
+	/**
+	 * Begins reading an object value.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @return True if the object was begun, or false if the value was null and has been skipped.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static boolean beginObject(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return false;
+		}
+		in.beginObject();
+		return true;
+	}
+
+	/**
+	 * Begins reading an array value.
+	 *
+	 * @param in The reader, positioned on the value.
+	 * @return True if the array was begun, or false if the value was null and has been skipped.
+	 * @throws IOException If the value cannot be read.
+	 */
+	public static boolean beginArray(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return false;
+		}
+		in.beginArray();
+		return true;
+	}
+}